@@ -0,0 +1,68 @@
+package com.javedemo.gson.benchmark;
+
+import com.google.gson.Gson;
+import com.javedemo.gson.typeAdapter.simpleflat.FlatUtf8;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同一个model在不同引擎下的读写, 同时输出吞吐量和平均耗时. 子类通过 {@code @Param} 列出支持该model的引擎,
+ * 在 {@code @Setup} 中调用 {@link #init}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class AbstractEngineBenchmark {
+
+    private Gson gson;
+    private Class<?> rootType;
+    private Object value;
+    private String json;
+    private byte[] utf8;
+
+    /**
+     * 序列化一次作为读的输入, 并检查读回的对象再序列化结果不变.
+     */
+    protected void init(Gson gson, Class<?> rootType, Object value) {
+        this.gson = gson;
+        this.rootType = rootType;
+        this.value = value;
+        this.json = gson.toJson(value);
+        this.utf8 = json.getBytes(StandardCharsets.UTF_8);
+        String roundTrip = gson.toJson(gson.fromJson(json, rootType));
+        if (!json.equals(roundTrip)) {
+            throw new IllegalStateException("round trip differs ,json=" + json + ",roundTrip=" + roundTrip);
+        }
+    }
+
+    @Benchmark
+    public Object read() {
+        return gson.fromJson(json, rootType);
+    }
+
+    /**
+     * 从UTF-8字节读取, 见 {@link FlatUtf8}. 与 {@link #read()} 的差别即 String 解码和key分配的开销.
+     */
+    @Benchmark
+    public Object readUtf8() {
+        return FlatUtf8.fromJson(gson, utf8, rootType);
+    }
+
+    @Benchmark
+    public String write() {
+        return gson.toJson(value);
+    }
+}
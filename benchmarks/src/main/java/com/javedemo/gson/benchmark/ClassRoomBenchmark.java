@@ -0,0 +1,21 @@
+package com.javedemo.gson.benchmark;
+
+import com.javedemo.gson.benchmark.model.ClassRoomModels;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * FlatReflectionTypeAdapterFactoryTest 中带接口字段的 ClassRoom.
+ * PLAIN/SIMPLE_FLAT 按默认实现类读写接口字段.
+ */
+public class ClassRoomBenchmark extends AbstractEngineBenchmark {
+
+    @Param({"PLAIN", "FLAT_TREE", "FLAT_STREAMING", "SIMPLE_FLAT"})
+    public Engine engine;
+
+    @Setup
+    public void setup() {
+        init(engine.create(ClassRoomModels.parsers(), ClassRoomModels.implementations(), ClassRoomModels.ClassRoom.class),
+                ClassRoomModels.ClassRoom.class, ClassRoomModels.newClassRoom());
+    }
+}
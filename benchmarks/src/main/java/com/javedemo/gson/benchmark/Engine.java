@@ -0,0 +1,90 @@
+package com.javedemo.gson.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.javedemo.gson.typeAdapter.FlatteningTypeAdapterFactory;
+import com.javedemo.gson.typeAdapter.reverseflat.ReverseFlattenTypeAdapterFactory;
+import com.javedemo.gson.typeAdapter.simpleflat.FlatReflectionTypeAdapterFactory;
+import com.javedemo.gson.typeAdapter.simpleflat.SimpleGsonFlatSupport;
+
+import java.util.Map;
+
+/**
+ * 参与对比的json引擎. 每个benchmark通过 {@code @Param} 选择其中支持该model的引擎.
+ */
+public enum Engine {
+    /**
+     * 原生gson, 嵌套json, 作为基线
+     */
+    PLAIN,
+    /**
+     * {@link FlatReflectionTypeAdapterFactory}, 先解析成 JsonObject 再反序列化
+     */
+    FLAT_TREE,
+    /**
+     * {@link FlatReflectionTypeAdapterFactory}, 流式反序列化
+     */
+    FLAT_STREAMING,
+    /**
+     * {@link SimpleGsonFlatSupport}, 接口字段按嵌套json处理
+     */
+    SIMPLE_FLAT,
+    /**
+     * {@link FlatteningTypeAdapterFactory}, 只处理 {@code @Flatten} 字段
+     */
+    FLATTENING,
+    /**
+     * {@link ReverseFlattenTypeAdapterFactory}, 只处理 {@code @ReverseFlatten} 字段
+     */
+    REVERSE_FLATTEN;
+
+    /**
+     * @param parsers  接口字段的解析器, 只有 FLAT_* 使用
+     * @param implementations 接口的默认实现, 不支持接口字段的引擎按实现类读写接口字段
+     * @param root            FLAT_* 启动时预先构建绑定计划的顶层类型
+     */
+    public Gson create(Map<Class, FlatReflectionTypeAdapterFactory.InterfaceFieldParser> parsers, Map<Class<?>, Class<?>> implementations, Class<?> root) {
+        GsonBuilder builder = new GsonBuilder();
+        if (this == PLAIN || this == SIMPLE_FLAT) {
+            builder.registerTypeAdapterFactory(defaultImplementations(implementations));
+        }
+        if (this == FLATTENING) {
+            builder.registerTypeAdapterFactory(FlatteningTypeAdapterFactory.getInstance());
+        }
+        if (this == REVERSE_FLATTEN) {
+            builder.registerTypeAdapterFactory(new ReverseFlattenTypeAdapterFactory());
+        }
+        Gson gson = builder.create();
+        switch (this) {
+            case FLAT_TREE:
+                FlatReflectionTypeAdapterFactory.injectInto(gson, parsers, false).prepare(root);
+                break;
+            case FLAT_STREAMING:
+                FlatReflectionTypeAdapterFactory.injectInto(gson, parsers, true).prepare(root);
+                break;
+            case SIMPLE_FLAT:
+                SimpleGsonFlatSupport.injectInto(gson);
+                break;
+            default:
+                break;
+        }
+        return gson;
+    }
+
+    /**
+     * 接口类型直接使用实现类的adapter. 只注册 InstanceCreator 不够, gson 按字段声明的接口类型反序列化, 读不到实现类的字段.
+     */
+    private static TypeAdapterFactory defaultImplementations(Map<Class<?>, Class<?>> implementations) {
+        return new TypeAdapterFactory() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+                Class<?> implementation = implementations.get(type.getRawType());
+                return implementation == null ? null : (TypeAdapter<T>) gson.getAdapter(implementation);
+            }
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package com.javedemo.gson.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 运行全部benchmark并打开 {@link GCProfiler}, 输出每次操作的分配字节数({@code gc.alloc.rate.norm}).
+ * 命令行参数与 {@code org.openjdk.jmh.Main} 相同, 例如只跑某个引擎:
+ * <pre>
+ *     java -cp benchmarks/target/benchmarks.jar com.javedemo.gson.benchmark.FlatBenchmarks -p engine=FLAT_STREAMING
+ * </pre>
+ */
+public final class FlatBenchmarks {
+
+    private FlatBenchmarks() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,53 @@
+package com.javedemo.gson.benchmark;
+
+import com.google.gson.Gson;
+import com.javedemo.gson.typeAdapter.Address;
+import com.javedemo.gson.typeAdapter.FlattenUserSubscription;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code @Flatten} 的 {@link FlattenUserSubscription}. FlatteningTypeAdapterFactory 只支持序列化, 这里只比较写.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FlattenUserSubscriptionBenchmark {
+
+    @Param({"PLAIN", "FLATTENING", "FLAT_STREAMING", "SIMPLE_FLAT"})
+    public Engine engine;
+
+    private Gson gson;
+    private FlattenUserSubscription subscription;
+
+    @Setup
+    public void setup() {
+        gson = engine.create(Collections.emptyMap(), Collections.emptyMap(), FlattenUserSubscription.class);
+        subscription = new FlattenUserSubscription();
+        Address address = new Address();
+        address.setCity("yiwu");
+        address.setAddress("拱墅区3号");
+        subscription.setAddress(address);
+        subscription.setName("loufei");
+    }
+
+    @Benchmark
+    public String write() {
+        return gson.toJson(subscription);
+    }
+}
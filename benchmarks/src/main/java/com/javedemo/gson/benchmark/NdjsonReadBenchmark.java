@@ -0,0 +1,132 @@
+package com.javedemo.gson.benchmark;
+
+import com.google.gson.Gson;
+import com.javedemo.gson.benchmark.model.SyntheticModel;
+import com.javedemo.gson.typeAdapter.simpleflat.FlatParallelLineReader;
+import com.javedemo.gson.typeAdapter.simpleflat.FlatRecordReader;
+import com.javedemo.gson.typeAdapter.simpleflat.FlatRecords;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 读取整个NDJSON文件的耗时, 对比逐行 {@code fromJson} 与 {@link FlatRecords} 的各种读取方式.
+ * 文件大小除以耗时即吞吐量.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NdjsonReadBenchmark {
+
+    public enum Reading {
+        /**
+         * BufferedReader.readLine + gson.fromJson, 作为基线
+         */
+        READ_LINE,
+        /**
+         * {@link FlatRecords#readLines}
+         */
+        RECORDS,
+        /**
+         * {@link FlatRecords#readLinesParallel}
+         */
+        PARALLEL,
+        /**
+         * {@link FlatRecords#mappedLines} + parallel()
+         */
+        MAPPED
+    }
+
+    @Param({"READ_LINE", "RECORDS", "PARALLEL", "MAPPED"})
+    public Reading reading;
+
+    @Param({"64"})
+    public int megabytes;
+
+    private Gson gson;
+    private Class<?> rootType;
+    private Path file;
+    private long records;
+    private ExecutorService workers;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        SyntheticModel model = SyntheticModel.generate(3, 16, 0.25);
+        rootType = model.getRootType();
+        gson = Engine.FLAT_STREAMING.create(model.parsers(), model.implementations(), rootType);
+        file = Files.createTempFile("flat-ndjson", ".ndjson");
+        records = model.writeCorpus(gson, 42L, megabytes * (1L << 20), file);
+        workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        workers.shutdownNow();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long read() throws IOException {
+        long count;
+        switch (reading) {
+            case READ_LINE:
+                count = 0;
+                try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        gson.fromJson(line, rootType);
+                        count++;
+                    }
+                }
+                break;
+            case RECORDS:
+                try (FlatRecordReader<?> reader = FlatRecords.readLines(gson, rootType, Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+                    count = reader.stream().count();
+                }
+                break;
+            case PARALLEL:
+                count = 0;
+                try (FlatParallelLineReader<?> reader = FlatRecords.readLinesParallel(gson, rootType, Files.newBufferedReader(file, StandardCharsets.UTF_8), workers)) {
+                    while (reader.hasNext()) {
+                        reader.next();
+                        count++;
+                    }
+                }
+                break;
+            case MAPPED:
+                try (Stream<?> stream = FlatRecords.mappedLines(gson, rootType, file)) {
+                    count = stream.parallel().count();
+                }
+                break;
+            default:
+                throw new AssertionError(reading);
+        }
+        if (count != records) {
+            throw new IllegalStateException("record count differs ,expected=" + records + ",actual=" + count);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,44 @@
+package com.javedemo.gson.benchmark;
+
+import com.google.gson.annotations.SerializedName;
+import com.javedemo.gson.typeAdapter.reverseflat.ReverseFlatten;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.Collections;
+
+/**
+ * reverseflat 测试中的 ClassFlat: 扁平的bean写成嵌套json, REVERSE_FLATTEN 与原生gson对比.
+ */
+public class ReverseFlattenBenchmark extends AbstractEngineBenchmark {
+
+    @Param({"PLAIN", "REVERSE_FLATTEN"})
+    public Engine engine;
+
+    @Setup
+    public void setup() {
+        ClassFlat classFlat = new ClassFlat();
+        classFlat.testY = 666;
+        classFlat.testZ = 13;
+        classFlat.testNo = -1;
+        classFlat.testArrayY = 42;
+        classFlat.testArrayZ = "foo";
+        init(engine.create(Collections.emptyMap(), Collections.emptyMap(), ClassFlat.class), ClassFlat.class, classFlat);
+    }
+
+    /**
+     * FlatAdapterFactoryTest 中 ClassFlat 的副本
+     */
+    public static class ClassFlat {
+        @ReverseFlatten("x::y")
+        int testY;
+        @ReverseFlatten("x::z")
+        int testZ;
+        @SerializedName("no")
+        Integer testNo;
+        @ReverseFlatten("array::0::y")
+        int testArrayY;
+        @ReverseFlatten("deep::0::10::0::x::1::z")
+        String testArrayZ;
+    }
+}
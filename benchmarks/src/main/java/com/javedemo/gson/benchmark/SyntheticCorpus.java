@@ -0,0 +1,95 @@
+package com.javedemo.gson.benchmark;
+
+import com.google.gson.Gson;
+import com.javedemo.gson.benchmark.model.SyntheticModel;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * 生成平铺json语料(每行一条记录), 用于大数据量的读写测试:
+ * <pre>
+ *     java -cp benchmarks/target/benchmarks.jar com.javedemo.gson.benchmark.SyntheticCorpus corpus.ndjson 2g \
+ *          depth=6 width=60 interfaceRatio=0.1 implementations=3 prefixRatio=1 stringRatio=0.25 seed=42 engine=FLAT_STREAMING
+ * </pre>
+ * 大小支持 k/m/g 后缀. 相同的参数生成相同的文件, 读取时用相同的参数重新生成model.
+ */
+public final class SyntheticCorpus {
+
+    private SyntheticCorpus() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: SyntheticCorpus <file> <size> [depth=6] [width=60] [interfaceRatio=0.1] [implementations=3]"
+                    + " [prefixRatio=1] [stringRatio=0.25] [seed=42] [engine=FLAT_STREAMING]");
+            System.exit(1);
+        }
+        Path path = Paths.get(args[0]);
+        long targetBytes = parseSize(args[1]);
+
+        SyntheticModel.Builder builder = SyntheticModel.builder().depth(6).width(60).interfaceRatio(0.1).implementations(3);
+        long seed = 42L;
+        Engine engine = Engine.FLAT_STREAMING;
+        for (int i = 2; i < args.length; i++) {
+            int eq = args[i].indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("option must be key=value ,option=" + args[i]);
+            }
+            String key = args[i].substring(0, eq);
+            String value = args[i].substring(eq + 1);
+            switch (key) {
+                case "depth":
+                    builder.depth(Integer.parseInt(value));
+                    break;
+                case "width":
+                    builder.width(Integer.parseInt(value));
+                    break;
+                case "interfaceRatio":
+                    builder.interfaceRatio(Double.parseDouble(value));
+                    break;
+                case "implementations":
+                    builder.implementations(Integer.parseInt(value));
+                    break;
+                case "prefixRatio":
+                    builder.prefixRatio(Double.parseDouble(value));
+                    break;
+                case "stringRatio":
+                    builder.stringRatio(Double.parseDouble(value));
+                    break;
+                case "seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "engine":
+                    engine = Engine.valueOf(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option ,key=" + key);
+            }
+        }
+
+        SyntheticModel model = builder.build();
+        Gson gson = engine.create(model.parsers(), model.implementations(), model.getRootType());
+        long start = System.nanoTime();
+        long records = model.writeCorpus(gson, seed, targetBytes, path);
+        System.out.printf(Locale.ROOT, "wrote %d records, %d leaves per record, %.1f MB in %d ms to %s%n",
+                records, model.getLeafCount(), path.toFile().length() / 1048576.0, (System.nanoTime() - start) / 1000000, path);
+    }
+
+    static long parseSize(String size) {
+        String lower = size.trim().toLowerCase(Locale.ROOT);
+        long unit = 1;
+        char last = lower.charAt(lower.length() - 1);
+        if (last == 'k') {
+            unit = 1L << 10;
+        } else if (last == 'm') {
+            unit = 1L << 20;
+        } else if (last == 'g') {
+            unit = 1L << 30;
+        }
+        String number = unit == 1 ? lower : lower.substring(0, lower.length() - 1);
+        return Long.parseLong(number) * unit;
+    }
+}
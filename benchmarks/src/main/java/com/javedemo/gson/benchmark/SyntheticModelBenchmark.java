@@ -0,0 +1,29 @@
+package com.javedemo.gson.benchmark;
+
+import com.javedemo.gson.benchmark.model.SyntheticModel;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * 运行时生成的model, 按层数/每层字段数/接口字段比例观察各引擎的伸缩性, 见 {@link SyntheticModel}.
+ */
+public class SyntheticModelBenchmark extends AbstractEngineBenchmark {
+
+    @Param({"PLAIN", "FLAT_TREE", "FLAT_STREAMING", "SIMPLE_FLAT"})
+    public Engine engine;
+
+    @Param({"1", "3", "6"})
+    public int depth;
+
+    @Param({"4", "16", "64"})
+    public int width;
+
+    @Param({"0", "0.25"})
+    public double interfaceRatio;
+
+    @Setup
+    public void setup() {
+        SyntheticModel model = SyntheticModel.generate(depth, width, interfaceRatio);
+        init(engine.create(model.parsers(), model.implementations(), model.getRootType()), model.getRootType(), model.newInstance(42L));
+    }
+}
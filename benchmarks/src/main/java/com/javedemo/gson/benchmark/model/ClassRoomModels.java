@@ -0,0 +1,88 @@
+package com.javedemo.gson.benchmark.model;
+
+import com.javedemo.gson.jsonAdapter.FieldNamePrefix;
+import com.javedemo.gson.jsonAdapter.FlatSubTypes;
+import com.javedemo.gson.typeAdapter.simpleflat.FlatReflectionTypeAdapterFactory;
+import com.javedemo.gson.typeAdapter.simpleflat.SubTypeRegistry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * FlatReflectionTypeAdapterFactoryTest 中 ClassRoom/Door/Window/NatureMaterial 的副本,
+ * 测试代码中的model是private的, benchmark模块无法直接引用.
+ */
+public final class ClassRoomModels {
+
+    private ClassRoomModels() {
+    }
+
+    public static Map<Class, FlatReflectionTypeAdapterFactory.InterfaceFieldParser> parsers() {
+        return SubTypeRegistry.builder()
+                .annotated(IWindow.class, IMaterial.class)
+                .build();
+    }
+
+    public static Map<Class<?>, Class<?>> implementations() {
+        Map<Class<?>, Class<?>> implementations = new HashMap<>();
+        implementations.put(IWindow.class, Window.class);
+        implementations.put(IMaterial.class, NatureMaterial.class);
+        return implementations;
+    }
+
+    public static ClassRoom newClassRoom() {
+        ClassRoom classRoom = new ClassRoom();
+        classRoom.name = "第15班";
+        classRoom.frontDoor = new Door();
+        classRoom.frontDoor.doorName = "前门";
+        classRoom.frontDoor.upperWindow = new Window();
+        classRoom.frontDoor.upperWindow.windowName = "前门上玻璃";
+
+        classRoom.backDoor = new Door();
+        classRoom.backDoor.doorName = "后门";
+        classRoom.backDoor.upperWindow = new Window();
+        classRoom.backDoor.upperWindow.windowName = "后门上玻璃";
+
+        Window lowerWindow = new Window();
+        lowerWindow.windowName = "后门下玻璃";
+        NatureMaterial material = new NatureMaterial();
+        material.materialName = "后门下玻璃纯天然材料";
+        lowerWindow.imaterial = material;
+        classRoom.backDoor.ilowerWindow = lowerWindow;
+        return classRoom;
+    }
+
+    public static class ClassRoom {
+        protected String name;
+        protected Door frontDoor;
+        @FieldNamePrefix(value = "backDoorPrefix")
+        protected Door backDoor;
+    }
+
+    public static class Door {
+        protected String doorName;
+        // 上玻璃
+        protected Window upperWindow;
+        //下玻璃
+        @FieldNamePrefix(value = "lowerWindowPrefix")
+        private IWindow ilowerWindow;
+    }
+
+    @FlatSubTypes(typeName = "IWindowType", value = @FlatSubTypes.SubType(value = Window.class, name = "window_实现1"))
+    public interface IWindow {
+    }
+
+    public static class Window implements IWindow {
+        protected String windowName;
+        @FieldNamePrefix(value = "iMaterialPrefix")
+        IMaterial imaterial;
+    }
+
+    @FlatSubTypes(typeName = "IMaterialType", value = @FlatSubTypes.SubType(value = NatureMaterial.class, name = "纯天然材料"))
+    public interface IMaterial {
+    }
+
+    public static class NatureMaterial implements IMaterial {
+        private String materialName;
+    }
+}
@@ -0,0 +1,366 @@
+package com.javedemo.gson.benchmark.model;
+
+import com.google.gson.Gson;
+import com.javedemo.gson.typeAdapter.simpleflat.FlatReflectionTypeAdapterFactory;
+import com.javedemo.gson.typeAdapter.simpleflat.SubTypeRegistry;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 运行时生成的model, 形状由参数控制:
+ * <pre>
+ *     Level0 { l0f0..l0f(leaves-1), @FieldNamePrefix("l0iK") l0iK: Part, @FieldNamePrefix("n") n: Level1 }
+ *     Level1 { ... }
+ *     ...
+ *     Level(depth-1) { l(depth-1)f0.., l(depth-1)iK: Part }
+ *     Part &lt;- PartImpl0 { p0f0..p0f3 }, PartImpl1 { p1f0..p1f4 }, ...
+ * </pre>
+ * 每层 {@code width} 个字段, 其中 {@code width * interfaceRatio} 个是接口字段 {@code Part}, 其余是叶子字段,
+ * {@code stringRatio} 比例的叶子是String, 其他是 int/long/double/boolean 轮流. 叶子字段名带层号, 所以指向下一层的
+ * 字段 {@code n} 可以不带 {@code @FieldNamePrefix}, 带前缀的比例由 {@code prefixRatio} 控制. 接口字段总是带前缀,
+ * 否则同一层的多个接口字段会产生相同的key.
+ * <p>
+ * 例如生产环境规模的model(6层, 300+叶子):
+ * <pre>
+ *     SyntheticModel model = SyntheticModel.builder().depth(6).width(60).interfaceRatio(0.1).implementations(3).build();
+ *     Gson gson = Engine.FLAT_STREAMING.create(model.parsers(), model.implementations(), model.getRootType());
+ *     model.writeCorpus(gson, 42L, 1L &lt;&lt; 30, Paths.get("corpus.ndjson"));
+ * </pre>
+ * 每次生成使用新的 ClassLoader, 相同的类名不会冲突.
+ */
+public final class SyntheticModel {
+    private static final String PACKAGE = "com/javedemo/gson/benchmark/synthetic/";
+    private static final String FIELD_NAME_PREFIX = "Lcom/javedemo/gson/jsonAdapter/FieldNamePrefix;";
+    private static final String STRING_DESCRIPTOR = "Ljava/lang/String;";
+    private static final String[] PRIMITIVE_DESCRIPTORS = {"I", "J", "D", "Z"};
+    /**
+     * 第一个实现类的叶子数, 之后每个实现类多一个叶子
+     */
+    private static final int PART_WIDTH = 4;
+    private static final String PART_TYPE_KEY = "partType";
+
+    private final Class<?> rootType;
+    private final Class<?> partType;
+    private final Class<?>[] partImplTypes;
+    private final int leafCount;
+
+    private SyntheticModel(Class<?> rootType, Class<?> partType, Class<?>[] partImplTypes, int leafCount) {
+        this.rootType = rootType;
+        this.partType = partType;
+        this.partImplTypes = partImplTypes;
+        this.leafCount = leafCount;
+    }
+
+    /**
+     * @param depth          对象的层数, 至少为1
+     * @param width          每层的字段数, 不含指向下一层的字段
+     * @param interfaceRatio 每层字段中接口字段的比例
+     */
+    public static SyntheticModel generate(int depth, int width, double interfaceRatio) {
+        return builder().depth(depth).width(width).interfaceRatio(interfaceRatio).build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private int depth = 1;
+        private int width = 8;
+        private double interfaceRatio;
+        private int implementations = 1;
+        private double prefixRatio = 1;
+        private double stringRatio = 0.25;
+
+        private Builder() {
+        }
+
+        /**
+         * 对象的层数, 至少为1
+         */
+        public Builder depth(int depth) {
+            this.depth = depth;
+            return this;
+        }
+
+        /**
+         * 每层的字段数, 不含指向下一层的字段
+         */
+        public Builder width(int width) {
+            this.width = width;
+            return this;
+        }
+
+        /**
+         * 每层字段中接口字段的比例
+         */
+        public Builder interfaceRatio(double interfaceRatio) {
+            this.interfaceRatio = interfaceRatio;
+            return this;
+        }
+
+        /**
+         * 接口 Part 的实现类个数, 每个实现类的字段不同
+         */
+        public Builder implementations(int implementations) {
+            this.implementations = implementations;
+            return this;
+        }
+
+        /**
+         * 指向下一层的字段中带 {@code @FieldNamePrefix} 的比例
+         */
+        public Builder prefixRatio(double prefixRatio) {
+            this.prefixRatio = prefixRatio;
+            return this;
+        }
+
+        /**
+         * 叶子字段中String的比例
+         */
+        public Builder stringRatio(double stringRatio) {
+            this.stringRatio = stringRatio;
+            return this;
+        }
+
+        public SyntheticModel build() {
+            if (depth < 1 || width < 1 || implementations < 1) {
+                throw new IllegalArgumentException("depth, width and implementations must be positive ,depth=" + depth
+                        + ",width=" + width + ",implementations=" + implementations);
+            }
+            checkRatio("interfaceRatio", interfaceRatio);
+            checkRatio("prefixRatio", prefixRatio);
+            checkRatio("stringRatio", stringRatio);
+            int interfaces = (int) Math.round(width * interfaceRatio);
+            GeneratedClassLoader classLoader = new GeneratedClassLoader(SyntheticModel.class.getClassLoader());
+
+            Class<?> partType = classLoader.define(PACKAGE + "Part", partInterface());
+            Class<?>[] partImplTypes = new Class<?>[implementations];
+            for (int k = 0; k < implementations; k++) {
+                String name = PACKAGE + "PartImpl" + k;
+                partImplTypes[k] = classLoader.define(name, clazz(name, leaves("p" + k + "f", PART_WIDTH + k, stringRatio),
+                        0, null, false, PACKAGE + "Part"));
+            }
+            Class<?> rootType = null;
+            // 从最深的一层开始定义
+            for (int level = depth - 1; level >= 0; level--) {
+                String child = level == depth - 1 ? null : PACKAGE + "Level" + (level + 1);
+                String name = PACKAGE + "Level" + level;
+                rootType = classLoader.define(name, clazz(name, leaves("l" + level + "f", width - interfaces, stringRatio),
+                        interfaces, child, spread(level, prefixRatio), null));
+            }
+            return new SyntheticModel(rootType, partType, partImplTypes, depth * (width - interfaces));
+        }
+
+        private static void checkRatio(String name, double ratio) {
+            if (ratio < 0 || ratio > 1) {
+                throw new IllegalArgumentException("ratio must be in [0,1] ," + name + "=" + ratio);
+            }
+        }
+    }
+
+    public Class<?> getRootType() {
+        return rootType;
+    }
+
+    /**
+     * 各层叶子字段的总数, 不含接口字段展开后的叶子
+     */
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public Map<Class, FlatReflectionTypeAdapterFactory.InterfaceFieldParser> parsers() {
+        SubTypeRegistry.Builder builder = SubTypeRegistry.builder().subTypes(partType, PART_TYPE_KEY);
+        for (int k = 0; k < partImplTypes.length; k++) {
+            builder.subType("impl" + k, partImplTypes[k]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 不支持接口字段的引擎只能按第一个实现类读写, 所以对比这些引擎时只使用一个实现类.
+     */
+    public Map<Class<?>, Class<?>> implementations() {
+        return Collections.singletonMap(partType, partImplTypes[0]);
+    }
+
+    /**
+     * 按 seed 填充所有字段, 相同的 seed 得到相同的对象.
+     */
+    public Object newInstance(long seed) {
+        return newInstance(new Random(seed));
+    }
+
+    /**
+     * 按 random 填充所有字段, 接口字段随机选择实现类.
+     */
+    public Object newInstance(Random random) {
+        return fill(newInstance(rootType), random);
+    }
+
+    /**
+     * 按行写出json(NDJSON), 直到文件不小于 targetBytes. 相同的 seed 和 gson 得到相同的文件.
+     *
+     * @return 写出的记录数
+     */
+    public long writeCorpus(Gson gson, long seed, long targetBytes, Path path) throws IOException {
+        Random random = new Random(seed);
+        long written = 0;
+        long records = 0;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+            while (written < targetBytes) {
+                byte[] line = gson.toJson(newInstance(random)).getBytes(StandardCharsets.UTF_8);
+                out.write(line);
+                out.write('\n');
+                written += line.length + 1;
+                records++;
+            }
+        }
+        return records;
+    }
+
+    private Object fill(Object instance, Random random) {
+        try {
+            for (Field field : instance.getClass().getFields()) {
+                Class<?> type = field.getType();
+                if (type == int.class) {
+                    field.setInt(instance, random.nextInt(100000));
+                } else if (type == long.class) {
+                    field.setLong(instance, random.nextLong());
+                } else if (type == double.class) {
+                    field.setDouble(instance, random.nextInt(1000000) / 100.0);
+                } else if (type == boolean.class) {
+                    field.setBoolean(instance, random.nextBoolean());
+                } else if (type == String.class) {
+                    field.set(instance, "v" + Integer.toString(random.nextInt(1 << 20), 36));
+                } else if (type == partType) {
+                    field.set(instance, fill(newInstance(partImplTypes[random.nextInt(partImplTypes.length)]), random));
+                } else {
+                    field.set(instance, fill(newInstance(type), random));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+        return instance;
+    }
+
+    private static Object newInstance(Class<?> type) {
+        try {
+            return type.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * ratio 比例的下标返回true, 均匀分布
+     */
+    private static boolean spread(int index, double ratio) {
+        return Math.floor((index + 1) * ratio) > Math.floor(index * ratio);
+    }
+
+    /**
+     * @return 字段名 -> 字段描述符
+     */
+    private static Map<String, String> leaves(String namePrefix, int count, double stringRatio) {
+        Map<String, String> leaves = new LinkedHashMap<>();
+        int primitives = 0;
+        for (int i = 0; i < count; i++) {
+            leaves.put(namePrefix + i, spread(i, stringRatio)
+                    ? STRING_DESCRIPTOR : PRIMITIVE_DESCRIPTORS[primitives++ % PRIMITIVE_DESCRIPTORS.length]);
+        }
+        return leaves;
+    }
+
+    private static byte[] partInterface() {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, PACKAGE + "Part", null, "java/lang/Object", null);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * @param child         下一层的类名, 没有时为null
+     * @param prefixedChild 指向下一层的字段是否带前缀
+     */
+    private static byte[] clazz(String internalName, Map<String, String> leaves, int interfaces, String child,
+                                boolean prefixedChild, String implemented) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName, null, "java/lang/Object",
+                implemented == null ? null : new String[]{implemented});
+
+        for (Map.Entry<String, String> leaf : leaves.entrySet()) {
+            cw.visitField(Opcodes.ACC_PUBLIC, leaf.getKey(), leaf.getValue(), null, null).visitEnd();
+        }
+        String simpleName = internalName.substring(internalName.lastIndexOf('/') + 1);
+        for (int i = 0; i < interfaces; i++) {
+            // Level3 -> l3i0
+            field(cw, "l" + simpleName.substring("Level".length()) + "i" + i, "L" + PACKAGE + "Part;", true);
+        }
+        if (child != null) {
+            field(cw, "n", "L" + child + ";", prefixedChild);
+        }
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void field(ClassWriter cw, String name, String descriptor, boolean prefixed) {
+        FieldVisitor fv = cw.visitField(Opcodes.ACC_PUBLIC, name, descriptor, null, null);
+        if (prefixed) {
+            AnnotationVisitor av = fv.visitAnnotation(FIELD_NAME_PREFIX, true);
+            av.visit("value", name);
+            av.visitEnd();
+        }
+        fv.visitEnd();
+    }
+
+    private static final class GeneratedClassLoader extends ClassLoader {
+        private final Map<String, Class<?>> defined = new HashMap<>();
+
+        GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String internalName, byte[] bytes) {
+            String name = internalName.replace('/', '.');
+            Class<?> clazz = defineClass(name, bytes, 0, bytes.length);
+            defined.put(name, clazz);
+            return clazz;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            Class<?> clazz = defined.get(name);
+            if (clazz == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return clazz;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.internal.ConstructorConstructor;
+import com.google.gson.internal.ObjectConstructor;
+import com.google.gson.reflect.TypeToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FieldPathAccessor} 与逐层反射 {@link Field#get}/{@link Field#set} 的对比, 只测路径访问, 不含json读写.
+ * <p>
+ * 放在 simpleflat 包下以访问包内的 FieldPathAccessor. 8条路径共用同一处调用, 与平铺adapter中的用法一致.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FieldPathAccessorBenchmark {
+
+    private static final String[][] PATHS = {
+            {"note"}, {"buyer", "name"}, {"buyer", "age"}, {"buyer", "email"},
+            {"seller", "vip"}, {"seller", "address", "city"}, {"seller", "address", "street"}, {"seller", "address", "zip"}};
+    private static final Object[] VALUES = {"urgent", "buyer", 30, "buyer@example.com", true, "Hangzhou", "Wensan Road", 310000};
+
+    private FieldPathAccessor[] accessors;
+    private Field[][] fieldPaths;
+    private ObjectConstructor<?>[][] constructors;
+    private Order order;
+
+    @Setup
+    public void setup() throws NoSuchFieldException {
+        ConstructorConstructor constructorConstructor = new ConstructorConstructor(Collections.emptyMap());
+        accessors = new FieldPathAccessor[PATHS.length];
+        fieldPaths = new Field[PATHS.length][];
+        constructors = new ObjectConstructor<?>[PATHS.length][];
+        for (int i = 0; i < PATHS.length; i++) {
+            List<Field> fieldPath = new ArrayList<>();
+            Class<?> type = Order.class;
+            for (String name : PATHS[i]) {
+                Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                fieldPath.add(field);
+                type = field.getType();
+            }
+            accessors[i] = FieldPathAccessor.of(fieldPath, constructorConstructor);
+            fieldPaths[i] = fieldPath.toArray(new Field[0]);
+            constructors[i] = new ObjectConstructor<?>[fieldPath.size() - 1];
+            for (int level = 0; level < fieldPath.size() - 1; level++) {
+                constructors[i][level] = constructorConstructor.get(TypeToken.get(fieldPath.get(level).getType()));
+            }
+        }
+        order = new Order();
+        for (int i = 0; i < PATHS.length; i++) {
+            accessors[i].set(accessors[i].getOrCreateHolder(order), VALUES[i]);
+        }
+    }
+
+    @Benchmark
+    public void getAccessor(Blackhole bh) {
+        for (FieldPathAccessor accessor : accessors) {
+            bh.consume(accessor.get(order));
+        }
+    }
+
+    @Benchmark
+    public void getReflective(Blackhole bh) throws IllegalAccessException {
+        for (Field[] fieldPath : fieldPaths) {
+            Object object = order;
+            for (Field field : fieldPath) {
+                if (object == null) {
+                    break;
+                }
+                object = field.get(object);
+            }
+            bh.consume(object);
+        }
+    }
+
+    @Benchmark
+    public Order setAccessor() {
+        Order root = new Order();
+        for (int i = 0; i < accessors.length; i++) {
+            accessors[i].set(accessors[i].getOrCreateHolder(root), VALUES[i]);
+        }
+        return root;
+    }
+
+    @Benchmark
+    public Order setReflective() throws IllegalAccessException {
+        Order root = new Order();
+        for (int i = 0; i < fieldPaths.length; i++) {
+            Field[] fieldPath = fieldPaths[i];
+            Object object = root;
+            for (int level = 0; level < fieldPath.length - 1; level++) {
+                Object child = fieldPath[level].get(object);
+                if (child == null) {
+                    child = constructors[i][level].construct();
+                    fieldPath[level].set(object, child);
+                }
+                object = child;
+            }
+            fieldPath[fieldPath.length - 1].set(object, VALUES[i]);
+        }
+        return root;
+    }
+
+    static class Order {
+        private String note;
+        private Customer buyer;
+        private Customer seller;
+    }
+
+    static class Customer {
+        private String name;
+        private int age;
+        private String email;
+        private boolean vip;
+        private Address address;
+    }
+
+    static class Address {
+        private String city;
+        private String street;
+        private int zip;
+    }
+}
@@ -0,0 +1,49 @@
+package com.javedemo.gson.jsonAdapter;
+
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 声明接口的全部实现类, 平铺时不再需要手写 InterfaceFieldParser.
+ * <pre>
+ * &#64;FlatSubTypes(typeName = "IWindowType", value = {
+ *         &#64;FlatSubTypes.SubType(value = Window.class, name = "window_实现1")})
+ * interface IWindow {}
+ * </pre>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface FlatSubTypes {
+
+    /**
+     * 类型标识的key, 平铺后为 {@code <prefix>.<typeName>}
+     * @return
+     */
+    String typeName();
+
+    /**
+     * 全部实现类, 序列化时按对象的实际类型选择
+     * @return
+     */
+    SubType[] value();
+
+    @Target({})
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface SubType {
+
+        /**
+         * 实现类
+         * @return
+         */
+        Class<?> value();
+
+        /**
+         * 类型标识的值
+         * @return
+         */
+        String name();
+    }
+}
@@ -0,0 +1,238 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 默认的 {@link FlatMetrics}: 每个类型一组 {@link LongAdder}, 多线程记录时分散到不同的cell, 没有锁.
+ * 耗时按2的幂分成64个桶, 用于估算分位数.
+ * <p>
+ * Usage:
+ * <pre>
+ *     DefaultFlatMetrics metrics = new DefaultFlatMetrics();
+ *     metrics.registerMBean("orderGson");   // com.javedemo.gson:type=FlatMetrics,name="orderGson"
+ *     FlatReflectionTypeAdapterFactory.injectInto(gson, parsers, true).setMetrics(metrics);
+ * </pre>
+ */
+public final class DefaultFlatMetrics implements FlatMetrics, FlatMetricsMXBean {
+    private final ConcurrentMap<Class<?>, TypeStats> types = new ConcurrentHashMap<>();
+
+    @Override
+    public TypeMetrics forType(Class<?> type) {
+        TypeStats stats = types.get(type);
+        if (stats == null) {
+            stats = new TypeStats(type);
+            TypeStats previous = types.putIfAbsent(type, stats);
+            if (previous != null) {
+                stats = previous;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 注册到 platform MBeanServer.
+     *
+     * @param name ObjectName 中的 name, 区分同一个进程中的多个 Gson
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("com.javedemo.gson:type=FlatMetrics,name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new RuntimeException("register flat metrics mbean failed ,name=" + name, e);
+        }
+    }
+
+    /**
+     * 某个类型的指标快照, 没有记录过时为null
+     */
+    public FlatTypeStats getTypeStats(Class<?> type) {
+        TypeStats stats = types.get(type);
+        return stats == null ? null : stats.snapshot();
+    }
+
+    @Override
+    public List<FlatTypeStats> getTypeStats() {
+        List<FlatTypeStats> result = new ArrayList<>();
+        for (TypeStats stats : types.values()) {
+            result.add(stats.snapshot());
+        }
+        result.sort(Comparator.comparing(FlatTypeStats::getType));
+        return result;
+    }
+
+    @Override
+    public long getReadCount() {
+        long count = 0;
+        for (TypeStats stats : types.values()) {
+            count += stats.readLatency.count();
+        }
+        return count;
+    }
+
+    @Override
+    public long getWriteCount() {
+        long count = 0;
+        for (TypeStats stats : types.values()) {
+            count += stats.writeLatency.count();
+        }
+        return count;
+    }
+
+    @Override
+    public long getSkippedKeys() {
+        long count = 0;
+        for (TypeStats stats : types.values()) {
+            count += stats.skippedKeys.sum();
+        }
+        return count;
+    }
+
+    /**
+     * 清空计数, 已经创建的adapter持有的 {@link TypeMetrics} 继续有效.
+     */
+    @Override
+    public void reset() {
+        for (TypeStats stats : types.values()) {
+            stats.reset();
+        }
+    }
+
+    private static final class TypeStats implements TypeMetrics {
+        final Class<?> type;
+        final Latency readLatency = new Latency();
+        final LongAdder readFields = new LongAdder();
+        final LongAdder skippedKeys = new LongAdder();
+        final LongAdder readDynamicResolutions = new LongAdder();
+        final Latency writeLatency = new Latency();
+        final LongAdder writeFields = new LongAdder();
+        final LongAdder writeDynamicResolutions = new LongAdder();
+        final LongAdder planBuildCount = new LongAdder();
+        final LongAdder planBuildNanos = new LongAdder();
+
+        TypeStats(Class<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        public void recordRead(long nanos, int fields, int skippedKeys, int dynamicResolutions) {
+            readLatency.record(nanos);
+            readFields.add(fields);
+            if (skippedKeys != 0) {
+                this.skippedKeys.add(skippedKeys);
+            }
+            if (dynamicResolutions != 0) {
+                readDynamicResolutions.add(dynamicResolutions);
+            }
+        }
+
+        @Override
+        public void recordWrite(long nanos, int fields, int dynamicResolutions) {
+            writeLatency.record(nanos);
+            writeFields.add(fields);
+            if (dynamicResolutions != 0) {
+                writeDynamicResolutions.add(dynamicResolutions);
+            }
+        }
+
+        @Override
+        public void recordPlanBuild(long nanos) {
+            planBuildCount.increment();
+            planBuildNanos.add(nanos);
+        }
+
+        FlatTypeStats snapshot() {
+            return new FlatTypeStats(type.getName(),
+                    readLatency.count(), readLatency.totalNanos.sum(), readLatency.maxNanos.get(), readLatency.percentile(0.5), readLatency.percentile(0.99),
+                    readFields.sum(), skippedKeys.sum(), readDynamicResolutions.sum(),
+                    writeLatency.count(), writeLatency.totalNanos.sum(), writeLatency.maxNanos.get(), writeLatency.percentile(0.5), writeLatency.percentile(0.99),
+                    writeFields.sum(), writeDynamicResolutions.sum(), planBuildCount.sum(), planBuildNanos.sum());
+        }
+
+        void reset() {
+            readLatency.reset();
+            readFields.reset();
+            skippedKeys.reset();
+            readDynamicResolutions.reset();
+            writeLatency.reset();
+            writeFields.reset();
+            writeDynamicResolutions.reset();
+            planBuildCount.reset();
+            planBuildNanos.reset();
+        }
+    }
+
+    /**
+     * 耗时直方图, 第i个桶记录 [2^i, 2^(i+1)) 纳秒的次数, 0纳秒记在第0个桶.
+     */
+    static final class Latency {
+        final LongAdder[] buckets = new LongAdder[64];
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        Latency() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            buckets[63 - Long.numberOfLeadingZeros(nanos | 1)].increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        long count() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        /**
+         * @return 分位数所在桶的上界, 不超过记录到的最大值; 没有记录时为0
+         */
+        long percentile(double quantile) {
+            long[] counts = new long[buckets.length];
+            long total = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    long upper = i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                    return Math.min(upper, maxNanos.get());
+                }
+            }
+            return maxNanos.get();
+        }
+
+        void reset() {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+            totalNanos.reset();
+            maxNanos.reset();
+        }
+    }
+}
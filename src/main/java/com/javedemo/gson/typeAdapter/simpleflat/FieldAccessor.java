@@ -0,0 +1,24 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+/**
+ * 单个字段的读写, 由 {@link FieldAccessorGenerator} 为每个字段生成一个子类.
+ * <p>
+ * 生成类把字段的 {@link java.lang.invoke.MethodHandle} 存在 static final 字段里, 每个字段有自己的 invokeExact 调用点,
+ * JIT 可以把它当作常量内联成字段读写. 基本类型/String字段生成的是 {@link LeafAccessor} 的子类, 另外提供不装箱的 get/set.
+ */
+abstract class FieldAccessor {
+
+    /**
+     * 读取字段, 基本类型装箱返回.
+     *
+     * @param holder 持有该字段的对象, 不能为null
+     */
+    abstract Object getObject(Object holder);
+
+    /**
+     * 设置字段, 基本类型字段的 value 需为对应的包装类型且不能为null.
+     *
+     * @param holder 持有该字段的对象, 不能为null
+     */
+    abstract void setObject(Object holder, Object value);
+}
@@ -0,0 +1,183 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 为每个字段生成一个 {@link FieldAccessor} 子类, 基本类型/String字段继承 {@link LeafKind#accessorType}(如 {@link LeafAccessor.OfInt}),
+ * 其他字段直接继承 {@link FieldAccessor}.
+ * <p>
+ * 生成的类只依赖字段本身, 与Gson和平铺路径无关, 按字段缓存: 每个字段最多生成一个类, 所有factory共用.
+ * <pre>
+ * static final MethodHandle GETTER; // (Object)F
+ * static final MethodHandle SETTER; // (Object, F)void
+ *
+ * F get(Object holder) { return (F) GETTER.invokeExact(holder); }
+ * void set(Object holder, F value) { SETTER.invokeExact(holder, value); }
+ * </pre>
+ * 其他字段 F 为Object, 方法名为 getObject/setObject. 生成失败时回退到反射的 {@link Field#get}/{@link Field#set}.
+ */
+final class FieldAccessorGenerator {
+    private static final Logger logger = LogManager.getLogger(FieldAccessorGenerator.class);
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final String GENERATOR = Type.getInternalName(FieldAccessorGenerator.class);
+    private static final String METHOD_HANDLE = Type.getInternalName(MethodHandle.class);
+    private static final String METHOD_HANDLE_DESC = Type.getDescriptor(MethodHandle.class);
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    private static final ConcurrentMap<String, MethodHandle[]> CLASS_DATA = new ConcurrentHashMap<>();
+    /**
+     * 声明类 -> 字段名 -> accessor
+     */
+    private static final ClassValue<ConcurrentMap<String, FieldAccessor>> ACCESSORS = new ClassValue<ConcurrentMap<String, FieldAccessor>>() {
+        @Override
+        protected ConcurrentMap<String, FieldAccessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private FieldAccessorGenerator() {
+    }
+
+    /**
+     * 生成类的静态初始化块调用, 取回生成时准备好的 getter/setter.
+     */
+    static MethodHandle[] takeClassData(String className) {
+        return CLASS_DATA.remove(className);
+    }
+
+    /**
+     * @param field 已经 {@link Field#setAccessible(boolean)} 的字段
+     * @return 字段的accessor, 基本类型/String字段生成成功时是 {@link LeafAccessor}
+     */
+    static FieldAccessor generate(Field field) {
+        return ACCESSORS.get(field.getDeclaringClass()).computeIfAbsent(field.getName(), name -> defineClass(field));
+    }
+
+    private static FieldAccessor defineClass(Field field) {
+        LeafKind kind = LeafKind.ofType(field.getType());
+        Class<?> fieldType = kind == null ? Object.class : field.getType();
+        String className = FieldAccessor.class.getName() + "$$" + field.getDeclaringClass().getSimpleName() + "$$" + field.getName()
+                + "$$" + COUNTER.incrementAndGet();
+        try {
+            MethodHandle getter = LOOKUP.unreflectGetter(field).asType(MethodType.methodType(fieldType, Object.class));
+            MethodHandle setter = LOOKUP.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, fieldType));
+            byte[] bytes = generateClass(className.replace('.', '/'), kind);
+            CLASS_DATA.put(className, new MethodHandle[]{getter, setter});
+            Class<?> accessorClass = LOOKUP.defineClass(bytes);
+            return (FieldAccessor) accessorClass.getDeclaredConstructor().newInstance();
+        } catch (Exception | LinkageError e) {
+            CLASS_DATA.remove(className);
+            logger.warn("generate field accessor failed, fallback to reflection ,field=" + field, e);
+            return new ReflectiveFieldAccessor(field);
+        }
+    }
+
+    private static byte[] generateClass(String internalName, LeafKind kind) {
+        String base = Type.getInternalName(kind == null ? FieldAccessor.class : kind.accessorType);
+        Type type = Type.getType(kind == null ? Object.class : kind.type);
+        String getName = kind == null ? "getObject" : "get";
+        String setName = kind == null ? "setObject" : "set";
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, internalName, null, base, null);
+        int access = Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL;
+        cw.visitField(access, "GETTER", METHOD_HANDLE_DESC, null, null).visitEnd();
+        cw.visitField(access, "SETTER", METHOD_HANDLE_DESC, null, null).visitEnd();
+
+        generateStaticInit(cw, internalName);
+        generateConstructor(cw, base);
+
+        MethodVisitor mv = cw.visitMethod(0, getName, "(Ljava/lang/Object;)" + type.getDescriptor(), null, null);
+        mv.visitCode();
+        mv.visitFieldInsn(Opcodes.GETSTATIC, internalName, "GETTER", METHOD_HANDLE_DESC);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", "(Ljava/lang/Object;)" + type.getDescriptor(), false);
+        mv.visitInsn(type.getOpcode(Opcodes.IRETURN));
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(0, setName, "(Ljava/lang/Object;" + type.getDescriptor() + ")V", null, null);
+        mv.visitCode();
+        mv.visitFieldInsn(Opcodes.GETSTATIC, internalName, "SETTER", METHOD_HANDLE_DESC);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitVarInsn(type.getOpcode(Opcodes.ILOAD), 2);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", "(Ljava/lang/Object;" + type.getDescriptor() + ")V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void generateStaticInit(ClassWriter cw, String internalName) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+        mv.visitCode();
+        mv.visitLdcInsn(internalName.replace('/', '.'));
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, GENERATOR, "takeClassData", "(Ljava/lang/String;)[" + METHOD_HANDLE_DESC, false);
+        mv.visitVarInsn(Opcodes.ASTORE, 0);
+        String[] names = {"GETTER", "SETTER"};
+        for (int i = 0; i < names.length; i++) {
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitLdcInsn(i);
+            mv.visitInsn(Opcodes.AALOAD);
+            mv.visitFieldInsn(Opcodes.PUTSTATIC, internalName, names[i], METHOD_HANDLE_DESC);
+        }
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void generateConstructor(ClassWriter cw, String base) {
+        MethodVisitor mv = cw.visitMethod(0, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, base, "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 生成失败时的回退, 不是 {@link LeafAccessor}, 叶子字段仍走 TypeAdapter.
+     */
+    private static final class ReflectiveFieldAccessor extends FieldAccessor {
+        private final Field field;
+
+        ReflectiveFieldAccessor(Field field) {
+            this.field = field;
+        }
+
+        @Override
+        Object getObject(Object holder) {
+            try {
+                return field.get(holder);
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        @Override
+        void setObject(Object holder, Object value) {
+            try {
+                field.set(holder, value);
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.internal.ConstructorConstructor;
+import com.google.gson.internal.ObjectConstructor;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+/**
+ * 平铺字段路径 {@code fieldPath} 的访问器.
+ * <p>
+ * 路径上每一层通过 {@link FieldAccessorGenerator} 生成的 {@link FieldAccessor} 读写, 调用方不再自己逐层调用反射的 {@link Field#get}/{@link Field#set}.
+ * {@link #of} 返回 {@link FieldPathAccessorGenerator} 为每条路径生成的子类, 各层的 FieldAccessor 是子类的 static final 常量,
+ * 逐层调用可以内联成字段读写; 这里的循环实现只在生成失败时使用.
+ * <p>
+ * FieldPathAccessorBenchmark(8条路径, 深度1~3, ns/op): get 37, 构建时组合 MethodHandle 调用链存在实例字段中的实现为 66,
+ * 逐层反射为 188; getOrCreateHolder + set 107 / 113 / 252, 主要是中间层对象的分配.
+ */
+class FieldPathAccessor {
+
+    /**
+     * 路径上每一层字段的accessor
+     */
+    final FieldAccessor[] fields;
+    /**
+     * 第i个中间层对象的构造器, 长度为 fieldPath.size() - 1
+     */
+    final ObjectConstructor<?>[] constructors;
+
+    FieldPathAccessor(FieldAccessor[] fields, ObjectConstructor<?>[] constructors) {
+        this.fields = fields;
+        this.constructors = constructors;
+    }
+
+    /**
+     * @param fieldPath              已经 {@link Field#setAccessible(boolean)} 的字段路径
+     * @param constructorConstructor 构建时为每个中间层解析好 {@link ObjectConstructor}, 用于构造为null的中间层对象
+     */
+    static FieldPathAccessor of(List<Field> fieldPath, ConstructorConstructor constructorConstructor) {
+        FieldAccessor[] fields = new FieldAccessor[fieldPath.size()];
+        ObjectConstructor<?>[] constructors = new ObjectConstructor<?>[fieldPath.size() - 1];
+        for (int i = 0; i < fieldPath.size(); i++) {
+            Field field = fieldPath.get(i);
+            fields[i] = FieldAccessorGenerator.generate(field);
+            if (i < constructors.length) {
+                constructors[i] = constructorConstructor.get(TypeToken.get(field.getType()));
+            }
+        }
+        FieldPathAccessor accessor = FieldPathAccessorGenerator.generate(fieldPath, fields, constructors);
+        return accessor == null ? new FieldPathAccessor(fields, constructors) : accessor;
+    }
+
+    /**
+     * 按路径取值, 任意一层(包括root)为null时返回null.
+     */
+    Object get(Object root) {
+        Object object = root;
+        for (FieldAccessor field : fields) {
+            if (object == null) {
+                return null;
+            }
+            object = field.getObject(object);
+        }
+        return object;
+    }
+
+    /**
+     * 步步推进, 初始化每层的object, 返回直接持有最后一个字段的对象.
+     */
+    Object getOrCreateHolder(Object root) {
+        Object object = root;
+        for (int i = 0; i < constructors.length; i++) {
+            object = getOrCreateChild(i, object);
+        }
+        return object;
+    }
+
+    /**
+     * 取第 level 个中间层对象, 为null时构造并赋值到 parent 上.
+     *
+     * @param level  中间层在 fieldPath 中的下标, 小于 {@code fieldPath.size() - 1}
+     * @param parent 持有该中间层字段的对象
+     */
+    Object getOrCreateChild(int level, Object parent) {
+        FieldAccessor field = fields[level];
+        Object child = field.getObject(parent);
+        if (child == null) {
+            child = constructors[level].construct();
+            field.setObject(parent, child);
+        }
+        return child;
+    }
+
+    /**
+     * 设置最后一个字段, holder 为 {@link #getOrCreateHolder(Object)} 的返回值.
+     */
+    void set(Object holder, Object value) {
+        leaf().setObject(holder, value);
+    }
+
+    /**
+     * 按路径取到直接持有最后一个字段的对象, 任意一层(包括root)为null时返回null.
+     */
+    Object getParent(Object root) {
+        Object object = root;
+        for (int i = 0; i < constructors.length && object != null; i++) {
+            object = fields[i].getObject(object);
+        }
+        return object;
+    }
+
+    /**
+     * 读取最后一个字段, holder 为直接持有最后一个字段的对象, 不能为null.
+     */
+    Object getLeaf(Object holder) {
+        return leaf().getObject(holder);
+    }
+
+    /**
+     * 最后一个字段的accessor, 基本类型/String字段为 {@link LeafAccessor}
+     */
+    final FieldAccessor leaf() {
+        return fields[fields.length - 1];
+    }
+}
@@ -0,0 +1,283 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.internal.ObjectConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 为每条字段路径生成一个 {@link FieldPathAccessor} 子类, 路径上每一层的 {@link FieldAccessor} 存在 static final 字段里,
+ * 逐层调用的接收者是常量, JIT 可以一直内联到字段读写.
+ * <pre>
+ * static final FieldAccessor F0, F1, F2;
+ *
+ * Object get(Object root) {
+ *     if (root == null) return null;
+ *     Object o = F0.getObject(root);
+ *     if (o == null) return null;
+ *     o = F1.getObject(o);
+ *     ...
+ * }
+ * </pre>
+ * 中间层的 {@link ObjectConstructor} 与Gson有关, 仍由构造器传入. 生成的类按路径缓存, 所有factory共用, 生成失败时也缓存, 返回null.
+ */
+final class FieldPathAccessorGenerator {
+    private static final Logger logger = LogManager.getLogger(FieldPathAccessorGenerator.class);
+
+    private static final String BASE = Type.getInternalName(FieldPathAccessor.class);
+    private static final String GENERATOR = Type.getInternalName(FieldPathAccessorGenerator.class);
+    private static final String FIELD_ACCESSOR = Type.getInternalName(FieldAccessor.class);
+    private static final String FIELD_ACCESSOR_DESC = Type.getDescriptor(FieldAccessor.class);
+    private static final String OBJECT_CONSTRUCTOR = Type.getInternalName(ObjectConstructor.class);
+    private static final String CONSTRUCTOR_DESC = "([" + FIELD_ACCESSOR_DESC + "[" + Type.getDescriptor(ObjectConstructor.class) + ")V";
+    private static final String GETTER_DESC = "(Ljava/lang/Object;)Ljava/lang/Object;";
+    private static final String SETTER_DESC = "(Ljava/lang/Object;Ljava/lang/Object;)V";
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    private static final ConcurrentMap<String, FieldAccessor[]> CLASS_DATA = new ConcurrentHashMap<>();
+    /**
+     * 路径第一层的声明类 -> 路径 -> 生成类的构造器, 生成失败时为empty
+     */
+    private static final ClassValue<ConcurrentMap<List<Field>, Optional<Constructor<?>>>> CLASSES = new ClassValue<ConcurrentMap<List<Field>, Optional<Constructor<?>>>>() {
+        @Override
+        protected ConcurrentMap<List<Field>, Optional<Constructor<?>>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private FieldPathAccessorGenerator() {
+    }
+
+    /**
+     * 生成类的静态初始化块调用, 取回路径上每一层的accessor.
+     */
+    static FieldAccessor[] takeClassData(String className) {
+        return CLASS_DATA.remove(className);
+    }
+
+    /**
+     * @param fields       {@link FieldAccessorGenerator#generate} 得到的每一层的accessor
+     * @param constructors 中间层的构造器
+     * @return 生成类的实例, 生成失败时返回null
+     */
+    static FieldPathAccessor generate(List<Field> fieldPath, FieldAccessor[] fields, ObjectConstructor<?>[] constructors) {
+        Optional<Constructor<?>> constructor = CLASSES.get(fieldPath.get(0).getDeclaringClass())
+                .computeIfAbsent(new ArrayList<>(fieldPath), path -> defineClass(path, fields));
+        if (!constructor.isPresent()) {
+            return null;
+        }
+        try {
+            return (FieldPathAccessor) constructor.get().newInstance(fields, constructors);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Optional<Constructor<?>> defineClass(List<Field> fieldPath, FieldAccessor[] fields) {
+        String className = FieldPathAccessor.class.getName() + "$$" + fieldPath.get(0).getDeclaringClass().getSimpleName()
+                + "$$" + COUNTER.incrementAndGet();
+        try {
+            byte[] bytes = generateClass(className.replace('.', '/'), fields.length);
+            CLASS_DATA.put(className, fields.clone());
+            Class<?> accessorClass = MethodHandles.lookup().defineClass(bytes);
+            return Optional.of(accessorClass.getDeclaredConstructor(FieldAccessor[].class, ObjectConstructor[].class));
+        } catch (Exception | LinkageError e) {
+            CLASS_DATA.remove(className);
+            logger.warn("generate field path accessor failed, fallback to loop ,path=" + fieldPath, e);
+            return Optional.empty();
+        }
+    }
+
+    private static byte[] generateClass(String internalName, int depth) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, internalName, null, BASE, null);
+        for (int i = 0; i < depth; i++) {
+            cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "F" + i, FIELD_ACCESSOR_DESC, null, null).visitEnd();
+        }
+
+        generateStaticInit(cw, internalName, depth);
+        generateConstructor(cw);
+        generateWalk(cw, internalName, "get", depth);
+        generateWalk(cw, internalName, "getParent", depth - 1);
+        if (depth > 1) {
+            generateGetOrCreateChild(cw, internalName, depth - 1);
+            generateGetOrCreateHolder(cw, internalName, depth - 1);
+        }
+
+        MethodVisitor mv = cw.visitMethod(0, "set", SETTER_DESC, null, null);
+        mv.visitCode();
+        mv.visitFieldInsn(Opcodes.GETSTATIC, internalName, "F" + (depth - 1), FIELD_ACCESSOR_DESC);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, FIELD_ACCESSOR, "setObject", SETTER_DESC, false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(0, "getLeaf", GETTER_DESC, null, null);
+        mv.visitCode();
+        mv.visitFieldInsn(Opcodes.GETSTATIC, internalName, "F" + (depth - 1), FIELD_ACCESSOR_DESC);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, FIELD_ACCESSOR, "getObject", GETTER_DESC, false);
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void generateStaticInit(ClassWriter cw, String internalName, int depth) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+        mv.visitCode();
+        mv.visitLdcInsn(internalName.replace('/', '.'));
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, GENERATOR, "takeClassData", "(Ljava/lang/String;)[" + FIELD_ACCESSOR_DESC, false);
+        mv.visitVarInsn(Opcodes.ASTORE, 0);
+        for (int i = 0; i < depth; i++) {
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitLdcInsn(i);
+            mv.visitInsn(Opcodes.AALOAD);
+            mv.visitFieldInsn(Opcodes.PUTSTATIC, internalName, "F" + i, FIELD_ACCESSOR_DESC);
+        }
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void generateConstructor(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(0, "<init>", CONSTRUCTOR_DESC, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, BASE, "<init>", CONSTRUCTOR_DESC, false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 沿前 levels 层取值, 任意一层为null时返回null. get 取全部层, getParent 取到最后一层之前.
+     */
+    private static void generateWalk(ClassWriter cw, String internalName, String name, int levels) {
+        MethodVisitor mv = cw.visitMethod(0, name, GETTER_DESC, null, null);
+        mv.visitCode();
+        final int object = 1;
+        Label returnNull = new Label();
+        for (int i = 0; i < levels; i++) {
+            mv.visitVarInsn(Opcodes.ALOAD, object);
+            mv.visitJumpInsn(Opcodes.IFNULL, returnNull);
+            mv.visitFieldInsn(Opcodes.GETSTATIC, internalName, "F" + i, FIELD_ACCESSOR_DESC);
+            mv.visitVarInsn(Opcodes.ALOAD, object);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, FIELD_ACCESSOR, "getObject", GETTER_DESC, false);
+            mv.visitVarInsn(Opcodes.ASTORE, object);
+        }
+        mv.visitVarInsn(Opcodes.ALOAD, object);
+        mv.visitInsn(Opcodes.ARETURN);
+        if (levels > 0) {
+            mv.visitLabel(returnNull);
+            mv.visitInsn(Opcodes.ACONST_NULL);
+            mv.visitInsn(Opcodes.ARETURN);
+        }
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * <pre>
+     * switch (level) {
+     *     case i:
+     *         Object child = Fi.getObject(parent);
+     *         if (child == null) {
+     *             child = constructors[i].construct();
+     *             Fi.setObject(parent, child);
+     *         }
+     *         return child;
+     *     default:
+     *         return super.getOrCreateChild(level, parent);
+     * }
+     * </pre>
+     */
+    private static void generateGetOrCreateChild(ClassWriter cw, String internalName, int intermediates) {
+        MethodVisitor mv = cw.visitMethod(0, "getOrCreateChild", "(ILjava/lang/Object;)Ljava/lang/Object;", null, null);
+        mv.visitCode();
+        final int level = 1, parent = 2, child = 3;
+        Label[] labels = new Label[intermediates];
+        for (int i = 0; i < intermediates; i++) {
+            labels[i] = new Label();
+        }
+        Label fallback = new Label();
+        mv.visitVarInsn(Opcodes.ILOAD, level);
+        mv.visitTableSwitchInsn(0, intermediates - 1, fallback, labels);
+        for (int i = 0; i < intermediates; i++) {
+            Label done = new Label();
+            mv.visitLabel(labels[i]);
+            mv.visitFieldInsn(Opcodes.GETSTATIC, internalName, "F" + i, FIELD_ACCESSOR_DESC);
+            mv.visitVarInsn(Opcodes.ALOAD, parent);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, FIELD_ACCESSOR, "getObject", GETTER_DESC, false);
+            mv.visitVarInsn(Opcodes.ASTORE, child);
+            mv.visitVarInsn(Opcodes.ALOAD, child);
+            mv.visitJumpInsn(Opcodes.IFNONNULL, done);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitFieldInsn(Opcodes.GETFIELD, BASE, "constructors", "[" + Type.getDescriptor(ObjectConstructor.class));
+            mv.visitLdcInsn(i);
+            mv.visitInsn(Opcodes.AALOAD);
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, OBJECT_CONSTRUCTOR, "construct", "()Ljava/lang/Object;", true);
+            mv.visitVarInsn(Opcodes.ASTORE, child);
+            mv.visitFieldInsn(Opcodes.GETSTATIC, internalName, "F" + i, FIELD_ACCESSOR_DESC);
+            mv.visitVarInsn(Opcodes.ALOAD, parent);
+            mv.visitVarInsn(Opcodes.ALOAD, child);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, FIELD_ACCESSOR, "setObject", SETTER_DESC, false);
+            mv.visitLabel(done);
+            mv.visitVarInsn(Opcodes.ALOAD, child);
+            mv.visitInsn(Opcodes.ARETURN);
+        }
+        mv.visitLabel(fallback);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ILOAD, level);
+        mv.visitVarInsn(Opcodes.ALOAD, parent);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, BASE, "getOrCreateChild", "(ILjava/lang/Object;)Ljava/lang/Object;", false);
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * <pre>
+     * Object o = root;
+     * o = getOrCreateChild(0, o); ...
+     * return o;
+     * </pre>
+     * 生成类是final的, getOrCreateChild 的调用可以内联, level 为常量时 switch 也被折叠.
+     */
+    private static void generateGetOrCreateHolder(ClassWriter cw, String internalName, int intermediates) {
+        MethodVisitor mv = cw.visitMethod(0, "getOrCreateHolder", GETTER_DESC, null, null);
+        mv.visitCode();
+        final int object = 1;
+        for (int i = 0; i < intermediates; i++) {
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitLdcInsn(i);
+            mv.visitVarInsn(Opcodes.ALOAD, object);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internalName, "getOrCreateChild", "(ILjava/lang/Object;)Ljava/lang/Object;", false);
+            mv.visitVarInsn(Opcodes.ASTORE, object);
+        }
+        mv.visitVarInsn(Opcodes.ALOAD, object);
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+}
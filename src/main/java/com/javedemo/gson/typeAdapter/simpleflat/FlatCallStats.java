@@ -0,0 +1,10 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+/**
+ * 一次顶层读写的计数, 设置了 {@link FlatMetrics} 或者正在录制JFR读写事件 ({@link FlatReadEvent}, {@link FlatWriteEvent}) 时创建, 否则读写路径上传null.
+ */
+final class FlatCallStats {
+    int fields;
+    int skippedKeys;
+    int dynamicResolutions;
+}
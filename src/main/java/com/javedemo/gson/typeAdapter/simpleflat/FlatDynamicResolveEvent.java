@@ -0,0 +1,30 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 反序列化时按类型标识确定接口字段的实现类. 流式读取时包含回放类型标识之前缓存的key,
+ * 先解析成 JsonObject 时包含该字段下全部key的读取. 两种读取方式的 {@link #keysBeforeType} 含义相同.
+ */
+@Name("com.javedemo.gson.FlatDynamicResolve")
+@Label("Flat Dynamic Resolve")
+@Category({"Gson", "Flat"})
+@Description("Resolution of the implementation class of an interface field while reading")
+final class FlatDynamicResolveEvent extends Event {
+    @Label("Interface")
+    Class<?> interfaceType;
+
+    @Label("Implementation")
+    Class<?> implementation;
+
+    @Label("Type Value")
+    String typeValue;
+
+    @Label("Keys Before Type")
+    @Description("Keys of the field that appear before the type key, streaming reads buffer and replay them")
+    int keysBeforeType;
+}
@@ -0,0 +1,139 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/**
+ * 平铺key的UTF-8字节 -> key字符串, 每个binding plan一个, 供 {@link FlatUtf8JsonReader} 使用.
+ * <p>
+ * 构建时预先编码plan中的全部静态key. 读取时直接比较输入中的key字节, 命中则返回plan中的String实例, 不分配对象.
+ * 动态类型实现类的key要读到才知道, 第一次出现时解码成String, 如果 plan 能匹配到该key则加入字典, 之后同样命中.
+ * 字典最多 {@link #MAX_KEYS} 个key, 防止输入中不断出现的新key撑大字典.
+ */
+final class FlatKeyDictionary {
+    static final int MAX_KEYS = 4096;
+
+    private final Predicate<String> learnable;
+    /**
+     * 开放寻址的表, 长度是2的幂, 加入key时整体替换
+     */
+    private volatile Entry[] table;
+    private volatile int size;
+
+    /**
+     * @param keys      plan中的静态key
+     * @param learnable 不在字典中的key是否属于 plan, 属于时加入字典
+     */
+    FlatKeyDictionary(Collection<String> keys, Predicate<String> learnable) {
+        this.learnable = learnable;
+        Entry[] table = new Entry[tableSize(keys.size())];
+        for (String key : keys) {
+            put(table, new Entry(key));
+        }
+        this.table = table;
+        this.size = keys.size();
+    }
+
+    /**
+     * @return {@code bytes[from, to)} 对应的key, 不在字典中时解码
+     */
+    String lookup(byte[] bytes, int from, int to) {
+        int hash = hash(bytes, from, to);
+        Entry[] table = this.table;
+        int mask = table.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            Entry entry = table[i];
+            if (entry == null) {
+                break;
+            }
+            if (entry.hash == hash && Arrays.equals(entry.utf8, 0, entry.utf8.length, bytes, from, to)) {
+                return entry.key;
+            }
+        }
+        String key = new String(bytes, from, to - from, StandardCharsets.UTF_8);
+        if (size < MAX_KEYS && learnable.test(key)) {
+            learn(key);
+        }
+        return key;
+    }
+
+    private synchronized void learn(String key) {
+        if (size >= MAX_KEYS) {
+            return;
+        }
+        Entry entry = new Entry(key);
+        Entry[] table = this.table;
+        if (contains(table, entry)) {
+            return;
+        }
+        Entry[] copy = new Entry[tableSize(size + 1)];
+        for (Entry e : table) {
+            if (e != null) {
+                put(copy, e);
+            }
+        }
+        put(copy, entry);
+        size++;
+        this.table = copy;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 负载因子不超过0.5
+     */
+    private static int tableSize(int keys) {
+        return Integer.highestOneBit(Math.max(keys, 4) * 2 - 1) << 1;
+    }
+
+    private static void put(Entry[] table, Entry entry) {
+        int mask = table.length - 1;
+        int i = entry.hash & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = entry;
+    }
+
+    private static boolean contains(Entry[] table, Entry entry) {
+        int mask = table.length - 1;
+        for (int i = entry.hash & mask; table[i] != null; i = (i + 1) & mask) {
+            if (table[i].key.equals(entry.key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static int hash(byte[] bytes, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        // 低位参与寻址, 混合高位
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * 持有key字典的平铺 adapter
+     */
+    interface Owner {
+        FlatKeyDictionary utf8Keys();
+    }
+
+    private static final class Entry {
+        final String key;
+        final byte[] utf8;
+        final int hash;
+
+        Entry(String key) {
+            this.key = key;
+            this.utf8 = key.getBytes(StandardCharsets.UTF_8);
+            this.hash = FlatKeyDictionary.hash(utf8, 0, utf8.length);
+        }
+    }
+}
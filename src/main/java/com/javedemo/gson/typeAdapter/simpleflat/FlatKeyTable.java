@@ -0,0 +1,239 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 平铺key的完美哈希表, 每个binding plan构建一次.
+ * <p>
+ * plan的key集合是固定的, 构建时选出少数几个能区分全部key的字符位置(从头或从尾数), 哈希只读取key的长度和这几个字符,
+ * 不遍历整个key. 再按 hash-and-displace 为每个桶找到位移, 使全部key落到表中不同的槽, 查找时只需一次 {@code regionMatches} 确认.
+ * <p>
+ * {@code backDoorPrefix.lowerWindowPrefix.windowName} 这样的长key通常只在末尾几个字符上不同, 比
+ * {@link String#hashCode()} + {@link String#equals} 少读大部分字符, 也不需要链表或探测.
+ * 找不到满足条件的位置或位移时 {@link #build} 返回null, 调用方回退到原来的查找方式.
+ *
+ * @param <F> 字段类型
+ */
+final class FlatKeyTable<F> {
+    /**
+     * 最多读取的字符数, 超过时认为这组key不适合
+     */
+    static final int MAX_POSITIONS = 8;
+    private static final int MAX_SEEDS = 16;
+    private static final int MAX_DISPLACEMENT = 1 << 16;
+
+    /**
+     * 大于等于0时为从头数的位置, 小于0时为从尾数的位置, 如-1为最后一个字符
+     */
+    private final int[] positions;
+    private final int seed;
+    private final int[] displacements;
+    private final int mask;
+    private final String[] keys;
+    private final F[] fields;
+
+    private FlatKeyTable(int[] positions, int seed, int[] displacements, String[] keys, F[] fields) {
+        this.positions = positions;
+        this.seed = seed;
+        this.displacements = displacements;
+        this.mask = keys.length - 1;
+        this.keys = keys;
+        this.fields = fields;
+    }
+
+    /**
+     * @return 完美哈希表, 不能构建时返回null
+     */
+    static <F> FlatKeyTable<F> build(Map<String, F> boundFields) {
+        if (boundFields.isEmpty()) {
+            return null;
+        }
+        List<String> keys = new ArrayList<>(boundFields.keySet());
+        int[] positions = choosePositions(keys);
+        if (positions == null) {
+            return null;
+        }
+        for (int seed = 0; seed < MAX_SEEDS; seed++) {
+            int[] hashes = new int[keys.size()];
+            Set<Integer> distinct = new HashSet<>();
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = hash(keys.get(i), 0, positions, seed);
+                distinct.add(hashes[i]);
+            }
+            if (distinct.size() != hashes.length) {
+                // 签名不同但32位哈希冲突, 换一个种子
+                continue;
+            }
+            for (int size = tableSize(keys.size()); size <= tableSize(keys.size()) * 4; size <<= 1) {
+                FlatKeyTable<F> table = displace(boundFields, keys, hashes, positions, seed, size);
+                if (table != null) {
+                    return table;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 精确匹配 {@code key} 从 {@code from} 开始的部分.
+     *
+     * @return 字段, 匹配不到返回null
+     */
+    F get(String key, int from) {
+        int hash = hash(key, from, positions, seed);
+        int index = slot(hash, displacements[hash & (displacements.length - 1)], mask);
+        String candidate = keys[index];
+        if (candidate != null && candidate.length() == key.length() - from && key.startsWith(candidate, from)) {
+            return fields[index];
+        }
+        return null;
+    }
+
+    int[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * 贪心选择字符位置: 每次加入使不同签名(长度 + 已选位置的字符)最多的位置, 直到全部key的签名不同.
+     */
+    static int[] choosePositions(List<String> keys) {
+        int maxLength = 0;
+        for (String key : keys) {
+            maxLength = Math.max(maxLength, key.length());
+        }
+        int[] chosen = new int[0];
+        int best = distinctSignatures(keys, chosen);
+        while (best < keys.size()) {
+            if (chosen.length == MAX_POSITIONS) {
+                return null;
+            }
+            int bestPosition = 0;
+            int bestCount = best;
+            // 先试末尾, 平铺key通常前缀相同
+            for (int offset = 1; offset <= maxLength; offset++) {
+                for (int position : new int[]{-offset, offset - 1}) {
+                    int[] candidate = Arrays.copyOf(chosen, chosen.length + 1);
+                    candidate[chosen.length] = position;
+                    int count = distinctSignatures(keys, candidate);
+                    if (count > bestCount) {
+                        bestCount = count;
+                        bestPosition = position;
+                    }
+                }
+            }
+            if (bestCount == best) {
+                return null;
+            }
+            chosen = Arrays.copyOf(chosen, chosen.length + 1);
+            chosen[chosen.length - 1] = bestPosition;
+            best = bestCount;
+        }
+        return chosen;
+    }
+
+    private static int distinctSignatures(List<String> keys, int[] positions) {
+        Set<String> signatures = new HashSet<>();
+        char[] signature = new char[positions.length + 1];
+        for (String key : keys) {
+            signature[0] = (char) key.length();
+            for (int i = 0; i < positions.length; i++) {
+                signature[i + 1] = charAt(key, 0, key.length(), positions[i]);
+            }
+            signatures.add(new String(signature));
+        }
+        return signatures.size();
+    }
+
+    /**
+     * 按桶从大到小, 为每个桶找到使桶内key都落到空槽的位移.
+     */
+    @SuppressWarnings("unchecked")
+    private static <F> FlatKeyTable<F> displace(Map<String, F> boundFields, List<String> keys, int[] hashes, int[] positions, int seed, int size) {
+        int bucketCount = Integer.highestOneBit(Math.max(1, keys.size() / 4));
+        List<List<Integer>> buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (int i = 0; i < hashes.length; i++) {
+            buckets.get(hashes[i] & (bucketCount - 1)).add(i);
+        }
+        Integer[] order = new Integer[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> buckets.get(b).size() - buckets.get(a).size());
+
+        int mask = size - 1;
+        int[] displacements = new int[bucketCount];
+        String[] tableKeys = new String[size];
+        F[] tableFields = (F[]) new Object[size];
+        int[] slots = new int[keys.size()];
+        for (int bucket : order) {
+            List<Integer> members = buckets.get(bucket);
+            if (members.isEmpty()) {
+                break;
+            }
+            int displacement = 0;
+            while (!fits(members, hashes, displacement, mask, tableKeys, slots)) {
+                if (++displacement == MAX_DISPLACEMENT) {
+                    return null;
+                }
+            }
+            displacements[bucket] = displacement;
+            for (int member : members) {
+                String key = keys.get(member);
+                tableKeys[slots[member]] = key;
+                tableFields[slots[member]] = boundFields.get(key);
+            }
+        }
+        return new FlatKeyTable<>(positions, seed, displacements, tableKeys, tableFields);
+    }
+
+    private static boolean fits(List<Integer> members, int[] hashes, int displacement, int mask, String[] tableKeys, int[] slots) {
+        for (int i = 0; i < members.size(); i++) {
+            int member = members.get(i);
+            int slot = slot(hashes[member], displacement, mask);
+            if (tableKeys[slot] != null) {
+                return false;
+            }
+            for (int j = 0; j < i; j++) {
+                if (slots[members.get(j)] == slot) {
+                    return false;
+                }
+            }
+            slots[member] = slot;
+        }
+        return true;
+    }
+
+    private static int tableSize(int keys) {
+        return Integer.highestOneBit(Math.max(keys, 2) * 2 - 1);
+    }
+
+    private static int slot(int hash, int displacement, int mask) {
+        int h = hash + displacement * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h & mask;
+    }
+
+    static int hash(String key, int from, int[] positions, int seed) {
+        int length = key.length() - from;
+        int h = (length + seed) * 0x9E3779B9;
+        for (int position : positions) {
+            h = (h ^ charAt(key, from, length, position)) * 0x01000193;
+        }
+        return h ^ (h >>> 15);
+    }
+
+    private static char charAt(String key, int from, int length, int position) {
+        int index = position >= 0 ? position : length + position;
+        return index >= 0 && index < length ? key.charAt(from + index) : 0;
+    }
+}
@@ -0,0 +1,138 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 平铺key的字符级前缀树, 每个binding plan构建一次.
+ * <p>
+ * 从左到右扫描一次完整的平铺key(如 {@code backDoorPrefix.lowerWindowPrefix.iMaterialPrefix.materialName}),
+ * 匹配到对应的字段, 或者匹配到该key所属的动态类型(接口)字段. 不使用正则, 也不截取子串.
+ * <p>
+ * 精确匹配先查 {@link FlatKeyTable}, 只读几个字符; 查不到且有动态类型字段时才逐字符扫描前缀树.
+ *
+ * @param <F> 字段类型
+ */
+final class FlatKeyTrie<F> {
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node<?>[] NO_CHILDREN = new Node<?>[0];
+
+    private final Node<F> root = new Node<>();
+    /**
+     * 全部key的完美哈希表, 不能构建时为null
+     */
+    private final FlatKeyTable<F> table;
+    private final boolean hasOwners;
+
+    /**
+     * @param boundFields 平铺key -> 字段
+     * @param isOwner     字段是否是动态类型字段. 动态类型字段的key后面跟 {@code .} 的所有key都属于它.
+     */
+    FlatKeyTrie(Map<String, F> boundFields, Predicate<F> isOwner) {
+        boolean hasOwners = false;
+        for (Map.Entry<String, F> entry : boundFields.entrySet()) {
+            Node<F> node = root;
+            String key = entry.getKey();
+            for (int i = 0; i < key.length(); i++) {
+                node = node.getOrAddChild(key.charAt(i));
+            }
+            node.field = entry.getValue();
+            node.owner = isOwner.test(entry.getValue());
+            hasOwners |= node.owner;
+        }
+        this.hasOwners = hasOwners;
+        this.table = FlatKeyTable.build(boundFields);
+    }
+
+    /**
+     * 精确匹配 {@code key} 从 {@code from} 开始的部分.
+     *
+     * @return 字段, 匹配不到返回null
+     */
+    F get(String key, int from) {
+        if (table != null) {
+            return table.get(key, from);
+        }
+        Node<F> node = root;
+        for (int i = from, length = key.length(); i < length && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node == null ? null : node.field;
+    }
+
+    /**
+     * 匹配 {@code key} 从 {@code from} 开始的部分: 优先返回精确匹配的字段,
+     * 否则返回以 {@code 字段key + "."} 为前缀的动态类型字段.
+     * 两者可以通过字段key的长度是否等于 {@code key.length() - from} 区分.
+     *
+     * @return 字段, 匹配不到返回null
+     */
+    F match(String key, int from) {
+        if (table != null) {
+            F field = table.get(key, from);
+            // 不是任何字段的key, 只可能属于动态类型字段
+            if (field != null || !hasOwners) {
+                return field;
+            }
+        }
+        Node<F> node = root;
+        for (int i = from, length = key.length(); i < length; i++) {
+            char c = key.charAt(i);
+            if (c == '.' && node.owner) {
+                return node.field;
+            }
+            node = node.child(c);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.field;
+    }
+
+    /**
+     * 泛型数组不能直接创建, 数组只在 Node 内部使用, 不会暴露为其他类型
+     */
+    @SuppressWarnings("unchecked")
+    private static <F> Node<F>[] newChildren(int length) {
+        return (Node<F>[]) (length == 0 ? NO_CHILDREN : new Node<?>[length]);
+    }
+
+    private static final class Node<F> {
+        private char[] labels = NO_LABELS;
+        private Node<F>[] children = newChildren(0);
+        private F field;
+        private boolean owner;
+
+        private Node<F> child(char c) {
+            char[] labels = this.labels;
+            // 大部分节点只有一个子节点
+            if (labels.length == 1) {
+                return labels[0] == c ? children[0] : null;
+            }
+            int index = Arrays.binarySearch(labels, c);
+            return index < 0 ? null : children[index];
+        }
+
+        private Node<F> getOrAddChild(char c) {
+            int index = Arrays.binarySearch(labels, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node<F>[] newChildren = newChildren(children.length + 1);
+            System.arraycopy(labels, 0, newLabels, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            System.arraycopy(labels, insertAt, newLabels, insertAt + 1, labels.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            Node<F> child = new Node<>();
+            newLabels[insertAt] = c;
+            newChildren[insertAt] = child;
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+    }
+}
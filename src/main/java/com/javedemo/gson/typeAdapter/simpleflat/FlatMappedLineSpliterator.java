@@ -0,0 +1,142 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.TypeAdapter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * 按行边界切分映射文件的 {@link Spliterator}, 由 {@link FlatRecords#mappedLines} 创建.
+ * <p>
+ * 每个范围用 {@link FileChannel#map} 映射, 通过一个 {@link Utf8ByteBufferReader} 和一个 JsonReader 连续解码范围内的全部记录,
+ * 不为每行创建 String. {@link #trySplit()} 从范围中点向后找到换行, 前半部分交给新的spliterator, 所以 parallelStream
+ * 的各个线程处理文件的不同部分, 并保持记录顺序.
+ * <p>
+ * 单次映射不超过 {@link #MAX_WINDOW} 字节, 更大的范围分多个窗口顺序解码, 窗口同样在行边界切开.
+ */
+final class FlatMappedLineSpliterator<T> implements Spliterator<T> {
+    /**
+     * 单次映射的最大字节数, MappedByteBuffer 最大为 Integer.MAX_VALUE
+     */
+    static final int MAX_WINDOW = 1 << 30;
+    /**
+     * 小于该字节数的范围不再切分
+     */
+    static final long MIN_SPLIT = 1 << 20;
+    private static final int SCAN_BUFFER = 8 * 1024;
+
+    private final Gson gson;
+    private final TypeAdapter<T> adapter;
+    private final FileChannel channel;
+    private final long minSplit;
+    private long position;
+    private final long end;
+    /**
+     * 当前窗口的reader, 开始解码后不再切分
+     */
+    private FlatRecordReader<T> reader;
+
+    FlatMappedLineSpliterator(Gson gson, TypeAdapter<T> adapter, FileChannel channel, long position, long end, long minSplit) {
+        this.gson = gson;
+        this.adapter = adapter;
+        this.channel = channel;
+        this.position = position;
+        this.end = end;
+        this.minSplit = minSplit;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        while (reader == null || !reader.hasNext()) {
+            if (position >= end) {
+                return false;
+            }
+            reader = new FlatRecordReader<>(gson, adapter, new Utf8ByteBufferReader(nextWindow()), false);
+        }
+        action.accept(reader.next());
+        return true;
+    }
+
+    /**
+     * 映射 [position, 下一个窗口边界), 窗口边界是 MAX_WINDOW 以内最后一个换行之后.
+     */
+    private ByteBuffer nextWindow() {
+        long size = Math.min(end - position, MAX_WINDOW);
+        try {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            int limit = (int) size;
+            if (position + size < end) {
+                while (limit > 0 && window.get(limit - 1) != '\n') {
+                    limit--;
+                }
+                if (limit == 0) {
+                    throw new JsonIOException("line longer than mapping window ,position=" + position + ",window=" + size);
+                }
+                window.limit(limit);
+            }
+            position += limit;
+            return window;
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        if (reader != null || end - position < 2 * minSplit) {
+            return null;
+        }
+        long split = nextLineStart(position + (end - position) / 2);
+        if (split <= position || split >= end) {
+            return null;
+        }
+        Spliterator<T> prefix = new FlatMappedLineSpliterator<>(gson, adapter, channel, position, split, minSplit);
+        position = split;
+        return prefix;
+    }
+
+    /**
+     * from 之后第一个换行的下一个位置, 找不到时返回 end. FileChannel 的按位置读取可以并发调用.
+     */
+    private long nextLineStart(long from) {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER);
+        long offset = from;
+        try {
+            while (offset < end) {
+                buffer.clear();
+                int read = channel.read(buffer, offset);
+                if (read <= 0) {
+                    return end;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        return offset + i + 1;
+                    }
+                }
+                offset += read;
+            }
+            return end;
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * 剩余字节数, 只作为切分的参考
+     */
+    @Override
+    public long estimateSize() {
+        return end - position;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+}
@@ -0,0 +1,44 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+/**
+ * 平铺序列化/反序列化的指标记录接口, 通过 {@link FlatReflectionTypeAdapterFactory#setMetrics}
+ * 或者 {@link SimpleGsonFlatSupport#setMetrics} 设置. 默认实现见 {@link DefaultFlatMetrics}.
+ * <p>
+ * 每个类型的 {@link TypeMetrics} 在创建adapter时获取一次, 没有设置时adapter不计时也不计数.
+ * 实现需要线程安全, 并且不能在读写路径上加锁.
+ */
+public interface FlatMetrics {
+
+    /**
+     * 创建 type 的adapter时调用一次.
+     *
+     * @return null 时不记录该类型
+     */
+    TypeMetrics forType(Class<?> type);
+
+    /**
+     * 一个类型的指标, 每次顶层的读写调用一次.
+     */
+    interface TypeMetrics {
+
+        /**
+         * @param nanos               耗时
+         * @param fields              读取的平铺字段数
+         * @param skippedKeys         未知的或者不需要反序列化而跳过的key数
+         * @param dynamicResolutions  按类型标识确定接口实现类的次数
+         */
+        void recordRead(long nanos, int fields, int skippedKeys, int dynamicResolutions);
+
+        /**
+         * @param nanos              耗时
+         * @param fields             写出的平铺字段数, 不含接口的类型标识
+         * @param dynamicResolutions 按实际类型选择接口实现类的次数
+         */
+        void recordWrite(long nanos, int fields, int dynamicResolutions);
+
+        /**
+         * 构建adapter(绑定计划)的耗时, 含中间层类型adapter的构建.
+         */
+        void recordPlanBuild(long nanos);
+    }
+}
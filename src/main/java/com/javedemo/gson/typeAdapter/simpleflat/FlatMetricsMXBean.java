@@ -0,0 +1,25 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import java.util.List;
+
+/**
+ * {@link DefaultFlatMetrics} 的JMX接口, 每个类型的指标是一个 CompositeData.
+ */
+public interface FlatMetricsMXBean {
+
+    /**
+     * 各类型的指标快照, 按类型名排序
+     */
+    List<FlatTypeStats> getTypeStats();
+
+    long getReadCount();
+
+    long getWriteCount();
+
+    long getSkippedKeys();
+
+    /**
+     * 清空全部计数
+     */
+    void reset();
+}
@@ -0,0 +1,237 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+
+import java.io.CharArrayReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 多线程解码NDJSON, 按输入的顺序返回记录. 由 {@link FlatRecords#readLinesParallel} 创建.
+ * <p>
+ * 一个切分线程按行边界把输入切成约 {@code batchChars} 个字符的批次, 每个批次交给 workers 中的一个线程,
+ * 用一个 JsonReader 解码批次内的全部记录. 批次的结果按切分顺序放入有界队列, {@link #next()} 按顺序取出.
+ * 队列满时切分线程阻塞, 所以同时在内存中的批次不超过 {@code maxBatchesInFlight + 2}, 与文件大小无关.
+ * <p>
+ * 错误信息中的行号是批次内的行号, 同时给出批次序号.
+ *
+ * @param <T> 记录类型
+ */
+public final class FlatParallelLineReader<T> implements Iterator<T>, Closeable {
+    /**
+     * 输入结束的标记, 按引用比较
+     */
+    private static final CompletableFuture<Batch<?>> END = CompletableFuture.completedFuture(new Batch<>(Collections.emptyList(), null));
+
+    private final Gson gson;
+    private final TypeAdapter<T> adapter;
+    private final Reader reader;
+    private final Executor workers;
+    private final int batchChars;
+    private final BlockingQueue<CompletableFuture<? extends Batch<?>>> batches;
+    private final Thread splitter;
+
+    private Iterator<T> current = Collections.emptyIterator();
+    /**
+     * 当前批次中出错记录的异常, 批次中之前的记录返回后再抛出
+     */
+    private RuntimeException pendingError;
+    private boolean finished;
+    private volatile boolean closed;
+
+    FlatParallelLineReader(Gson gson, Class<T> type, Reader reader, Executor workers, int batchChars, int maxBatchesInFlight) {
+        this.gson = gson;
+        this.adapter = gson.getAdapter(type);
+        this.reader = reader;
+        this.workers = workers;
+        this.batchChars = batchChars;
+        this.batches = new ArrayBlockingQueue<>(maxBatchesInFlight);
+        this.splitter = new Thread(this::split, "flat-ndjson-splitter");
+        this.splitter.setDaemon(true);
+        this.splitter.start();
+    }
+
+    /**
+     * 切分线程: 读到 batchChars 个字符后在最后一个换行处切开, 剩余部分留给下一个批次.
+     */
+    private void split() {
+        char[] buffer = new char[batchChars];
+        int length = 0;
+        long batchIndex = 0;
+        try {
+            while (!closed) {
+                int read = reader.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    if (length > 0) {
+                        submit(Arrays.copyOf(buffer, length), batchIndex);
+                    }
+                    break;
+                }
+                length += read;
+                if (length < buffer.length) {
+                    continue;
+                }
+                int end = lastNewline(buffer, length);
+                if (end < 0) {
+                    // 一行比批次长, 扩大缓冲区继续读
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    continue;
+                }
+                submit(Arrays.copyOf(buffer, end + 1), batchIndex++);
+                int rest = length - end - 1;
+                char[] next = new char[Math.max(batchChars, rest * 2)];
+                System.arraycopy(buffer, end + 1, next, 0, rest);
+                buffer = next;
+                length = rest;
+            }
+            batches.put(END);
+        } catch (InterruptedException e) {
+            // close() 中断, 不再切分
+        } catch (IOException | RuntimeException e) {
+            if (!closed) {
+                CompletableFuture<Batch<?>> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e instanceof IOException ? new JsonIOException(e) : e);
+                try {
+                    batches.put(failed);
+                } catch (InterruptedException ignored) {
+                    // closed
+                }
+            }
+        }
+    }
+
+    private static int lastNewline(char[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void submit(char[] batch, long batchIndex) throws InterruptedException {
+        // 队列满时阻塞, 即背压
+        batches.put(CompletableFuture.supplyAsync(() -> decode(batch, batchIndex), workers));
+    }
+
+    /**
+     * 解码一个批次. 出错时保留之前解码成功的记录, 与顺序读取时一样先返回这些记录再抛出异常.
+     */
+    private Batch<T> decode(char[] batch, long batchIndex) {
+        List<T> records = new ArrayList<>();
+        try {
+            FlatRecordReader<T> batchReader = new FlatRecordReader<>(gson, adapter, new CharArrayReader(batch), false);
+            while (batchReader.hasNext()) {
+                records.add(batchReader.next());
+            }
+        } catch (JsonParseException e) {
+            return new Batch<>(records, new JsonParseException("decode batch failed ,batchIndex=" + batchIndex + ",message=" + e.getMessage(), e));
+        } catch (RuntimeException e) {
+            return new Batch<>(records, e);
+        }
+        return new Batch<>(records, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (pendingError != null) {
+                RuntimeException error = pendingError;
+                pendingError = null;
+                finished = true;
+                close();
+                throw error;
+            }
+            if (finished) {
+                return false;
+            }
+            if (closed) {
+                throw new IllegalStateException("reader is closed");
+            }
+            CompletableFuture<? extends Batch<?>> batch;
+            try {
+                batch = batches.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JsonIOException("interrupted while waiting for decoded batch", e);
+            }
+            if (batch == END) {
+                finished = true;
+                return false;
+            }
+            try {
+                Batch<T> decoded = (Batch<T>) batch.join();
+                current = decoded.records.iterator();
+                pendingError = decoded.error;
+            } catch (CompletionException e) {
+                finished = true;
+                close();
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new JsonParseException(cause);
+            } catch (CancellationException e) {
+                finished = true;
+                throw new IllegalStateException("reader is closed", e);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    /**
+     * 停止切分, 取消尚未开始的批次, 关闭底层的 {@link Reader}. 正在解码的批次完成后丢弃.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        splitter.interrupt();
+        CompletableFuture<? extends Batch<?>> batch;
+        while ((batch = batches.poll()) != null) {
+            batch.cancel(false);
+        }
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    private static final class Batch<T> {
+        final List<T> records;
+        final RuntimeException error;
+
+        Batch(List<T> records, RuntimeException error) {
+            this.records = records;
+            this.error = error;
+        }
+    }
+}
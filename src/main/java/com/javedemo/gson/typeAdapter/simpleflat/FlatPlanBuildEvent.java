@@ -0,0 +1,23 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 构建一个类型的绑定计划: 顶层类型的adapter, 或者写接口字段时某个实现类的子计划.
+ */
+@Name("com.javedemo.gson.FlatPlanBuild")
+@Label("Flat Plan Build")
+@Category({"Gson", "Flat"})
+@Description("Reflection and planning for a flat type adapter or a dynamic write sub plan")
+final class FlatPlanBuildEvent extends Event {
+    @Label("Type")
+    Class<?> type;
+
+    @Label("Keys")
+    @Description("Flat keys in the plan")
+    int keys;
+}
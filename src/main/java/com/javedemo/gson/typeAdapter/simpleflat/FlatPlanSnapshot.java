@@ -0,0 +1,290 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.javedemo.gson.typeAdapter.simpleflat.FlatReflectionTypeAdapterFactory.ObjectPathBoundedField;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 平铺绑定计划的快照: 每个类的平铺key, 字段路径和叶子类型, 由上一次启动写出, 下一次启动加载后
+ * {@link FlatReflectionTypeAdapterFactory#buildBoundFields} 直接按快照恢复, 不再递归反射遍历.
+ * <p>
+ * 格式(DataOutputStream):
+ * <pre>
+ *     magic, version, fieldNamingPolicy
+ *     字符串表: 类名/字段名/key 各写一次, 之后用下标引用
+ *     每个类: 类名, 指纹, key个数, 每个key: key, 读写标记, leafKind, 路径长度, 路径上每个字段的(声明类, 字段名)
+ * </pre>
+ * 指纹按名字顺序覆盖根类和路径上每个中间层对象的类层次, 包含每个声明字段的名字/泛型类型/修饰符/注解.
+ * 加载时重新计算, 类有变化(增删字段, 改了注解等)的计划直接丢弃, 回退到反射遍历.
+ * <p>
+ * 快照只记录反射遍历的结果, 不记录 Gson 的配置. excluder, 注册的 TypeAdapter 等必须与写出快照时一致.
+ */
+final class FlatPlanSnapshot {
+    private static final int MAGIC = 0x464c4154; // "FLAT"
+    private static final int VERSION = 1;
+
+    private static final int SERIALIZE = 1;
+    private static final int DESERIALIZE = 2;
+
+    private final Map<Class<?>, List<Entry>> plans;
+
+    private FlatPlanSnapshot(Map<Class<?>, List<Entry>> plans) {
+        this.plans = plans;
+    }
+
+    /**
+     * @return 通过校验的类的个数
+     */
+    int size() {
+        return plans.size();
+    }
+
+    /**
+     * 按快照恢复类的平铺字段, 快照中没有该类或者叶子类型不一致时返回null.
+     */
+    Map<String, ObjectPathBoundedField> restore(FlatReflectionTypeAdapterFactory factory, Class<?> raw) {
+        List<Entry> entries = plans.get(raw);
+        if (entries == null) {
+            return null;
+        }
+        Map<String, ObjectPathBoundedField> result = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            ObjectPathBoundedField boundField = factory.new ObjectPathBoundedField(factory.gson, entry.fieldPath, entry.name,
+                    (entry.flags & SERIALIZE) != 0, (entry.flags & DESERIALIZE) != 0);
+            if (boundField.leafKind != entry.leafKind) {
+                // 字段的 TypeAdapter 变了, 快照不可信
+                return null;
+            }
+            result.put(entry.name, boundField);
+        }
+        return result;
+    }
+
+    static void write(String fieldNamingPolicy, Map<Class<?>, Map<String, ObjectPathBoundedField>> plans, DataOutputStream out) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (Map.Entry<Class<?>, Map<String, ObjectPathBoundedField>> plan : plans.entrySet()) {
+            intern(strings, plan.getKey().getName());
+            for (ObjectPathBoundedField boundField : plan.getValue().values()) {
+                intern(strings, boundField.getName());
+                for (Field field : boundField.fieldPath) {
+                    intern(strings, field.getDeclaringClass().getName());
+                    intern(strings, field.getName());
+                }
+            }
+        }
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeUTF(fieldNamingPolicy);
+        writeVarInt(out, strings.size());
+        for (String string : strings.keySet()) {
+            out.writeUTF(string);
+        }
+
+        writeVarInt(out, plans.size());
+        for (Map.Entry<Class<?>, Map<String, ObjectPathBoundedField>> plan : plans.entrySet()) {
+            List<List<Field>> fieldPaths = new ArrayList<>();
+            for (ObjectPathBoundedField boundField : plan.getValue().values()) {
+                fieldPaths.add(boundField.fieldPath);
+            }
+            writeVarInt(out, strings.get(plan.getKey().getName()));
+            out.writeLong(fingerprint(plan.getKey(), fieldPaths));
+            writeVarInt(out, plan.getValue().size());
+            for (ObjectPathBoundedField boundField : plan.getValue().values()) {
+                writeVarInt(out, strings.get(boundField.getName()));
+                out.writeByte((boundField.isSerialized() ? SERIALIZE : 0) | (boundField.isDeserialized() ? DESERIALIZE : 0));
+                out.writeByte(boundField.leafKind == null ? -1 : boundField.leafKind.ordinal());
+                writeVarInt(out, boundField.fieldPath.size());
+                for (Field field : boundField.fieldPath) {
+                    writeVarInt(out, strings.get(field.getDeclaringClass().getName()));
+                    writeVarInt(out, strings.get(field.getName()));
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * 读取并校验快照. 版本或者 fieldNamingPolicy 不一致时整个快照作废, 返回的快照为空.
+     * 类不存在, 字段不存在或者指纹不一致的类单独丢弃.
+     */
+    static FlatPlanSnapshot read(String fieldNamingPolicy, ClassLoader classLoader, DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a flat plan snapshot");
+        }
+        if (in.readShort() != VERSION || !fieldNamingPolicy.equals(in.readUTF())) {
+            return new FlatPlanSnapshot(Collections.emptyMap());
+        }
+        String[] strings = new String[readVarInt(in)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+
+        Map<String, Class<?>> classes = new HashMap<>();
+        Map<Class<?>, List<Entry>> plans = new HashMap<>();
+        LeafKind[] leafKinds = LeafKind.values();
+        int planCount = readVarInt(in);
+        for (int i = 0; i < planCount; i++) {
+            String className = strings[readVarInt(in)];
+            long fingerprint = in.readLong();
+            boolean valid = true;
+            List<Entry> entries = new ArrayList<>();
+            int entryCount = readVarInt(in);
+            for (int j = 0; j < entryCount; j++) {
+                String name = strings[readVarInt(in)];
+                int flags = in.readByte();
+                int leafKind = in.readByte();
+                List<Field> fieldPath = new ArrayList<>();
+                int pathSize = readVarInt(in);
+                for (int k = 0; k < pathSize; k++) {
+                    String declaringClass = strings[readVarInt(in)];
+                    String fieldName = strings[readVarInt(in)];
+                    // 字节必须读完, 校验失败也不能提前跳出
+                    Field field = valid ? findField(classes, classLoader, declaringClass, fieldName) : null;
+                    if (field == null) {
+                        valid = false;
+                    }
+                    fieldPath.add(field);
+                }
+                entries.add(new Entry(name, flags, leafKind < 0 ? null : leafKinds[leafKind], fieldPath));
+            }
+
+            Class<?> clazz = valid ? loadClass(classes, classLoader, className) : null;
+            if (clazz == null) {
+                continue;
+            }
+            List<List<Field>> fieldPaths = new ArrayList<>();
+            for (Entry entry : entries) {
+                fieldPaths.add(entry.fieldPath);
+            }
+            if (fingerprint(clazz, fieldPaths) == fingerprint) {
+                plans.put(clazz, entries);
+            }
+        }
+        return new FlatPlanSnapshot(plans);
+    }
+
+    /**
+     * 计划依赖的全部类的结构指纹, 64位 FNV-1a.
+     */
+    static long fingerprint(Class<?> root, List<List<Field>> fieldPaths) {
+        Map<String, Class<?>> covered = new TreeMap<>();
+        addHierarchy(covered, root);
+        for (List<Field> fieldPath : fieldPaths) {
+            for (int i = 0; i < fieldPath.size() - 1; i++) {
+                addHierarchy(covered, fieldPath.get(i).getType());
+            }
+        }
+
+        long hash = 0xcbf29ce484222325L;
+        for (Class<?> clazz : covered.values()) {
+            hash = fnv(hash, clazz.getName());
+            Field[] fields = clazz.getDeclaredFields();
+            Arrays.sort(fields, Comparator.comparing(Field::getName));
+            for (Field field : fields) {
+                hash = fnv(hash, field.getName());
+                hash = fnv(hash, field.getGenericType().getTypeName());
+                hash = fnv(hash, Integer.toString(field.getModifiers()));
+                hash = fnv(hash, Arrays.toString(field.getDeclaredAnnotations()));
+            }
+        }
+        return hash;
+    }
+
+    private static void addHierarchy(Map<String, Class<?>> covered, Class<?> clazz) {
+        for (; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            covered.put(clazz.getName(), clazz);
+        }
+    }
+
+    private static long fnv(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // 分隔符, 避免 "ab"+"c" 与 "a"+"bc" 相同
+        hash ^= 0xff;
+        hash *= 0x100000001b3L;
+        return hash;
+    }
+
+    private static Field findField(Map<String, Class<?>> classes, ClassLoader classLoader, String className, String fieldName) {
+        Class<?> clazz = loadClass(classes, classLoader, className);
+        if (clazz == null) {
+            return null;
+        }
+        try {
+            Field field = clazz.getDeclaredField(fieldName);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            return null;
+        }
+    }
+
+    private static Class<?> loadClass(Map<String, Class<?>> classes, ClassLoader classLoader, String className) {
+        if (classes.containsKey(className)) {
+            return classes.get(className);
+        }
+        Class<?> clazz;
+        try {
+            clazz = Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            clazz = null;
+        }
+        classes.put(className, clazz);
+        return clazz;
+    }
+
+    private static void intern(Map<String, Integer> strings, String value) {
+        if (!strings.containsKey(value)) {
+            strings.put(value, strings.size());
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint in flat plan snapshot");
+    }
+
+    private static final class Entry {
+        final String name;
+        final int flags;
+        final LeafKind leafKind;
+        final List<Field> fieldPath;
+
+        Entry(String name, int flags, LeafKind leafKind, List<Field> fieldPath) {
+            this.name = name;
+            this.flags = flags;
+            this.leafKind = leafKind;
+            this.fieldPath = fieldPath;
+        }
+    }
+}
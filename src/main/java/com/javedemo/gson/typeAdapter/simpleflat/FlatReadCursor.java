@@ -0,0 +1,54 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+/**
+ * 一次反序列化中的路径游标, 记住上一个key解析到的中间层对象链.
+ * <p>
+ * 平铺json中同一个对象的key通常是相邻的, 例如 {@code door.window.name} 之后是 {@code door.window.size},
+ * 只需要比较公共前缀, 移动不同的尾部即可, 不用每个key都从root开始逐层 getOrCreate.
+ * 任意顺序的key也是正确的, 只是公共前缀变短.
+ */
+final class FlatReadCursor {
+    /**
+     * objects[0] 为root, objects[i + 1] 为 path[i] 的值
+     */
+    private final Object[] objects;
+    private final Field[] path;
+    /**
+     * 当前已经解析的中间层数量
+     */
+    private int depth;
+
+    /**
+     * @param root     反序列化的对象
+     * @param maxDepth 最长的 fieldPath 的中间层数量
+     */
+    FlatReadCursor(Object root, int maxDepth) {
+        this.objects = new Object[maxDepth + 1];
+        this.path = new Field[maxDepth];
+        this.objects[0] = root;
+    }
+
+    /**
+     * 移动到 fieldPath 的最后一个字段所在的对象, 途中为null的中间层会被构造.
+     *
+     * @return 直接持有最后一个字段的对象
+     */
+    Object moveTo(List<Field> fieldPath, FieldPathAccessor accessor) {
+        int intermediates = fieldPath.size() - 1;
+        int limit = Math.min(depth, intermediates);
+        int common = 0;
+        // 同一个Adapter中, 同一个中间层的 fieldPath 共用同一个Field对象
+        while (common < limit && path[common] == fieldPath.get(common)) {
+            common++;
+        }
+        for (int level = common; level < intermediates; level++) {
+            path[level] = fieldPath.get(level);
+            objects[level + 1] = accessor.getOrCreateChild(level, objects[level]);
+        }
+        depth = intermediates;
+        return objects[intermediates];
+    }
+}
@@ -0,0 +1,36 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * {@link FlatReflectionTypeAdapterFactory} 中一次顶层对象的反序列化. 没有JFR录制时 {@link #isEnabled()} 为false,
+ * 读路径上不创建计数对象, 事件对象由JIT消除.
+ */
+@Name("com.javedemo.gson.FlatRead")
+@Label("Flat Read")
+@Category({"Gson", "Flat"})
+@Description("Deserialization of one flat json object")
+final class FlatReadEvent extends Event {
+    @Label("Type")
+    Class<?> type;
+
+    @Label("Streaming")
+    boolean streaming;
+
+    @Label("Keys")
+    @Description("All keys of the object, including skipped ones and type keys of dynamic fields")
+    int keys;
+
+    @Label("Fields")
+    int fields;
+
+    @Label("Skipped Keys")
+    int skippedKeys;
+
+    @Label("Dynamic Resolutions")
+    int dynamicResolutions;
+}
@@ -0,0 +1,201 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.JsonElement;
+import com.google.gson.internal.Streams;
+import com.google.gson.stream.JsonReader;
+import com.javedemo.gson.typeAdapter.simpleflat.FlatReflectionTypeAdapterFactory.DynamicTypeInterfaceBoundedField;
+import com.javedemo.gson.typeAdapter.simpleflat.FlatReflectionTypeAdapterFactory.InterfaceBoundedField;
+import com.javedemo.gson.typeAdapter.simpleflat.FlatReflectionTypeAdapterFactory.ObjectPathBoundedField;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式反序列化时一个对象(顶层对象或者动态类型的实例)的读取范围.
+ * <p>
+ * 序列化时类型标识 {@code <prefix>.IWindowType} 写在动态类型的字段之前, 所以读到类型标识时就能确定实现类,
+ * 之后该前缀下的key直接流式读取到实例中. 只有字段出现在类型标识之前时, 才缓存该前缀下的key,
+ * 确定实现类后再回放. 嵌套的动态类型同样处理.
+ */
+final class FlatReadScope {
+    private final FlatReflectionTypeAdapterFactory factory;
+    private final FlatKeyTrie<ObjectPathBoundedField> keyTrie;
+    /**
+     * 当前对象的key在jsonKey中的起始位置, 即跳过 {@code prefix + "."}
+     */
+    private final int from;
+    private final Object instance;
+    /**
+     * 本次读取的计数, 嵌套的scope共用, 没有设置 {@link FlatMetrics} 并且没有录制JFR读事件时为null
+     */
+    private final FlatCallStats stats;
+    /**
+     * 当前对象中已经出现过的动态字段, 懒惰创建
+     */
+    private Map<ObjectPathBoundedField, DynamicFieldState> dynamicFields;
+
+    FlatReadScope(FlatReflectionTypeAdapterFactory factory, FlatKeyTrie<ObjectPathBoundedField> keyTrie, int from, Object instance, FlatCallStats stats) {
+        this.factory = factory;
+        this.keyTrie = keyTrie;
+        this.from = from;
+        this.instance = instance;
+        this.stats = stats;
+    }
+
+    /**
+     * 读取一个key的值.
+     *
+     * @param in      element 为null时从 in 中流式读取值
+     * @param element 缓存的值, 回放时不为null
+     */
+    void read(String jsonKey, JsonReader in, JsonElement element) throws IOException, IllegalAccessException {
+        ObjectPathBoundedField pathField = keyTrie.match(jsonKey, from);
+        if (pathField == null) {
+            skip(in, element);
+            return;
+        }
+        if (!pathField.isDynamic()) {
+            if (!pathField.deserialized) {
+                skip(in, element);
+            } else {
+                if (element != null) {
+                    pathField.read(element, instance);
+                } else {
+                    pathField.read(in, instance);
+                }
+                if (stats != null) {
+                    stats.fields++;
+                }
+            }
+            return;
+        }
+
+        // 动态字段本身的key忽略, 只处理其前缀下的key
+        if (jsonKey.length() <= from + pathField.name.length()) {
+            skip(in, element);
+            return;
+        }
+        if (dynamicFields == null) {
+            dynamicFields = new LinkedHashMap<>();
+        }
+        DynamicFieldState state = dynamicFields.get(pathField);
+        if (state == null) {
+            state = new DynamicFieldState(pathField, from + pathField.name.length() + 1);
+            dynamicFields.put(pathField, state);
+        }
+        state.read(jsonKey, in, element);
+    }
+
+    /**
+     * 对象读完后校验: 有字段但一直没有类型标识的动态字段报错.
+     */
+    void finish() {
+        if (dynamicFields == null) {
+            return;
+        }
+        for (DynamicFieldState state : dynamicFields.values()) {
+            state.finish();
+        }
+    }
+
+    private void skip(JsonReader in, JsonElement element) throws IOException {
+        if (element == null) {
+            in.skipValue();
+        }
+        if (stats != null) {
+            stats.skippedKeys++;
+        }
+    }
+
+    /**
+     * 一个动态字段的读取状态: 确定实现类之前缓存key, 之后交给实现类的 {@link FlatReadScope}.
+     */
+    private final class DynamicFieldState {
+        final ObjectPathBoundedField pathField;
+        /**
+         * 动态字段下的key跳过 {@code pathField.name + "."} 后的起始位置
+         */
+        final int nestedFrom;
+        final DynamicTypeInterfaceBoundedField boundedFildsForRead;
+
+        FlatReadScope resolved;
+        List<Map.Entry<String, JsonElement>> pending;
+
+        DynamicFieldState(ObjectPathBoundedField pathField, int nestedFrom) {
+            this.pathField = pathField;
+            this.nestedFrom = nestedFrom;
+            // 通过静态类匹配到的属性,获取到动态类集合
+            this.boundedFildsForRead = factory.getReadBinding(pathField.lastField.getType());
+        }
+
+        void read(String jsonKey, JsonReader in, JsonElement element) throws IOException, IllegalAccessException {
+            if (resolved != null) {
+                resolved.read(jsonKey, in, element);
+                return;
+            }
+
+            String shortTypeKey = boundedFildsForRead.getTypeName();
+            if (jsonKey.length() == nestedFrom + shortTypeKey.length() && jsonKey.startsWith(shortTypeKey, nestedFrom)) {
+                resolve(jsonKey, element != null ? element : Streams.parse(in));
+                return;
+            }
+
+            // 类型标识之前的字段, 只缓存该前缀下的key
+            if (pending == null) {
+                pending = new ArrayList<>();
+            }
+            pending.add(new AbstractMap.SimpleImmutableEntry<>(jsonKey, element != null ? element : Streams.parse(in)));
+        }
+
+        private void resolve(String typeKey, JsonElement typeValueJsonElement) throws IOException, IllegalAccessException {
+            FlatDynamicResolveEvent event = new FlatDynamicResolveEvent();
+            event.begin();
+            // 通过动态类型的类型值获取到指定的 interfaceBoundedField
+            InterfaceBoundedField interfaceBoundedField = boundedFildsForRead.getMap().get(typeValueJsonElement.getAsString());
+            if (interfaceBoundedField == null) {
+                throw new RuntimeException("interfaceBoundedField is null ,typeClazz=" + pathField.lastField.getType() + ",dynamicType=" + typeValueJsonElement + ",dynamicTypeKey=" + typeKey + ",shortTypeKey=" + boundedFildsForRead.getTypeName());
+            }
+
+            // 根据class 构造  动态类的对象, 设置到上级对象中
+            Object dynamicInstance = interfaceBoundedField.getObjectConstructor(factory.constructorConstructor).construct();
+            pathField.setPathValue(instance, dynamicInstance);
+
+            resolved = new FlatReadScope(factory, interfaceBoundedField.getKeyTrie(), nestedFrom, dynamicInstance, stats);
+            if (stats != null) {
+                stats.dynamicResolutions++;
+            }
+            int buffered = 0;
+            if (pending != null) {
+                // 回放类型标识之前缓存的key
+                buffered = pending.size();
+                for (Map.Entry<String, JsonElement> entry : pending) {
+                    resolved.read(entry.getKey(), null, entry.getValue());
+                }
+                pending = null;
+            }
+
+            if (event.shouldCommit()) {
+                event.interfaceType = pathField.lastField.getType();
+                event.implementation = interfaceBoundedField.getClazz();
+                event.typeValue = interfaceBoundedField.getTypeValue();
+                event.keysBeforeType = buffered;
+                event.commit();
+            }
+        }
+
+        void finish() {
+            if (resolved != null) {
+                resolved.finish();
+                return;
+            }
+            String jsonKey = pending.get(0).getKey();
+            String shortTypeKey = boundedFildsForRead.getTypeName();
+            String typeKey = jsonKey.substring(0, nestedFrom) + shortTypeKey;
+            throw new RuntimeException("typeValueJsonElement is null ,dynamicTypeKey=" + typeKey + ",shortTypeKey=" + shortTypeKey + ",name=" + jsonKey);
+        }
+    }
+}
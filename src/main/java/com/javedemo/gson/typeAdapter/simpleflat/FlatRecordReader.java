@@ -0,0 +1,130 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 逐条读取平铺记录, 同一时刻只持有一条记录. 由 {@link FlatRecords#readArray}/{@link FlatRecords#readLines} 创建.
+ * <p>
+ * 与 {@link Gson#fromJson(JsonReader, java.lang.reflect.Type)} 一样使用 lenient 模式读取, NDJSON 的多个顶层对象依赖这一点.
+ * 读取失败时抛出 {@link JsonSyntaxException} 或者 {@link JsonIOException}.
+ *
+ * @param <T> 记录类型
+ */
+public final class FlatRecordReader<T> implements Iterator<T>, Closeable {
+    private final TypeAdapter<T> adapter;
+    private final JsonReader in;
+    private final boolean array;
+    private boolean started;
+    private boolean finished;
+
+    FlatRecordReader(Gson gson, Class<T> type, Reader reader, boolean array) {
+        // 绑定计划只查找一次
+        this(gson, gson.getAdapter(type), reader, array);
+    }
+
+    FlatRecordReader(Gson gson, TypeAdapter<T> adapter, Reader reader, boolean array) {
+        this.adapter = adapter;
+        this.in = gson.newJsonReader(reader);
+        this.in.setLenient(true);
+        this.array = array;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (finished) {
+            return false;
+        }
+        try {
+            if (array) {
+                if (!started) {
+                    in.beginArray();
+                    started = true;
+                }
+                if (in.hasNext()) {
+                    return true;
+                }
+                in.endArray();
+                finished = true;
+                return false;
+            }
+            if (peekDocument() != JsonToken.END_DOCUMENT) {
+                started = true;
+                return true;
+            }
+            finished = true;
+            return false;
+        } catch (MalformedJsonException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * 空文件在读到第一个值之前 peek 抛出 {@link EOFException}, 而不是返回 END_DOCUMENT
+     */
+    private JsonToken peekDocument() throws IOException {
+        try {
+            return in.peek();
+        } catch (EOFException e) {
+            if (started) {
+                throw e;
+            }
+            return JsonToken.END_DOCUMENT;
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return adapter.read(in);
+        } catch (EOFException | MalformedJsonException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * 以 {@link Stream} 形式读取剩余的记录, 关闭stream时关闭reader.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    try {
+                        close();
+                    } catch (IOException e) {
+                        throw new JsonIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * 关闭底层的 {@link Reader}.
+     */
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        in.close();
+    }
+}
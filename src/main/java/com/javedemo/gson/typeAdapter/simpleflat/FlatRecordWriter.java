@@ -0,0 +1,104 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.stream.Stream;
+
+/**
+ * 逐条写出平铺记录, 全部记录共用一个 {@link JsonWriter}. 由 {@link FlatRecords#arrayWriter}/{@link FlatRecords#lineWriter} 创建.
+ * <p>
+ * JsonWriter 使用 gson 的配置(serializeNulls, htmlSafe等). 写失败时抛出 {@link JsonIOException}, 与 {@link Gson#toJson(Object, Appendable)} 一致.
+ *
+ * @param <T> 记录类型
+ */
+public final class FlatRecordWriter<T> implements Closeable, Flushable {
+    private final TypeAdapter<T> adapter;
+    private final Writer writer;
+    private final JsonWriter out;
+    private final int flushEvery;
+    private final boolean array;
+    private long written;
+    private boolean closed;
+
+    FlatRecordWriter(Gson gson, Class<T> type, Writer writer, int flushEvery, boolean array) throws IOException {
+        this.adapter = gson.getAdapter(type);
+        this.writer = writer;
+        this.out = gson.newJsonWriter(writer);
+        this.flushEvery = flushEvery;
+        this.array = array;
+        if (array) {
+            out.beginArray();
+        } else {
+            // 多个顶层对象需要 lenient, 每行一条记录不能缩进
+            out.setLenient(true);
+            out.setIndent("");
+        }
+    }
+
+    public void write(T record) {
+        if (closed) {
+            throw new IllegalStateException("writer is closed");
+        }
+        try {
+            adapter.write(out, record);
+            if (!array) {
+                // JsonWriter 没有缓冲, 直接写到底层的 writer
+                writer.write('\n');
+            }
+            written++;
+            if (flushEvery > 0 && written % flushEvery == 0) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    public void writeAll(Iterable<? extends T> records) {
+        for (T record : records) {
+            write(record);
+        }
+    }
+
+    public void writeAll(Stream<? extends T> records) {
+        records.forEachOrdered(this::write);
+    }
+
+    /**
+     * 已经写出的记录数
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * 结束JSON数组, flush 并关闭底层的 {@link Writer}.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (array) {
+            out.endArray();
+            out.close();
+        } else {
+            // 没有记录时 JsonWriter.close 会报 Incomplete document
+            out.flush();
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 批量读写平铺记录: JSON数组 {@code [{...},{...}]} 或者每行一条记录的NDJSON.
+ * <p>
+ * 与逐条调用 {@code gson.toJson}/{@code gson.fromJson} 相比, 整个文件共用一个 {@code JsonReader}/{@code JsonWriter},
+ * 记录类型的 TypeAdapter(平铺的绑定计划)只查找一次, 内存占用与文件大小无关.
+ * <p>
+ * Usage:
+ * <pre>
+ *     Gson gson = new Gson();
+ *     FlatReflectionTypeAdapterFactory.injectInto(gson, parsers, true);
+ *
+ *     try (FlatRecordWriter&lt;ClassRoom&gt; writer = FlatRecords.lineWriter(gson, ClassRoom.class, Files.newBufferedWriter(path))) {
+ *         writer.writeAll(classRooms);
+ *     }
+ *     try (FlatRecordReader&lt;ClassRoom&gt; reader = FlatRecords.readLines(gson, ClassRoom.class, Files.newBufferedReader(path))) {
+ *         while (reader.hasNext()) {
+ *             process(reader.next());
+ *         }
+ *     }
+ * </pre>
+ */
+public final class FlatRecords {
+    /**
+     * 默认每写出多少条记录 flush 一次
+     */
+    public static final int DEFAULT_FLUSH_EVERY = 1024;
+    /**
+     * 并行解码时默认每个批次的字符数
+     */
+    public static final int DEFAULT_BATCH_CHARS = 64 * 1024;
+    /**
+     * 并行解码时默认最多有多少个批次已切分但尚未被消费
+     */
+    public static final int DEFAULT_MAX_BATCHES_IN_FLIGHT = 32;
+
+    private FlatRecords() {
+    }
+
+    /**
+     * 懒惰读取JSON数组中的记录.
+     */
+    public static <T> FlatRecordReader<T> readArray(Gson gson, Class<T> type, Reader reader) {
+        return new FlatRecordReader<>(gson, type, reader, true);
+    }
+
+    /**
+     * 懒惰读取NDJSON, 每条记录是一个顶层json对象, 记录之间以空白分隔.
+     */
+    public static <T> FlatRecordReader<T> readLines(Gson gson, Class<T> type, Reader reader) {
+        return new FlatRecordReader<>(gson, type, reader, false);
+    }
+
+    /**
+     * 在 workers 上并行解码NDJSON, 按输入顺序返回记录. 适合单个大文件, 解码是瓶颈的场景.
+     * <p>
+     * workers 由调用方管理, 关闭返回的reader不会关闭 workers.
+     */
+    public static <T> FlatParallelLineReader<T> readLinesParallel(Gson gson, Class<T> type, Reader reader, Executor workers) {
+        return readLinesParallel(gson, type, reader, workers, DEFAULT_BATCH_CHARS, DEFAULT_MAX_BATCHES_IN_FLIGHT);
+    }
+
+    /**
+     * @param batchChars         每个批次的字符数, 批次在行边界切分, 超长的行单独成为一个更大的批次
+     * @param maxBatchesInFlight 已切分但尚未被消费的批次上限, 达到上限时切分线程阻塞, 通常取 workers 线程数的2到4倍
+     */
+    public static <T> FlatParallelLineReader<T> readLinesParallel(Gson gson, Class<T> type, Reader reader, Executor workers,
+                                                                  int batchChars, int maxBatchesInFlight) {
+        if (batchChars <= 0) {
+            throw new IllegalArgumentException("batchChars must be positive ,batchChars=" + batchChars);
+        }
+        if (maxBatchesInFlight <= 0) {
+            throw new IllegalArgumentException("maxBatchesInFlight must be positive ,maxBatchesInFlight=" + maxBatchesInFlight);
+        }
+        return new FlatParallelLineReader<>(gson, type, reader, workers, batchChars, maxBatchesInFlight);
+    }
+
+    /**
+     * 映射NDJSON文件, 返回可并行的记录流. 适合本地的大文件, 比 {@link #readLines} 少一次 byte 到 Reader 的复制,
+     * 并且 {@code parallel()} 后按行边界切分给多个线程解码. 流需要关闭以释放文件.
+     * <p>
+     * Usage:
+     * <pre>
+     *     try (Stream&lt;ClassRoom&gt; records = FlatRecords.mappedLines(gson, ClassRoom.class, path)) {
+     *         records.parallel().forEach(this::process);
+     *     }
+     * </pre>
+     */
+    public static <T> Stream<T> mappedLines(Gson gson, Class<T> type, Path path) {
+        return mappedLines(gson, type, path, FlatMappedLineSpliterator.MIN_SPLIT);
+    }
+
+    static <T> Stream<T> mappedLines(Gson gson, Class<T> type, Path path, long minSplit) {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        try {
+            FlatMappedLineSpliterator<T> spliterator = new FlatMappedLineSpliterator<>(gson, gson.getAdapter(type), channel, 0, channel.size(), minSplit);
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new JsonIOException(e);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            try {
+                channel.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e instanceof IOException ? new JsonIOException(e) : (RuntimeException) e;
+        }
+    }
+
+    /**
+     * 写出JSON数组, close 时结束数组.
+     */
+    public static <T> FlatRecordWriter<T> arrayWriter(Gson gson, Class<T> type, Writer writer) {
+        return arrayWriter(gson, type, writer, DEFAULT_FLUSH_EVERY);
+    }
+
+    /**
+     * @param flushEvery 每写出多少条记录 flush 一次, 0 时只在 close 时 flush
+     */
+    public static <T> FlatRecordWriter<T> arrayWriter(Gson gson, Class<T> type, Writer writer, int flushEvery) {
+        return newWriter(gson, type, writer, flushEvery, true);
+    }
+
+    /**
+     * 写出NDJSON, 每条记录一行. gson 开启了 prettyPrinting 时也不缩进.
+     */
+    public static <T> FlatRecordWriter<T> lineWriter(Gson gson, Class<T> type, Writer writer) {
+        return lineWriter(gson, type, writer, DEFAULT_FLUSH_EVERY);
+    }
+
+    /**
+     * @param flushEvery 每写出多少条记录 flush 一次, 0 时只在 close 时 flush
+     */
+    public static <T> FlatRecordWriter<T> lineWriter(Gson gson, Class<T> type, Writer writer, int flushEvery) {
+        return newWriter(gson, type, writer, flushEvery, false);
+    }
+
+    private static <T> FlatRecordWriter<T> newWriter(Gson gson, Class<T> type, Writer writer, int flushEvery, boolean array) {
+        if (flushEvery < 0) {
+            throw new IllegalArgumentException("flushEvery must not be negative ,flushEvery=" + flushEvery);
+        }
+        try {
+            return new FlatRecordWriter<>(gson, type, writer, flushEvery, array);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+}
@@ -5,21 +5,29 @@ import com.google.common.collect.Lists;
 import com.google.gson.*;
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.internal.*;
+import com.google.gson.internal.bind.JsonTreeReader;
 import com.google.gson.internal.bind.ReflectiveTypeAdapterFactory;
-import com.google.gson.internal.bind.TypeAdapters;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import com.javedemo.gson.jsonAdapter.DynamicField;
 import com.javedemo.gson.jsonAdapter.FieldNamePrefix;
-import org.apache.commons.lang3.StringUtils;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 /**
@@ -32,78 +40,156 @@ import java.util.stream.Collectors;
  *     Gson gson = new Gson();
  *     GsonFlatSupport.injectInto(gson);
  * </pre>
+ * 启动时预先构建绑定计划, 避免首个请求承担反射遍历的开销:
+ * <pre>
+ *     // 可选, 最后一个参数为上一次启动 writePlanSnapshot 写出的快照
+ *     FlatReflectionTypeAdapterFactory factory = FlatReflectionTypeAdapterFactory.injectInto(gson, parsers, true, snapshotFile);
+ *     factory.prepare(Door.class, House.class);
+ * </pre>
+ * 也可以不反射修改 Gson, 通过 GsonBuilder 注册, 见 {@link #registration(Map, boolean)}.
+ * 按类型统计读写次数, 耗时等指标见 {@link #setMetrics(FlatMetrics)}. 另外读写, 构建计划和动态类型解析都会发出JFR事件
+ * ({@code com.javedemo.gson.FlatRead} 等), 没有录制时几乎没有开销.
  */
 @SuppressWarnings("WeakerAccess")
 public class FlatReflectionTypeAdapterFactory implements TypeAdapterFactory {
     protected final ConstructorConstructor constructorConstructor;
     protected final FieldNamingStrategy fieldNamingPolicy;
     protected final Excluder excluder;
-    List<TypeAdapterFactory> oldFactories;
     protected final Gson gson;
-    protected final Gson originalFactoriesGson;
 
     Map<Class, InterfaceFieldParser> dynamicFieldParser;
 
+    /**
+     * 每个接口类型的动态类解析结果只构建一次, 读写路径上不再每次调用 {@link InterfaceFieldParser}.
+     */
+    private final ConcurrentMap<Class<?>, DynamicTypeInterfaceBoundedField> readBindings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, InterfaceBoundedField> writeBindings = new ConcurrentHashMap<>();
+
+    /**
+     * 顶层类型的平铺字段, {@link #buildBoundFields} 构建前先查这里, 多线程预热时共享
+     */
+    private final ConcurrentMap<Class<?>, Map<String, ObjectPathBoundedField>> planCache = new ConcurrentHashMap<>();
+    /**
+     * 每个类型反射出的字段信息, 被多个model引用的中间层类型只反射一次
+     */
+    private final ConcurrentMap<TypeToken<?>, List<FieldShape>> fieldShapes = new ConcurrentHashMap<>();
+    /**
+     * 当前线程正在构建的顶层类型, 用于在 {@link Gson#getAdapter} 之前发现循环依赖
+     */
+    private final ThreadLocal<Set<Class<?>>> building = ThreadLocal.withInitial(HashSet::new);
+
+    /**
+     * 流式反序列化: 按 {@link JsonReader#nextName()} 直接分发到 {@link ObjectPathBoundedField},
+     * 不再先把整个输入解析成 {@link JsonObject}.
+     */
+    protected final boolean streamingRead;
+
+    /**
+     * 加载的绑定计划快照, 顶层类型的 {@link #buildBoundFields} 优先从这里恢复
+     */
+    private volatile FlatPlanSnapshot planSnapshot;
+
+    /**
+     * 读写指标, 为null时不记录
+     */
+    private volatile FlatMetrics metrics;
+
     /**
      * Injects a new instance of {@link SimpleGsonFlatSupport} into given {@link Gson} instance
      * with use of reflection.
      *
      * @param gson instance to inject to
+     * @return 注入的factory, 可用于 {@link #prepare(Class[])} 等启动时的预热
      */
-    public static void injectInto(Gson gson, Map<Class, InterfaceFieldParser> interfaceFieldParsers) {
-        new FlatReflectionTypeAdapterFactory(gson, interfaceFieldParsers);
+    public static FlatReflectionTypeAdapterFactory injectInto(Gson gson, Map<Class, InterfaceFieldParser> interfaceFieldParsers) {
+        return injectInto(gson, interfaceFieldParsers, false);
     }
 
-    @SuppressWarnings("unchecked")
-    protected FlatReflectionTypeAdapterFactory(Gson gson, Map<Class, InterfaceFieldParser> dynamicFieldParser) {
-        /*
-         * Dirty work goes here.
-         */
-        try {
-            FieldNamingPolicy fieldNamingPolicy = null;
-            Excluder excluder = null;
-
-            Field factoriesField = Gson.class.getDeclaredField("factories");
-            factoriesField.setAccessible(true);
-
-
-            List<TypeAdapterFactory> factories = (List<TypeAdapterFactory>) factoriesField.get(gson);
-            List<TypeAdapterFactory> replacementFactories = new ArrayList<>();
-            oldFactories = factories;
-            this.dynamicFieldParser = dynamicFieldParser;
-            this.gson = gson;
-            originalFactoriesGson = new Gson();
-            factoriesField.set(originalFactoriesGson, factories);
-            ;
-            for (TypeAdapterFactory factory : factories) {
-                if (factory instanceof ReflectiveTypeAdapterFactory) {
-                    ReflectiveTypeAdapterFactory reflectiveFactory = (ReflectiveTypeAdapterFactory) factory;
-                    Field fieldNamingPolicyField = reflectiveFactory.getClass().getDeclaredField("fieldNamingPolicy");
-                    fieldNamingPolicyField.setAccessible(true);
-                    fieldNamingPolicy = (FieldNamingPolicy) fieldNamingPolicyField.get(reflectiveFactory);
-                    // replace reflective type adapter by this one
-                    factory = this;
-                }
-                if (factory instanceof Excluder) {
-                    excluder = (Excluder) factory;
+    /**
+     * Same as {@link #injectInto(Gson, Map)}, with read mode selectable per {@link Gson} instance.
+     *
+     * @param gson          instance to inject to
+     * @param streamingRead true 时使用流式反序列化, false 时先解析成 {@link JsonObject} 再反序列化
+     */
+    public static FlatReflectionTypeAdapterFactory injectInto(Gson gson, Map<Class, InterfaceFieldParser> interfaceFieldParsers, boolean streamingRead) {
+        FlatReflectionTypeAdapterFactory factory = new FlatReflectionTypeAdapterFactory(gson, interfaceFieldParsers, streamingRead);
+        factory.prepareBindings();
+        return factory;
+    }
+
+    /**
+     * Same as {@link #injectInto(Gson, Map, boolean)}, 绑定计划优先从 {@link #writePlanSnapshot} 写出的快照恢复.
+     * 快照在构建接口的动态类之前加载, 实现类的平铺字段也按快照恢复, 不再反射遍历.
+     *
+     * @param planSnapshot 上一次启动写出的快照文件
+     * @throws IOException 读取失败或者不是快照文件
+     */
+    public static FlatReflectionTypeAdapterFactory injectInto(Gson gson, Map<Class, InterfaceFieldParser> interfaceFieldParsers, boolean streamingRead,
+                                                              Path planSnapshot) throws IOException {
+        FlatReflectionTypeAdapterFactory factory = new FlatReflectionTypeAdapterFactory(gson, interfaceFieldParsers, streamingRead);
+        factory.loadPlanSnapshot(planSnapshot);
+        factory.prepareBindings();
+        return factory;
+    }
+
+    /**
+     * 通过 {@link GsonBuilder#registerTypeAdapterFactory} 注册, 不反射修改 Gson 的内部字段, 与其他类型共用一份adapter缓存.
+     * 绑定时不预先构建接口的动态类, 需要时通过 {@link FlatRegistration#factory(Gson)} 获取factory后调用 {@link #prepare(Class[])}.
+     * GsonBuilder 注册的 InstanceCreator 对平铺的类型不生效.
+     *
+     * @param streamingRead true 时使用流式反序列化, false 时先解析成 {@link JsonObject} 再反序列化
+     */
+    public static FlatRegistration<FlatReflectionTypeAdapterFactory> registration(Map<Class, InterfaceFieldParser> interfaceFieldParsers, boolean streamingRead) {
+        return registration(interfaceFieldParsers, streamingRead, null);
+    }
+
+    /**
+     * Same as {@link #registration(Map, boolean)}, 绑定到 Gson 时先加载 {@link #writePlanSnapshot} 写出的快照,
+     * 读取失败时 {@link FlatRegistration#factory(Gson)} 抛出 {@link JsonIOException}.
+     *
+     * @param planSnapshot 上一次启动写出的快照文件, 为null时不加载
+     */
+    public static FlatRegistration<FlatReflectionTypeAdapterFactory> registration(Map<Class, InterfaceFieldParser> interfaceFieldParsers, boolean streamingRead,
+                                                                                  Path planSnapshot) {
+        return new FlatRegistration<>(gson -> {
+            FlatReflectionTypeAdapterFactory factory = new FlatReflectionTypeAdapterFactory(gson, interfaceFieldParsers, streamingRead,
+                    new ConstructorConstructor(Collections.emptyMap()));
+            if (planSnapshot != null) {
+                try {
+                    factory.loadPlanSnapshot(planSnapshot);
+                } catch (IOException e) {
+                    throw new JsonIOException(e);
                 }
-                replacementFactories.add(factory);
             }
-            // replace whole Gson.factories list by ours, because its unmodifiable
-            factoriesField.set(gson, Collections.unmodifiableList(replacementFactories));
+            return factory;
+        });
+    }
 
-            Field constructorConstructorField = gson.getClass().getDeclaredField("constructorConstructor");
-            constructorConstructorField.setAccessible(true);
-            this.constructorConstructor = (ConstructorConstructor) constructorConstructorField.get(gson);
+    /**
+     * 反射替换 gson 中的 {@link ReflectiveTypeAdapterFactory}.
+     */
+    protected FlatReflectionTypeAdapterFactory(Gson gson, Map<Class, InterfaceFieldParser> dynamicFieldParser, boolean streamingRead) {
+        this(gson, dynamicFieldParser, streamingRead, GsonInjection.constructorConstructor(gson));
+        GsonInjection.replaceReflectiveFactory(gson, this);
+    }
 
-            if (fieldNamingPolicy == null)
-                throw new RuntimeException("reflective injection failed: no fieldNamingPolicy found");
-            if (excluder == null) throw new RuntimeException("reflective injection failed: no excluder found");
-            this.fieldNamingPolicy = fieldNamingPolicy;
-            this.excluder = excluder;
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            throw new RuntimeException(e);
-        }
+    protected FlatReflectionTypeAdapterFactory(Gson gson, Map<Class, InterfaceFieldParser> dynamicFieldParser, boolean streamingRead,
+                                               ConstructorConstructor constructorConstructor) {
+        this.gson = gson;
+        this.dynamicFieldParser = dynamicFieldParser;
+        this.streamingRead = streamingRead;
+        this.constructorConstructor = constructorConstructor;
+        this.fieldNamingPolicy = gson.fieldNamingStrategy();
+        this.excluder = gson.excluder();
+    }
+
+    /**
+     * 设置读写指标, 只对之后创建的adapter生效, 需要在第一次序列化/反序列化以及 {@link #prepare(Class[])} 之前调用.
+     *
+     * @param metrics null 时不记录
+     */
+    public void setMetrics(FlatMetrics metrics) {
+        this.metrics = metrics;
     }
 
     protected boolean excludeField(Field f, boolean serialize) {
@@ -123,10 +209,203 @@ public class FlatReflectionTypeAdapterFactory implements TypeAdapterFactory {
             return null; // it's a primitive!
         }
 
+        FlatPlanBuildEvent event = new FlatPlanBuildEvent();
+        event.begin();
+        FlatMetrics metrics = this.metrics;
+        FlatMetrics.TypeMetrics typeMetrics = metrics == null ? null : metrics.forType(raw);
+        long start = typeMetrics == null ? 0 : System.nanoTime();
+
         ObjectConstructor<T> constructor = constructorConstructor.get(type);
         Map<String, ObjectPathBoundedField> boundFields = buildBoundFields(gson, type, Collections.emptyList());
-        FlatReflectionTypeAdapter<T> tFlatReflectionTypeAdapter = new FlatReflectionTypeAdapter<>(constructor, boundFields, this);
-        return tFlatReflectionTypeAdapter;
+        FlatReflectionTypeAdapter<T> adapter = new FlatReflectionTypeAdapter<>(constructor, boundFields, this, raw, typeMetrics);
+        if (typeMetrics != null) {
+            typeMetrics.recordPlanBuild(System.nanoTime() - start);
+        }
+        if (event.shouldCommit()) {
+            event.type = raw;
+            event.keys = boundFields.size();
+            event.commit();
+        }
+        return adapter;
+    }
+
+    /**
+     * 注入时为每个接口构建一次读写的动态类, 配置错误在启动时就能发现.
+     */
+    protected void prepareBindings() {
+        for (Class<?> interfaceType : dynamicFieldParser.keySet()) {
+            getReadBinding(interfaceType);
+            getWriteBinding(interfaceType);
+        }
+    }
+
+    /**
+     * 预先构建根类型的全部绑定计划: 根类型及其中间层对象的平铺字段, 读用的前缀树, 写计划,
+     * 以及所有注册的接口实现类. 之后第一次序列化/反序列化不再有反射遍历.
+     *
+     * @param roots 顶层的model类型
+     */
+    public void prepare(Class<?>... roots) {
+        for (Class<?> interfaceType : dynamicFieldParser.keySet()) {
+            prepareInterface(interfaceType);
+        }
+        for (Class<?> root : roots) {
+            prepareRoot(root);
+        }
+    }
+
+    /**
+     * 同 {@link #prepare(Class[])}, 每个根类型和接口在 pool 中并行构建, 适合启动时注册了大量model的场景.
+     * 共享的中间层类型只反射一次, 构建结果进入factory的计划缓存, 之后 {@link Gson#getAdapter} 直接使用.
+     * 任意一个类型构建失败(例如循环依赖)时抛出该异常.
+     */
+    public void prepare(ForkJoinPool pool, Class<?>... roots) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Class<?> interfaceType : dynamicFieldParser.keySet()) {
+            tasks.add(ForkJoinTask.adapt(() -> prepareInterface(interfaceType)));
+        }
+        for (Class<?> root : roots) {
+            tasks.add(ForkJoinTask.adapt(() -> prepareRoot(root)));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+    }
+
+    private void prepareInterface(Class<?> interfaceType) {
+        getWriteBinding(interfaceType);
+        for (InterfaceBoundedField interfaceBoundedField : getReadBinding(interfaceType).getMap().values()) {
+            interfaceBoundedField.getKeyTrie();
+        }
+    }
+
+    private void prepareRoot(Class<?> root) {
+        TypeAdapter<?> adapter = gson.getAdapter(root);
+        if (adapter instanceof FlatReflectionTypeAdapter) {
+            // 写计划中接口字段的子计划也一起构建
+            ((FlatReflectionTypeAdapter<?>) adapter).writePlan.prepare(new HashSet<>());
+        }
+    }
+
+    /**
+     * 把根类型和所有注册的接口实现类的绑定计划写成快照, 格式见 {@link FlatPlanSnapshot}.
+     * 快照只能由相同 Gson 配置(excluder, 注册的 TypeAdapter 等)的实例加载.
+     *
+     * @param roots 顶层的model类型
+     */
+    public void writePlanSnapshot(Path file, Class<?>... roots) throws IOException {
+        Map<Class<?>, Map<String, ObjectPathBoundedField>> plans = new LinkedHashMap<>();
+        for (Class<?> root : roots) {
+            if (!plans.containsKey(root)) {
+                plans.put(root, buildBoundFields(gson, TypeToken.get(root), new ArrayList<>()));
+            }
+        }
+        for (Class<?> interfaceType : dynamicFieldParser.keySet()) {
+            for (InterfaceBoundedField interfaceBoundedField : getReadBinding(interfaceType).getMap().values()) {
+                plans.putIfAbsent(interfaceBoundedField.getClazz(), interfaceBoundedField.getObjectPathBoundedFields());
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            FlatPlanSnapshot.write(namingPolicyKey(), plans, out);
+        }
+    }
+
+    /**
+     * 加载 {@link #writePlanSnapshot} 写出的快照, 必须在构建任何绑定计划之前调用, 之后顶层类型和接口实现类的
+     * {@link #buildBoundFields} 优先按快照恢复. 每个类加载时按类结构的指纹校验, 不一致的类回退到反射遍历.
+     */
+    void loadPlanSnapshot(Path file) throws IOException {
+        if (!planCache.isEmpty() || !readBindings.isEmpty() || !writeBindings.isEmpty()) {
+            throw new IllegalStateException("plan snapshot must be loaded before any plan is built");
+        }
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = FlatReflectionTypeAdapterFactory.class.getClassLoader();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            this.planSnapshot = FlatPlanSnapshot.read(namingPolicyKey(), classLoader, in);
+        }
+    }
+
+    /**
+     * @return 加载的快照中通过校验的类的个数, 没有加载快照, 快照版本或者 fieldNamingPolicy 不一致时为0
+     */
+    public int getPlanSnapshotSize() {
+        FlatPlanSnapshot planSnapshot = this.planSnapshot;
+        return planSnapshot == null ? 0 : planSnapshot.size();
+    }
+
+    /**
+     * 快照中记录的 fieldNamingPolicy: 枚举(如 {@link FieldNamingPolicy})按枚举类名和常量名, 其他实现按类名,
+     * 所以自定义的 {@link FieldNamingStrategy} 同一个类的实例必须按相同的规则命名.
+     * lambda 等运行期生成的类名每次启动可能不同, 这时快照作废, 回退到反射遍历.
+     */
+    private String namingPolicyKey() {
+        if (fieldNamingPolicy instanceof Enum) {
+            Enum<?> policy = (Enum<?>) fieldNamingPolicy;
+            return policy.getDeclaringClass().getName() + "." + policy.name();
+        }
+        return fieldNamingPolicy.getClass().getName();
+    }
+
+    /**
+     * 获取接口类型的全部动态类(反序列化用), 首次调用时通过 {@link InterfaceFieldParser} 构建并缓存.
+     *
+     * @param interfaceType 接口字段的类型
+     */
+    public DynamicTypeInterfaceBoundedField getReadBinding(Class<?> interfaceType) {
+        DynamicTypeInterfaceBoundedField binding = readBindings.get(interfaceType);
+        if (binding == null) {
+            // 不使用computeIfAbsent, parser中可能会递归解析其他接口类型
+            binding = getInterfaceFieldParser(interfaceType).getBoundedFildsForRead(this);
+            // 动态类的构造器在缓存时解析好, 读的时候只需要一次 construct
+            for (InterfaceBoundedField interfaceBoundedField : binding.getMap().values()) {
+                interfaceBoundedField.getObjectConstructor(constructorConstructor);
+            }
+            DynamicTypeInterfaceBoundedField previous = readBindings.putIfAbsent(interfaceType, binding);
+            if (previous != null) {
+                binding = previous;
+            }
+        }
+        return binding;
+    }
+
+    /**
+     * 获取接口类型序列化时使用的动态类, 首次调用时通过 {@link InterfaceFieldParser} 构建并缓存.
+     *
+     * @param interfaceType 接口字段的类型
+     */
+    public InterfaceBoundedField getWriteBinding(Class<?> interfaceType) {
+        InterfaceBoundedField binding = writeBindings.get(interfaceType);
+        if (binding == null) {
+            binding = getInterfaceFieldParser(interfaceType).getBoundedFildsForWrite(this);
+            InterfaceBoundedField previous = writeBindings.putIfAbsent(interfaceType, binding);
+            if (previous != null) {
+                binding = previous;
+            }
+        }
+        return binding;
+    }
+
+    /**
+     * 获取对象实际类型对应的序列化动态类, parser 不区分实际类型时同 {@link #getWriteBinding(Class)}.
+     *
+     * @param interfaceType 接口字段的类型
+     * @param runtimeType   字段值的实际类型
+     */
+    public InterfaceBoundedField getWriteBinding(Class<?> interfaceType, Class<?> runtimeType) {
+        InterfaceBoundedField binding = getInterfaceFieldParser(interfaceType).getBoundedFildsForWrite(this, runtimeType);
+        return binding != null ? binding : getWriteBinding(interfaceType);
+    }
+
+    private InterfaceFieldParser getInterfaceFieldParser(Class<?> interfaceType) {
+        InterfaceFieldParser interfaceFieldParser = dynamicFieldParser.get(interfaceType);
+        if (interfaceFieldParser == null) {
+            throw new RuntimeException("can not find  InterfaceFieldParser of interface ,clazz=" + interfaceType.getSimpleName());
+        }
+        return interfaceFieldParser;
+    }
+
+    static FlatKeyTrie<ObjectPathBoundedField> newKeyTrie(Map<String, ObjectPathBoundedField> boundFields) {
+        return new FlatKeyTrie<>(boundFields, ObjectPathBoundedField::isDynamic);
     }
 
     protected ObjectPathBoundedField createBoundField(final List<Field> fieldPath, final String name, boolean serialize, boolean deserialize) {
@@ -156,6 +435,7 @@ public class FlatReflectionTypeAdapterFactory implements TypeAdapterFactory {
 
     /***
      * 非常依赖bean的解析能力.
+     * 顶层(fieldPath为空)的非泛型类型结果缓存在 {@link #planCache} 中, 返回只读的map.
      * @param type
      * @param fieldPath
      * @return
@@ -169,13 +449,84 @@ public class FlatReflectionTypeAdapterFactory implements TypeAdapterFactory {
             return result;
         }
 
+        boolean topLevel = fieldPath.isEmpty() && type.getType() == raw;
+        if (topLevel) {
+            Map<String, ObjectPathBoundedField> cached = planCache.get(raw);
+            if (cached != null) {
+                return cached;
+            }
+            FlatPlanSnapshot planSnapshot = this.planSnapshot;
+            if (planSnapshot != null) {
+                Map<String, ObjectPathBoundedField> restored = planSnapshot.restore(this, raw);
+                if (restored != null) {
+                    return cachePlan(raw, restored);
+                }
+            }
+        }
+
         for (Field field : fieldPath) {
             if (field.getDeclaringClass().isAssignableFrom(raw)) {
                 throw new RuntimeException("circle depend pre=" + field + ",now=" + field);
             }
         }
 
+        Set<Class<?>> building = fieldPath.isEmpty() ? this.building.get() : null;
+        boolean added = building != null && building.add(raw);
+        List<FieldShape> shapes;
+        try {
+            shapes = getFieldShapes(type);
+        } finally {
+            if (added) {
+                building.remove(raw);
+            }
+        }
+
         Type declaredType = type.getType();
+        for (FieldShape fieldShape : shapes) {
+            // field path: current + processing field
+            ArrayList<Field> fieldsPath = new ArrayList<>(fieldPath);
+            fieldsPath.add(fieldShape.field);
+
+            if (fieldShape.nested) {
+                for (Map.Entry<String, ObjectPathBoundedField> entry : buildBoundFields(gson, fieldShape.fieldType, fieldsPath).entrySet()) {
+                    ObjectPathBoundedField previous = result.put(entry.getKey(), entry.getValue());
+                    if (previous != null)
+                        throw new IllegalArgumentException(declaredType + " with flat path "
+                                + fieldPath.stream().map(Field::getName).collect(Collectors.joining("."))
+                                + " multiple JSON fields named , fieldName=" + previous.getName() + ",entry.getKey()=" + entry.getKey());
+                }
+            } else {
+                ObjectPathBoundedField boundField = createBoundField(fieldsPath, fieldShape.name, fieldShape.serialize, fieldShape.deserialize);
+
+                ObjectPathBoundedField previous = result.put(boundField.getName(), boundField);
+                if (previous != null) {
+                    throw new IllegalArgumentException(declaredType
+                            + " declares multiple JSON fields named " + previous.getName());
+                }
+            }
+        }
+        return topLevel ? cachePlan(raw, result) : result;
+    }
+
+    private Map<String, ObjectPathBoundedField> cachePlan(Class<?> raw, Map<String, ObjectPathBoundedField> boundFields) {
+        Map<String, ObjectPathBoundedField> plan = Collections.unmodifiableMap(boundFields);
+        Map<String, ObjectPathBoundedField> previous = planCache.putIfAbsent(raw, plan);
+        return previous != null ? previous : plan;
+    }
+
+    /**
+     * 类型(含父类)中参与序列化的字段, 以及每个字段是中间层对象还是叶子. 与所在的 fieldPath 无关,
+     * 同一个中间层类型被多个model引用时只反射一次.
+     */
+    private List<FieldShape> getFieldShapes(TypeToken<?> declaredType) {
+        List<FieldShape> shapes = fieldShapes.get(declaredType);
+        if (shapes != null) {
+            return shapes;
+        }
+
+        shapes = new ArrayList<>();
+        TypeToken<?> type = declaredType;
+        Class<?> raw = type.getRawType();
         while (raw != Object.class) {
             Field[] fields = raw.getDeclaredFields();
             for (Field field : fields) {
@@ -186,52 +537,108 @@ public class FlatReflectionTypeAdapterFactory implements TypeAdapterFactory {
                 }
                 field.setAccessible(true);
 
-                // field path: current + processing field
-                ArrayList<Field> fieldsPath = new ArrayList<>(fieldPath);
-                fieldsPath.add(field);
-
                 Type fieldType = $Gson$Types.resolve(type.getType(), raw, field.getGenericType());
 
                 TypeToken<?> fieldTypeToken = TypeToken.get(fieldType);
-                Class<?> declaringClass = field.getType();
-                TypeAdapter<?> adapter = originalFactoriesGson.getAdapter(declaringClass);
-
-                if (adapter instanceof ReflectiveTypeAdapterFactory.Adapter && !field.getType().isInterface()) {
-                    for (Map.Entry<String, ObjectPathBoundedField> entry : buildBoundFields(gson, fieldTypeToken, fieldsPath).entrySet()) {
-                        ObjectPathBoundedField previous = result.put(entry.getKey(), entry.getValue());
-                        if (previous != null)
-                            throw new IllegalArgumentException(declaredType + " with flat path "
-                                    + fieldPath.stream().map(Field::getName).collect(Collectors.joining("."))
-                                    + " multiple JSON fields named , fieldName=" + previous.getName() + ",entry.getKey()=" + entry.getKey());
-                    }
-                } else {
-                    ObjectPathBoundedField boundField = createBoundField(fieldsPath, getFieldName(field), serialize, deserialize);
-
-                    ObjectPathBoundedField previous = result.put(boundField.getName(), boundField);
-                    if (previous != null) {
-                        throw new IllegalArgumentException(declaredType
-                                + " declares multiple JSON fields named " + previous.getName());
-                    }
-                }
+                boolean nested = !field.getType().isInterface() && isFlatType(field);
+                shapes.add(new FieldShape(field, fieldTypeToken, nested, nested ? null : getFieldName(field), serialize, deserialize));
             }
             type = TypeToken.get($Gson$Types.resolve(type.getType(), raw, raw.getGenericSuperclass()));
             raw = type.getRawType();
         }
-        return result;
+
+        shapes = Collections.unmodifiableList(shapes);
+        List<FieldShape> previous = fieldShapes.putIfAbsent(declaredType, shapes);
+        return previous != null ? previous : shapes;
+    }
+
+    /**
+     * 字段的类型是否是平铺的POJO, 即 gson 为它选择了平铺的adapter. 与其他类型共用 gson 的adapter缓存.
+     * 正在构建的顶层类型在 gson 中还没有adapter, 先检查循环依赖.
+     */
+    private boolean isFlatType(Field field) {
+        Class<?> fieldClass = field.getType();
+        for (Class<?> buildingType : building.get()) {
+            if (buildingType.isAssignableFrom(fieldClass)) {
+                throw new RuntimeException("circle depend pre=" + buildingType + ",now=" + field);
+            }
+        }
+        TypeAdapter<?> adapter = gson.getAdapter(fieldClass);
+        return adapter instanceof FlatReflectionTypeAdapter;
     }
 
+    private static final class FieldShape {
+        final Field field;
+        final TypeToken<?> fieldType;
+        /**
+         * true 时为中间层对象, 递归平铺
+         */
+        final boolean nested;
+        final String name;
+        final boolean serialize;
+        final boolean deserialize;
+
+        FieldShape(Field field, TypeToken<?> fieldType, boolean nested, String name, boolean serialize, boolean deserialize) {
+            this.field = field;
+            this.fieldType = fieldType;
+            this.nested = nested;
+            this.name = name;
+            this.serialize = serialize;
+            this.deserialize = deserialize;
+        }
+    }
 
-    protected static class FlatReflectionTypeAdapter<T> extends TypeAdapter<T> {
+
+    protected static class FlatReflectionTypeAdapter<T> extends TypeAdapter<T> implements FlatKeyDictionary.Owner {
         protected final ObjectConstructor<T> constructor;
         protected final Map<String, ObjectPathBoundedField> boundFields;
+        protected final FlatKeyTrie<ObjectPathBoundedField> keyTrie;
+        /**
+         * 预先拼好完整平铺key的写计划
+         */
+        protected final FlatWritePlan writePlan;
         protected final FlatReflectionTypeAdapterFactory flatReflectionTypeAdapterFactory;
+        /**
+         * JFR事件中记录的类型, 可能为null
+         */
+        private final Class<?> rawType;
+        /**
+         * 没有设置 {@link FlatMetrics} 时为null, 读写时不计时也不计数
+         */
+        private final FlatMetrics.TypeMetrics metrics;
+        /**
+         * {@link FlatUtf8} 使用的key字典, 第一次使用时创建
+         */
+        private volatile FlatKeyDictionary utf8Keys;
 
         protected FlatReflectionTypeAdapter(ObjectConstructor<T> constructor, Map<String, ObjectPathBoundedField> boundFields, FlatReflectionTypeAdapterFactory flatReflectionTypeAdapterFactory) {
+            this(constructor, boundFields, flatReflectionTypeAdapterFactory, null, null);
+        }
+
+        protected FlatReflectionTypeAdapter(ObjectConstructor<T> constructor, Map<String, ObjectPathBoundedField> boundFields, FlatReflectionTypeAdapterFactory flatReflectionTypeAdapterFactory,
+                                            Class<?> rawType, FlatMetrics.TypeMetrics metrics) {
+            this.rawType = rawType;
+            this.metrics = metrics;
             this.constructor = constructor;
             this.boundFields = boundFields;
+            this.keyTrie = newKeyTrie(boundFields);
+            this.writePlan = new FlatWritePlan(flatReflectionTypeAdapterFactory, boundFields, "");
             this.flatReflectionTypeAdapterFactory = flatReflectionTypeAdapterFactory;
         }
 
+        /**
+         * 静态字段的key预先编码, 动态类型实现类的key在前缀树能匹配到时加入.
+         */
+        @Override
+        public FlatKeyDictionary utf8Keys() {
+            FlatKeyDictionary utf8Keys = this.utf8Keys;
+            if (utf8Keys == null) {
+                utf8Keys = new FlatKeyDictionary(boundFields.keySet(), key -> keyTrie.match(key, 0) != null);
+                this.utf8Keys = utf8Keys;
+            }
+            return utf8Keys;
+        }
+
         @Override
         public T read(JsonReader in) throws IOException {
             if (in.peek() == JsonToken.NULL) {
@@ -239,167 +646,176 @@ public class FlatReflectionTypeAdapterFactory implements TypeAdapterFactory {
                 return null;
             }
 
+            FlatReadEvent event = new FlatReadEvent();
+            event.begin();
+            FlatMetrics.TypeMetrics metrics = this.metrics;
+            long start = metrics == null ? 0 : System.nanoTime();
+            // 没有设置指标也没有JFR录制时不计数
+            FlatCallStats stats = metrics == null && !event.isEnabled() ? null : new FlatCallStats();
+
             T instance = constructor.construct();
 
             try {
-                JsonObject jsonObject = (JsonObject) Streams.parse(in);
-                readFields(boundFields, "", instance, jsonObject);
+                if (flatReflectionTypeAdapterFactory.streamingRead) {
+                    readFieldsStreaming(in, instance, stats);
+                } else {
+                    JsonObject jsonObject = (JsonObject) Streams.parse(in);
+                    readEntries(keyTrie, 0, instance, jsonObject.entrySet(), stats);
+                }
             } catch (
                     IllegalStateException e) {
                 throw new JsonSyntaxException(e);
             } catch (
-                    IllegalAccessException | NoSuchMethodException | InvocationTargetException | InstantiationException e) {
+                    IllegalAccessException e) {
                 throw new AssertionError(e);
             }
+            if (metrics != null) {
+                metrics.recordRead(System.nanoTime() - start, stats.fields, stats.skippedKeys, stats.dynamicResolutions);
+            }
+            // 开始读取后才开启的录制没有计数, 本次不提交
+            if (stats != null && event.shouldCommit()) {
+                event.type = rawType;
+                event.streaming = flatReflectionTypeAdapterFactory.streamingRead;
+                // 每次动态类型解析对应一个类型标识key
+                event.keys = stats.fields + stats.skippedKeys + stats.dynamicResolutions;
+                event.fields = stats.fields;
+                event.skippedKeys = stats.skippedKeys;
+                event.dynamicResolutions = stats.dynamicResolutions;
+                event.commit();
+            }
             return instance;
         }
 
-        private void readFields(Map<String, ObjectPathBoundedField> boundFields, String prefix, Object instance, JsonObject jsonObject) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
-            Iterator<Map.Entry<String, JsonElement>> iterator = jsonObject.entrySet().iterator();
+        /**
+         * 流式读取. 静态字段直接用 typeAdapter 从 reader 中读取;
+         * 动态类型(接口)的字段读到类型标识后直接流式读取, 类型标识之前的字段按前缀缓存, 见 {@link FlatReadScope}.
+         */
+        private void readFieldsStreaming(JsonReader in, Object instance, FlatCallStats stats) throws IOException, IllegalAccessException {
+            FlatReadScope scope = new FlatReadScope(flatReflectionTypeAdapterFactory, keyTrie, 0, instance, stats);
 
-            while (iterator.hasNext()) {
-                Map.Entry<String, JsonElement> entry = iterator.next();
-                String jsonKey = entry.getKey();
-                JsonElement jsonElement = entry.getValue();
-                //去除前缀. 特别是对多层接口对象静态嵌套.
-                jsonKey  = jsonKey.replaceFirst(StringUtils.isEmpty(prefix) ? "" : prefix + "\\.", "");
-                ObjectPathBoundedField pathField = boundFields.get(jsonKey);
+            in.beginObject();
+            while (in.hasNext()) {
+                scope.read(in.nextName(), in, null);
+            }
+            in.endObject();
+
+            scope.finish();
+        }
 
+        /**
+         * 一次遍历: 静态字段直接读取, 动态类型字段下的key按所属的动态字段分桶,
+         * 之后每个桶根据类型标识确定实现类, 再用实现类的前缀树递归解析桶内的key.
+         *
+         * @param keyTrie 当前对象的前缀树
+         * @param from    当前对象的key在jsonKey中的起始位置, 即跳过 {@code prefix + "."}
+         * @param entries 全部以当前对象的前缀开头的key
+         * @param stats   本次读取的计数, 可能为null
+         */
+        private void readEntries(FlatKeyTrie<ObjectPathBoundedField> keyTrie, int from, Object instance, Collection<Map.Entry<String, JsonElement>> entries,
+                                 FlatCallStats stats) throws IllegalAccessException {
+            Map<ObjectPathBoundedField, List<Map.Entry<String, JsonElement>>> buckets = null;
 
+            for (Map.Entry<String, JsonElement> entry : entries) {
+                String jsonKey = entry.getKey();
+                ObjectPathBoundedField pathField = keyTrie.match(jsonKey, from);
                 if (pathField == null) {
+                    if (stats != null) {
+                        stats.skippedKeys++;
+                    }
                     continue;
-                } else if (!pathField.deserialized) {
-                    iterator.remove();
-                } else {
-                    iterator.remove();
-                    pathField.read(jsonElement, instance);
-
+                }
+                if (pathField.isDynamic()) {
+                    // 只有动态字段前缀下的key才属于这个桶, 动态字段本身的key忽略
+                    if (jsonKey.length() > from + pathField.name.length()) {
+                        if (buckets == null) {
+                            buckets = new LinkedHashMap<>();
+                        }
+                        buckets.computeIfAbsent(pathField, k -> new ArrayList<>()).add(entry);
+                    } else if (stats != null) {
+                        stats.skippedKeys++;
+                    }
+                } else if (pathField.deserialized) {
+                    pathField.read(entry.getValue(), instance);
+                    if (stats != null) {
+                        stats.fields++;
+                    }
+                } else if (stats != null) {
+                    stats.skippedKeys++;
                 }
             }
-            //对剩余的字段解析
-            fillRuntimeTypeObject(boundFields, instance, prefix, jsonObject);
-        }
-
-        private Object fillRuntimeTypeObject(Map<String, ObjectPathBoundedField> boundFields, Object instance, String prefix, JsonObject jsonObject) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
-            Iterator<Map.Entry<String, JsonElement>> iterator;
-
-
-            JsonObject newJsonObject = new JsonObject();
-
-            Map<String,InterfaceBoundedField> dynamicFields =new HashMap<>();
-            Map<String,Object> dynamicFieldsInstance =new HashMap<>();
 
-            iterator = jsonObject.entrySet().iterator();
-
-            while (iterator.hasNext()) {
-                Map.Entry<String, JsonElement> entry = iterator.next();
-                createDynamicFieldInfos(boundFields, instance, prefix, jsonObject, dynamicFields, dynamicFieldsInstance, entry);
+            if (buckets == null) {
+                return;
             }
-
-            for (String dynamicTypePrefix : dynamicFields.keySet()) {
-                iterator = jsonObject.entrySet().iterator();
-                InterfaceBoundedField interfaceBoundedField = dynamicFields.get(dynamicTypePrefix);
-                //创建动态类型的独有jsonObject
-                JsonObject dynamicFieldJsonObject = createDynamicFieldJsonObject(iterator, dynamicTypePrefix, interfaceBoundedField);
-                // 获取动态类型实例
-                Object dynamicInstance = dynamicFieldsInstance.get(dynamicTypePrefix);
-                //反序列化动态类型.
-                readFields(interfaceBoundedField.objectPathBoundedFields, dynamicTypePrefix, dynamicInstance, dynamicFieldJsonObject);
+            for (Map.Entry<ObjectPathBoundedField, List<Map.Entry<String, JsonElement>>> bucket : buckets.entrySet()) {
+                readDynamicField(bucket.getKey(), from, instance, bucket.getValue(), stats);
             }
-
-
-            return instance;
         }
 
-        private void createDynamicFieldInfos(Map<String, ObjectPathBoundedField> boundFields, Object instance, String prefix, JsonObject jsonObject, Map<String, InterfaceBoundedField> dynamicFields, Map<String, Object> dynamicFieldsInstance, Map.Entry<String, JsonElement> entry) throws InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException {
-            String jsonKey = entry.getKey();
-            //去掉前缀,获取到当前对象真正的key
-            String currentObjectJsonKey = StringUtils.isEmpty(prefix) ? jsonKey : jsonKey.replaceFirst(prefix + "\\.", "");
-            String[] split = currentObjectJsonKey.split("\\.");
-            String prefixTemp = "";
-            ObjectPathBoundedField pathField = null;
-            for (int index = 0; index <split.length; index++) {
-                prefixTemp = StringUtils.isEmpty(prefixTemp) ? split[index] :prefixTemp+"."+ split[index] ;
-                // 在静态类解析的boundFields中,通过前缀匹配对应的 pathField
-                pathField = boundFields.get(prefixTemp);
-                if (pathField != null) {
-                    break;
-                }
-            }
-
-            String dynamicTypePrefix = StringUtils.isEmpty(prefix) ? prefixTemp : prefix + "." + prefixTemp;
-
-            if (dynamicFields.containsKey(dynamicTypePrefix)){
-                return;
-            }
+        /**
+         * 解析一个动态字段: 在桶内找到类型标识, 构造实现类对象并设置到上级对象中, 再解析实现类的字段.
+         */
+        private void readDynamicField(ObjectPathBoundedField pathField, int from, Object instance, List<Map.Entry<String, JsonElement>> entries,
+                                      FlatCallStats stats) throws IllegalAccessException {
+            FlatDynamicResolveEvent event = new FlatDynamicResolveEvent();
+            event.begin();
+            int keysBeforeType = 0;
 
-            // 通过静态类匹配到的属性,进一步获取对应的动态类解析类
-            InterfaceFieldParser interfaceFieldParser = flatReflectionTypeAdapterFactory.dynamicFieldParser.get(pathField.lastField.getType());
+            // 动态字段下的key跳过 pathField.name + "." 后的起始位置
+            int nestedFrom = from + pathField.name.length() + 1;
 
-            // 通过解析类获取到动态类集合
-            DynamicTypeInterfaceBoundedField boundedFildsForRead = interfaceFieldParser.getBoundedFildsForRead(flatReflectionTypeAdapterFactory);
+            // 通过静态类匹配到的属性,获取到动态类集合
+            DynamicTypeInterfaceBoundedField boundedFildsForRead = flatReflectionTypeAdapterFactory.getReadBinding(pathField.lastField.getType());
 
             // 获取到动态类的typeName
             String shortTypeKey = boundedFildsForRead.getTypeName();
 
             // 通过前缀+typeName获取到 指定的 动态类型的类型值
-            String typeKey = dynamicTypePrefix + "." + shortTypeKey;
-            JsonElement typeValueJsonElement = jsonObject.get(typeKey);
+            String typeKey = null;
+            JsonElement typeValueJsonElement = null;
+            for (Iterator<Map.Entry<String, JsonElement>> iterator = entries.iterator(); iterator.hasNext(); ) {
+                Map.Entry<String, JsonElement> entry = iterator.next();
+                String jsonKey = entry.getKey();
+                if (jsonKey.length() == nestedFrom + shortTypeKey.length() && jsonKey.startsWith(shortTypeKey, nestedFrom)) {
+                    typeKey = jsonKey;
+                    typeValueJsonElement = entry.getValue();
+                    iterator.remove();
+                } else if (typeValueJsonElement == null) {
+                    keysBeforeType++;
+                }
+            }
             if (typeValueJsonElement == null) {
-                throw new RuntimeException("typeValueJsonElement is null ,dynamicTypeKey=" + typeKey + ",shortTypeKey=" + shortTypeKey + ",name=" + currentObjectJsonKey);
+                typeKey = entries.get(0).getKey().substring(0, nestedFrom) + shortTypeKey;
+                throw new RuntimeException("typeValueJsonElement is null ,dynamicTypeKey=" + typeKey + ",shortTypeKey=" + shortTypeKey + ",name=" + entries.get(0).getKey());
             }
 
             // 通过动态类型的类型值获取到指定的 interfaceBoundedField
             InterfaceBoundedField interfaceBoundedField = boundedFildsForRead.getMap().get(typeValueJsonElement.getAsString());
 
             if (interfaceBoundedField == null) {
-                throw new RuntimeException("interfaceBoundedField is null ,typeClazz=" + pathField.lastField.getType() + ",dynamicType=" + typeValueJsonElement + ",dynamicTypeKey=" + typeKey + ",shortTypeKey=" + shortTypeKey + ",jsonKey=" + currentObjectJsonKey);
+                throw new RuntimeException("interfaceBoundedField is null ,typeClazz=" + pathField.lastField.getType() + ",dynamicType=" + typeValueJsonElement + ",dynamicTypeKey=" + typeKey + ",shortTypeKey=" + shortTypeKey);
             }
 
-            dynamicFields.put(dynamicTypePrefix,interfaceBoundedField);
-
             // 根据class 构造  动态类的对象
-            Object fieldValue = interfaceBoundedField.getClazz().getConstructor().newInstance();
+            Object dynamicInstance = interfaceBoundedField.getObjectConstructor(flatReflectionTypeAdapterFactory.constructorConstructor).construct();
 
             // 设置动态类对象到 上级对象中
-            pathField.setPathValue(instance, fieldValue);
-            dynamicFieldsInstance.put(dynamicTypePrefix, fieldValue);
-        }
-
-        private JsonObject createDynamicFieldJsonObject(Iterator<Map.Entry<String, JsonElement>> iterator, String dynamicTypePrefix, InterfaceBoundedField interfaceBoundedField) {
-            JsonObject dynamicFieldJsonObject = new JsonObject();
-
-            while (iterator.hasNext()){
-                Map.Entry<String, JsonElement> next = iterator.next();
-
-
-                if (next.getKey().equals(dynamicTypePrefix +"."+ interfaceBoundedField.typeName)){
-                    iterator.remove();
-                    continue;
-                }
-
-                if (next.getKey().contains(dynamicTypePrefix)){
-                    dynamicFieldJsonObject.add(next.getKey(),next.getValue());
-                }
+            pathField.setPathValue(instance, dynamicInstance);
 
+            if (stats != null) {
+                stats.dynamicResolutions++;
             }
-            return dynamicFieldJsonObject;
-        }
 
-        /**
-         * 当前仅支持接口. 非接口需要根据class
-         *
-         * @param field
-         * @return
-         */
-        private boolean isDynamic(InterfaceFieldParser interfaceFieldParser, ObjectPathBoundedField field) {
-            if (interfaceFieldParser != null) {
-                return true;
-            }
-            if (field.lastField.getType().isInterface()) {
-                throw new RuntimeException("can not find  InterfaceFieldParser of interface ,clazz=" + field.lastField.getType().getSimpleName());
+            //反序列化动态类型.
+            readEntries(interfaceBoundedField.getKeyTrie(), nestedFrom, dynamicInstance, entries, stats);
+
+            if (event.shouldCommit()) {
+                event.interfaceType = pathField.lastField.getType();
+                event.implementation = interfaceBoundedField.getClazz();
+                event.typeValue = interfaceBoundedField.getTypeValue();
+                event.keysBeforeType = keysBeforeType;
+                event.commit();
             }
-            return false;
         }
 
         @Override
@@ -417,61 +833,24 @@ public class FlatReflectionTypeAdapterFactory implements TypeAdapterFactory {
 //            } catch (IllegalAccessException e) {
 //                throw new RuntimeException("get out from JsonWriter error",e);
 //            }
+            FlatWriteEvent event = new FlatWriteEvent();
+            event.begin();
+            FlatMetrics.TypeMetrics metrics = this.metrics;
+            long start = metrics == null ? 0 : System.nanoTime();
+            FlatCallStats stats = metrics == null && !event.isEnabled() ? null : new FlatCallStats();
+
             out.beginObject();
-            try {
-                writeField(boundFields, "", out, value);
-            } catch (IllegalAccessException e) {
-                throw new AssertionError();
-            }
+            writePlan.write(out, value, stats);
             out.endObject();
-        }
-
-        public void writeField(Map<String, ObjectPathBoundedField> boundFields, String prefix, JsonWriter writer, Object value) throws IllegalAccessException, IOException {
-            for (ObjectPathBoundedField boundField : boundFields.values()) {
-                if (boundField.serialized) {
-
-                    if (boundField.typeAdapter instanceof FlatReflectionTypeAdapter) {
-
-                        // 当前仅支持接口 不支持 父子类模式. 需要改造 不通过boundFields循环而是通过value的实际类型循环.
-                        InterfaceFieldParser interfaceFieldParser = flatReflectionTypeAdapterFactory.dynamicFieldParser.get(boundField.lastField.getType());
-
-                        InterfaceBoundedField interfaceBoundedField = interfaceFieldParser.getBoundedFildsForWrite(flatReflectionTypeAdapterFactory);
-
-
-
-                        Object interfaceObject = boundField.getObject(value);
-
-                        if (interfaceObject == null) {
-                            continue;
-                        }
 
-                        String nextPrefix = StringUtils.isEmpty(prefix) ? boundField.name : prefix + "." + boundField.name;
-
-                        writer.name(nextPrefix + "." + interfaceBoundedField.typeName);
-                        TypeAdapters.STRING.write(writer, interfaceBoundedField.typeValue);
-
-
-                        // 填充字段
-                        Map<String, ObjectPathBoundedField> objectPathBoundedFields = interfaceBoundedField.objectPathBoundedFields;
-                        writeField(objectPathBoundedFields, nextPrefix, writer, interfaceObject);
-//                        for (ObjectPathBoundedField interfaceField : objectPathBoundedFields.values()) {
-//                            if (interfaceField.typeAdapter instanceof FlatReflectionTypeAdapter){
-//                                Object interfaceObjectOfInterface = interfaceField.getObject(interfaceObject);
-//                                String name=StringUtils.isEmpty(prefix)? interfaceField.name:prefix+"."+interfaceField.name;
-//                                ((FlatReflectionTypeAdapter) interfaceField.typeAdapter).writeField(name,writer, interfaceObjectOfInterface);
-//                            }else {
-//                                String name = StringUtils.isEmpty(prefix) ? prefix : prefix + "." + interfaceField.getName();
-//                                writer.name(name);
-//                                interfaceField.write(this, writer, interfaceObject);
-//                            }
-//                        }
-                    } else {
-                        String name = StringUtils.isEmpty(prefix) ? boundField.getName() : prefix + "." + boundField.getName();
-
-                        writer.name(name);
-                        boundField.write(this, writer, value);
-                    }
-                }
+            if (metrics != null) {
+                metrics.recordWrite(System.nanoTime() - start, stats.fields, stats.dynamicResolutions);
+            }
+            if (stats != null && event.shouldCommit()) {
+                event.type = rawType;
+                event.fields = stats.fields;
+                event.dynamicResolutions = stats.dynamicResolutions;
+                event.commit();
             }
         }
     }
@@ -481,16 +860,28 @@ public class FlatReflectionTypeAdapterFactory implements TypeAdapterFactory {
 
         /**
          * 要依赖flatReflectionTypeAdapterFactory进行解析.
-         * 懒惰加载
+         * 懒惰加载, 结果由factory缓存, 每个接口类型只调用一次.
          *
          * @param flatReflectionTypeAdapterFactory
          * @return
          */
         InterfaceBoundedField getBoundedFildsForWrite(FlatReflectionTypeAdapterFactory flatReflectionTypeAdapterFactory);
 
+        /**
+         * 按字段值的实际类型选择序列化使用的动态类, 一个接口有多个实现类时需要.
+         * 返回null时使用 {@link #getBoundedFildsForWrite(FlatReflectionTypeAdapterFactory)}.
+         *
+         * @param flatReflectionTypeAdapterFactory
+         * @param runtimeType 字段值的实际类型
+         * @return
+         */
+        default InterfaceBoundedField getBoundedFildsForWrite(FlatReflectionTypeAdapterFactory flatReflectionTypeAdapterFactory, Class<?> runtimeType) {
+            return null;
+        }
+
         /**
          * 要依赖flatReflectionTypeAdapterFactory进行解析.
-         * 懒惰加载
+         * 懒惰加载, 结果由factory缓存, 每个接口类型只调用一次.
          *
          * @param flatReflectionTypeAdapterFactory
          * @return
@@ -527,6 +918,8 @@ public class FlatReflectionTypeAdapterFactory implements TypeAdapterFactory {
         String typeValue;
         Class clazz;
         Map<String, ObjectPathBoundedField> objectPathBoundedFields;
+        private volatile FlatKeyTrie<ObjectPathBoundedField> keyTrie;
+        private volatile ObjectConstructor<?> objectConstructor;
 
         public Class getClazz() {
             return clazz;
@@ -534,6 +927,7 @@ public class FlatReflectionTypeAdapterFactory implements TypeAdapterFactory {
 
         public void setClazz(Class clazz) {
             this.clazz = clazz;
+            this.objectConstructor = null;
         }
 
         public String getTypeName() {
@@ -558,6 +952,32 @@ public class FlatReflectionTypeAdapterFactory implements TypeAdapterFactory {
 
         public void setObjectPathBoundedFields(Map<String, ObjectPathBoundedField> objectPathBoundedFields) {
             this.objectPathBoundedFields = objectPathBoundedFields;
+            this.keyTrie = null;
+        }
+
+        /**
+         * 懒惰构建 objectPathBoundedFields 对应的前缀树.
+         */
+        FlatKeyTrie<ObjectPathBoundedField> getKeyTrie() {
+            FlatKeyTrie<ObjectPathBoundedField> keyTrie = this.keyTrie;
+            if (keyTrie == null) {
+                keyTrie = newKeyTrie(objectPathBoundedFields);
+                this.keyTrie = keyTrie;
+            }
+            return keyTrie;
+        }
+
+        /**
+         * 懒惰解析 clazz 对应的 {@link ObjectConstructor}, 之后构造动态类对象不再走反射查找构造器.
+         */
+        ObjectConstructor<?> getObjectConstructor(ConstructorConstructor constructorConstructor) {
+            ObjectConstructor<?> objectConstructor = this.objectConstructor;
+            if (objectConstructor == null) {
+                Class<?> type = clazz;
+                objectConstructor = constructorConstructor.get(TypeToken.get(type));
+                this.objectConstructor = objectConstructor;
+            }
+            return objectConstructor;
         }
     }
 
@@ -578,6 +998,18 @@ public class FlatReflectionTypeAdapterFactory implements TypeAdapterFactory {
          * 静态分析出的typeAdapter
          */
         protected final TypeAdapter typeAdapter;
+        /**
+         * 预先组合好的路径访问器
+         */
+        protected final FieldPathAccessor accessor;
+        /**
+         * 基本类型/String的特化读写, 不支持时为null
+         */
+        final LeafKind leafKind;
+        /**
+         * leafKind 使用的字段accessor, leafKind 为null时为null
+         */
+        final LeafAccessor leafAccessor;
 
         protected ObjectPathBoundedField(Gson context, List<Field> fieldPath, String name, boolean serialize, boolean deserialize) {
             this.name = name;
@@ -591,6 +1023,11 @@ public class FlatReflectionTypeAdapterFactory implements TypeAdapterFactory {
             this.isPrimitive = Primitives.isPrimitive(fieldType.getRawType());
             TypeAdapter<?> adapter = context.getAdapter(fieldType);
             this.typeAdapter = adapter;
+            this.accessor = FieldPathAccessor.of(fieldPath, constructorConstructor);
+            LeafKind leafKind = LeafKind.of(lastField.getType(), adapter);
+            FieldAccessor leaf = accessor.leaf();
+            this.leafAccessor = leafKind != null && leafKind.accessorType.isInstance(leaf) ? (LeafAccessor) leaf : null;
+            this.leafKind = leafAccessor == null ? null : leafKind;
             List<String> list = Lists.newArrayList();
             for (Field field : fieldPath) {
                 list.add(field.getDeclaringClass().getSimpleName() + "." + field.getName());
@@ -614,62 +1051,90 @@ public class FlatReflectionTypeAdapterFactory implements TypeAdapterFactory {
             return deserialized;
         }
 
+        /**
+         * 是否是动态类型(接口)字段, 需要通过 {@link InterfaceFieldParser} 获取实现类的字段.
+         */
+        public boolean isDynamic() {
+            return typeAdapter instanceof FlatReflectionTypeAdapter;
+        }
+
         @SuppressWarnings({"unchecked", "rawtypes"}) // the type adapter and field type always agree
-        protected void write(FlatReflectionTypeAdapter adapter, JsonWriter writer, Object value) throws IOException, IllegalAccessException {
+        protected void write(JsonWriter writer, Object value) throws IOException, IllegalAccessException {
+            if (leafKind != null) {
+                leafAccessor.write(writer, accessor.getParent(value), typeAdapter);
+                return;
+            }
             value = getObject(value);
 
             typeAdapter.write(writer, value);
 
         }
 
-        public Object getObject(Object value) throws IllegalAccessException {
-            if (value == null) {
-                return null;
-            }
-            // find needed object by path. 层层推进,更换value,直到获取到该字段的真正的持有对象.
-            for (Field field : fieldPath) {
-                value = field.get(value);
-                if (value == null) break;
+        /**
+         * 同 {@link #write(JsonWriter, Object)}, holder 为直接持有最后一个字段的对象, 不为null.
+         */
+        @SuppressWarnings("unchecked") // the type adapter and field type always agree
+        protected void writeFromHolder(JsonWriter writer, Object holder) throws IOException {
+            if (leafKind != null) {
+                leafAccessor.write(writer, holder, typeAdapter);
+                return;
             }
-            return value;
+            typeAdapter.write(writer, accessor.getLeaf(holder));
+        }
+
+        /**
+         * 中间层对象为null时写出字段的值, 同字段为null, 自定义的 TypeAdapter 可以写出非null的值.
+         */
+        @SuppressWarnings("unchecked")
+        protected void writeNull(JsonWriter writer) throws IOException {
+            typeAdapter.write(writer, null);
+        }
+
+        public Object getObject(Object value) throws IllegalAccessException {
+            // find needed object by path. 层层推进,任意一层为null时返回null.
+            return accessor.get(value);
         }
 
         protected void setPathValue(Object instanceToSetFileld, Object fieldValue) throws IllegalAccessException {
             if (instanceToSetFileld == null) {
                 return;
             }
+            accessor.set(accessor.getOrCreateHolder(instanceToSetFileld), fieldValue);
+        }
 
-            //            步步推进,初始化每层的object.
-            for (Field field : fieldPath.subList(0, fieldPath.size() - 1)) {
-                Object child = field.get(instanceToSetFileld);
-                if (child == null) {
-                    child = constructorConstructor.get(TypeToken.get(field.getType())).construct();
-                    field.set(instanceToSetFileld, child);
+        protected void read(JsonElement jsonElemet, Object instanceToSetFileld) throws IllegalAccessException {
+            //步步推进,初始化每层的object.
+            Object holder = accessor.getOrCreateHolder(instanceToSetFileld);
+
+            if (leafKind != null) {
+                // 与 TypeAdapter.fromJsonTree 一样通过 JsonTreeReader 读取, 但不装箱
+                try {
+                    leafAccessor.read(new JsonTreeReader(jsonElemet), holder);
+                } catch (IOException e) {
+                    throw new JsonIOException(e);
                 }
-                instanceToSetFileld = child;
+                return;
             }
 
-
-            fieldPath.get(fieldPath.size() - 1).set(instanceToSetFileld, fieldValue);
+            // 使用静态解析好的typeAdapter读取值.
+            Object fieldValue = typeAdapter.fromJsonTree(jsonElemet);
+            if (fieldValue != null || !isPrimitive) {
+                accessor.set(holder, fieldValue);
+            }
         }
 
-        protected void read(JsonElement jsonElemet, Object instanceToSetFileld) throws IllegalAccessException {
-
-            //            步步推进,初始化每层的object.
-            for (Field field : fieldPath.subList(0, fieldPath.size() - 1)) {
-                Object child = field.get(instanceToSetFileld);
-                if (child == null) {
-                    child = constructorConstructor.get(TypeToken.get(field.getType())).construct();
-                    field.set(instanceToSetFileld, child);
-                }
-                instanceToSetFileld = child;
+        protected void read(JsonReader reader, Object instanceToSetFileld) throws IOException, IllegalAccessException {
+            if (leafKind != null) {
+                Object holder = accessor.getOrCreateHolder(instanceToSetFileld);
+                leafAccessor.read(reader, holder);
+                return;
             }
 
-
             // 使用静态解析好的typeAdapter读取值.
-            Object fieldValue = typeAdapter.fromJsonTree(jsonElemet);
+            Object fieldValue = typeAdapter.read(FlatUtf8JsonReader.valueReader(reader));
+            Object holder = accessor.getOrCreateHolder(instanceToSetFileld);
             if (fieldValue != null || !isPrimitive) {
-                fieldPath.get(fieldPath.size() - 1).set(instanceToSetFileld, fieldValue);
+                accessor.set(holder, fieldValue);
             }
         }
 
@@ -0,0 +1,89 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.internal.bind.ReflectiveTypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 通过 {@link GsonBuilder#registerTypeAdapterFactory} 注册平铺支持, 不反射修改 Gson 的内部字段.
+ * <p>
+ * Usage:
+ * <pre>
+ *     FlatRegistration&lt;FlatReflectionTypeAdapterFactory&gt; flat = FlatReflectionTypeAdapterFactory.registration(parsers, true);
+ *     Gson gson = new GsonBuilder().registerTypeAdapterFactory(flat).create();
+ *     flat.factory(gson).prepare(House.class);   // 可选, 启动时预热
+ * </pre>
+ * 注册的factory排在gson内置的factory之前, 所以先按类结构过滤掉不可能平铺的类型(基本类型, 数组, 枚举, 集合,
+ * jdk的类, 带 {@link JsonAdapter} 的类), 交回给gson处理. 其余的类型只有在gson原本会使用
+ * {@link ReflectiveTypeAdapterFactory} 时才按平铺处理: GsonBuilder 中先注册的 TypeAdapter 排在平铺之后,
+ * registerTypeHierarchyAdapter 注册的总是排在平铺之后, 这些类型仍然使用注册的 {@link TypeAdapter},
+ * 与 injectInto 的优先级一致. 代价是每个类型绑定时多一次gson的反射遍历.
+ * <p>
+ * 第一次使用时绑定到创建它的 {@link Gson}, 同一个实例不能注册到多个 {@link Gson}.
+ */
+public final class FlatRegistration<F extends TypeAdapterFactory> implements TypeAdapterFactory {
+    private final Function<Gson, F> binder;
+    private volatile Gson boundGson;
+    private volatile F factory;
+
+    FlatRegistration(Function<Gson, F> binder) {
+        this.binder = binder;
+    }
+
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (!mayFlatten(type.getRawType())) {
+            return null;
+        }
+        if (!(gson.getDelegateAdapter(this, type) instanceof ReflectiveTypeAdapterFactory.Adapter)) {
+            // 排在后面的用户注册的adapter
+            return null;
+        }
+        return factory(gson).create(gson, type);
+    }
+
+    /**
+     * 获取绑定到 gson 的平铺factory, 尚未绑定时立即绑定.
+     */
+    public F factory(Gson gson) {
+        F factory = this.factory;
+        if (factory == null) {
+            synchronized (this) {
+                factory = this.factory;
+                if (factory == null) {
+                    factory = binder.apply(gson);
+                    this.boundGson = gson;
+                    this.factory = factory;
+                }
+            }
+        }
+        if (boundGson != gson) {
+            throw new IllegalStateException("flat registration is already bound to another Gson instance");
+        }
+        return factory;
+    }
+
+    /**
+     * 结构上可能使用 ReflectiveTypeAdapterFactory 的类型, 其他类型由gson内置的factory处理.
+     */
+    static boolean mayFlatten(Class<?> raw) {
+        if (raw.isPrimitive() || raw.isArray() || Enum.class.isAssignableFrom(raw)
+                || Collection.class.isAssignableFrom(raw) || Map.class.isAssignableFrom(raw)) {
+            return false;
+        }
+        String name = raw.getName();
+        if (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.") || name.startsWith("sun.")
+                || name.startsWith("com.google.gson.")) {
+            return false;
+        }
+        return !raw.isAnnotationPresent(JsonAdapter.class);
+    }
+}
@@ -0,0 +1,146 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+/**
+ * 一个类型的指标快照, 由 {@link DefaultFlatMetrics#getTypeStats()} 生成. 耗时的分位数按2的幂分桶, 取桶的上界.
+ */
+public final class FlatTypeStats {
+    private final String type;
+    private final long readCount;
+    private final long readNanos;
+    private final long readMaxNanos;
+    private final long readP50Nanos;
+    private final long readP99Nanos;
+    private final long readFields;
+    private final long skippedKeys;
+    private final long readDynamicResolutions;
+    private final long writeCount;
+    private final long writeNanos;
+    private final long writeMaxNanos;
+    private final long writeP50Nanos;
+    private final long writeP99Nanos;
+    private final long writeFields;
+    private final long writeDynamicResolutions;
+    private final long planBuildCount;
+    private final long planBuildNanos;
+
+    FlatTypeStats(String type, long readCount, long readNanos, long readMaxNanos, long readP50Nanos, long readP99Nanos,
+                  long readFields, long skippedKeys, long readDynamicResolutions,
+                  long writeCount, long writeNanos, long writeMaxNanos, long writeP50Nanos, long writeP99Nanos,
+                  long writeFields, long writeDynamicResolutions, long planBuildCount, long planBuildNanos) {
+        this.type = type;
+        this.readCount = readCount;
+        this.readNanos = readNanos;
+        this.readMaxNanos = readMaxNanos;
+        this.readP50Nanos = readP50Nanos;
+        this.readP99Nanos = readP99Nanos;
+        this.readFields = readFields;
+        this.skippedKeys = skippedKeys;
+        this.readDynamicResolutions = readDynamicResolutions;
+        this.writeCount = writeCount;
+        this.writeNanos = writeNanos;
+        this.writeMaxNanos = writeMaxNanos;
+        this.writeP50Nanos = writeP50Nanos;
+        this.writeP99Nanos = writeP99Nanos;
+        this.writeFields = writeFields;
+        this.writeDynamicResolutions = writeDynamicResolutions;
+        this.planBuildCount = planBuildCount;
+        this.planBuildNanos = planBuildNanos;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getReadCount() {
+        return readCount;
+    }
+
+    /**
+     * 全部读的总耗时
+     */
+    public long getReadNanos() {
+        return readNanos;
+    }
+
+    public long getReadMaxNanos() {
+        return readMaxNanos;
+    }
+
+    public long getReadP50Nanos() {
+        return readP50Nanos;
+    }
+
+    public long getReadP99Nanos() {
+        return readP99Nanos;
+    }
+
+    public long getReadFields() {
+        return readFields;
+    }
+
+    public long getSkippedKeys() {
+        return skippedKeys;
+    }
+
+    public long getReadDynamicResolutions() {
+        return readDynamicResolutions;
+    }
+
+    public long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * 全部写的总耗时
+     */
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    public long getWriteMaxNanos() {
+        return writeMaxNanos;
+    }
+
+    public long getWriteP50Nanos() {
+        return writeP50Nanos;
+    }
+
+    public long getWriteP99Nanos() {
+        return writeP99Nanos;
+    }
+
+    public long getWriteFields() {
+        return writeFields;
+    }
+
+    public long getWriteDynamicResolutions() {
+        return writeDynamicResolutions;
+    }
+
+    public long getPlanBuildCount() {
+        return planBuildCount;
+    }
+
+    public long getPlanBuildNanos() {
+        return planBuildNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "FlatTypeStats{" +
+                "type='" + type + '\'' +
+                ", readCount=" + readCount +
+                ", readP50Nanos=" + readP50Nanos +
+                ", readP99Nanos=" + readP99Nanos +
+                ", readFields=" + readFields +
+                ", skippedKeys=" + skippedKeys +
+                ", readDynamicResolutions=" + readDynamicResolutions +
+                ", writeCount=" + writeCount +
+                ", writeP50Nanos=" + writeP50Nanos +
+                ", writeP99Nanos=" + writeP99Nanos +
+                ", writeFields=" + writeFields +
+                ", writeDynamicResolutions=" + writeDynamicResolutions +
+                ", planBuildNanos=" + planBuildNanos +
+                '}';
+    }
+}
@@ -0,0 +1,107 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 直接从UTF-8字节反序列化平铺json, 代替 {@code gson.fromJson(new String(bytes, UTF_8), type)}.
+ * <p>
+ * 跳过 byte -> char 的解码: key与plan中预先编码的UTF-8字节比较, 直接得到plan中的key, 不为每个key分配String;
+ * 只有String类型的值才构建String. 对象/数组类型的叶子字段仍由gson的 JsonReader 解析.
+ * <p>
+ * 只有平铺的 adapter ({@link FlatReflectionTypeAdapterFactory}, {@link SimpleGsonFlatSupport}, 字节码adapter) 走字节解析,
+ * 此时只接受标准json. 其他类型(如 Map, 没有平铺的类)的 adapter 可能依赖 {@link com.google.gson.stream.JsonReader} 的内部状态,
+ * 回退到 {@link Gson#fromJson(java.io.Reader, Class)}, 按UTF-8解码后读取.
+ * <p>
+ * Usage:
+ * <pre>
+ *     ClassRoom classRoom = FlatUtf8.fromJson(gson, body, ClassRoom.class);
+ * </pre>
+ */
+public final class FlatUtf8 {
+
+    private FlatUtf8() {
+    }
+
+    public static <T> T fromJson(Gson gson, byte[] json, Class<T> type) {
+        return fromJson(gson, json, 0, json.length, type);
+    }
+
+    public static <T> T fromJson(Gson gson, byte[] json, int offset, int length, Class<T> type) {
+        if (offset < 0 || length < 0 || offset + length > json.length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ",length=" + length + ",size=" + json.length);
+        }
+        TypeAdapter<T> adapter = gson.getAdapter(type);
+        if (!(adapter instanceof FlatKeyDictionary.Owner)) {
+            return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(json, offset, length), StandardCharsets.UTF_8), type);
+        }
+        FlatKeyDictionary keys = ((FlatKeyDictionary.Owner) adapter).utf8Keys();
+        FlatUtf8JsonReader reader = new FlatUtf8JsonReader(json, offset, offset + length, keys);
+        // 与 Gson.fromJson 一样, 读取时 lenient, 允许 NaN/Infinity
+        reader.setLenient(true);
+        T value;
+        try {
+            reader.peek();
+            value = adapter.read(reader);
+        } catch (EOFException e) {
+            if (isBlank(json, offset, offset + length)) {
+                // 与gson一致, 空文档返回null
+                return null;
+            }
+            throw new JsonSyntaxException(e);
+        } catch (IllegalStateException | IOException e) {
+            throw new JsonSyntaxException(e);
+        }
+        try {
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonIOException("JSON document was not fully consumed.");
+            }
+        } catch (MalformedJsonException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        return value;
+    }
+
+    /**
+     * 读取 json 中剩余的字节, 读完后 position 移到 limit.
+     * <p>
+     * 只有带数组的 heap buffer 直接在数组上解析. direct buffer (包括 {@link java.nio.MappedByteBuffer}) 没有数组,
+     * 每次调用都先把剩余字节复制到一个新的 byte[], 不是零拷贝; 省掉的只是 byte -> char 的解码.
+     */
+    public static <T> T fromJson(Gson gson, ByteBuffer json, Class<T> type) {
+        T value;
+        if (json.hasArray()) {
+            value = fromJson(gson, json.array(), json.arrayOffset() + json.position(), json.remaining(), type);
+        } else {
+            // 复制一次, 分配 remaining 大小的数组
+            byte[] bytes = new byte[json.remaining()];
+            json.duplicate().get(bytes);
+            value = fromJson(gson, bytes, type);
+        }
+        json.position(json.limit());
+        return value;
+    }
+
+    private static boolean isBlank(byte[] json, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte c = json[i];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
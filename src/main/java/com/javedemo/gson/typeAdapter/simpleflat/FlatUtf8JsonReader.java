@@ -0,0 +1,681 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 直接解析UTF-8字节的 {@link JsonReader}, 不经过 {@link Reader} 和 char[] 解码. 由 {@link FlatUtf8} 创建.
+ * <p>
+ * key通过 {@link FlatKeyDictionary} 与plan中预先编码的key字节比较, 命中时返回plan中的String, 不分配对象.
+ * 整数直接从字节解析; 只有String值, 未知的key和带小数/指数的数字才构建String.
+ * <p>
+ * 只支持标准json: 不支持注释, 单引号, 不带引号的值, 也不跳过 {@code )]}'} 前缀. lenient 只影响是否允许多个顶层值和 NaN/Infinity.
+ * <p>
+ * gson 的 MapTypeAdapterFactory 等通过 JsonReaderInternalAccess 访问 {@link JsonReader} 的内部状态, 子类无法支持,
+ * 所以对象/数组类型的叶子值通过 {@link #valueReader(JsonReader)} 交给普通的 {@link JsonReader} 解析.
+ */
+final class FlatUtf8JsonReader extends JsonReader {
+    private static final Reader UNUSED = new Reader() {
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            return -1;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+    private static final int CLOSED = 8;
+
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+    private final byte[] buffer;
+    private final int limit;
+    /**
+     * 为null时key直接解码
+     */
+    private final FlatKeyDictionary keys;
+    private int pos;
+    /**
+     * peek 的结果, 为null时尚未peek. peek之后 pos 指向该token的第一个字节
+     */
+    private JsonToken peeked;
+
+    private int[] stack = new int[32];
+    private int stackSize;
+    private String[] pathNames = new String[32];
+    private int[] pathIndices = new int[32];
+
+    FlatUtf8JsonReader(byte[] buffer, int from, int to, FlatKeyDictionary keys) {
+        super(UNUSED);
+        this.buffer = buffer;
+        this.pos = from;
+        this.limit = to;
+        this.keys = keys;
+        stack[stackSize++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * 对象/数组类型的值交给普通的 {@link JsonReader}, 其他值直接使用 in.
+     */
+    static JsonReader valueReader(JsonReader in) throws IOException {
+        return in instanceof FlatUtf8JsonReader ? ((FlatUtf8JsonReader) in).complexValueReader() : in;
+    }
+
+    private JsonReader complexValueReader() throws IOException {
+        JsonToken token = peek();
+        if (token != JsonToken.BEGIN_OBJECT && token != JsonToken.BEGIN_ARRAY) {
+            return this;
+        }
+        int start = pos;
+        skipValue();
+        JsonReader reader = new JsonReader(new Utf8ByteBufferReader(ByteBuffer.wrap(buffer, start, pos - start)));
+        reader.setLenient(isLenient());
+        return reader;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        expect(JsonToken.BEGIN_ARRAY);
+        pos++;
+        push(EMPTY_ARRAY);
+        pathIndices[stackSize - 1] = 0;
+        peeked = null;
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        expect(JsonToken.END_ARRAY);
+        pos++;
+        stackSize--;
+        pathIndices[stackSize - 1]++;
+        peeked = null;
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        expect(JsonToken.BEGIN_OBJECT);
+        pos++;
+        push(EMPTY_OBJECT);
+        peeked = null;
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        expect(JsonToken.END_OBJECT);
+        pos++;
+        stackSize--;
+        pathNames[stackSize] = null;
+        pathIndices[stackSize - 1]++;
+        peeked = null;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        JsonToken token = peek();
+        return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+    }
+
+    @Override
+    public JsonToken peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int scope = stack[stackSize - 1];
+        int c;
+        switch (scope) {
+            case EMPTY_ARRAY:
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                if (skipWhitespace() == ']') {
+                    return peeked = JsonToken.END_ARRAY;
+                }
+                break;
+            case NONEMPTY_ARRAY:
+                c = skipWhitespace();
+                if (c == ']') {
+                    return peeked = JsonToken.END_ARRAY;
+                }
+                if (c != ',') {
+                    throw syntaxError("Unterminated array");
+                }
+                pos++;
+                break;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = skipWhitespace();
+                if (c == '}') {
+                    return peeked = JsonToken.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("Unterminated object");
+                    }
+                    pos++;
+                    c = skipWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected name");
+                }
+                stack[stackSize - 1] = DANGLING_NAME;
+                return peeked = JsonToken.NAME;
+            case DANGLING_NAME:
+                if (skipWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                pos++;
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                break;
+            case EMPTY_DOCUMENT:
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                break;
+            case NONEMPTY_DOCUMENT:
+                if (skipWhitespace() == -1) {
+                    return peeked = JsonToken.END_DOCUMENT;
+                }
+                if (!isLenient()) {
+                    throw syntaxError("Use JsonReader.setLenient(true) to accept malformed JSON");
+                }
+                break;
+            default:
+                throw new IllegalStateException("JsonReader is closed");
+        }
+        return peeked = peekValue();
+    }
+
+    private JsonToken peekValue() throws IOException {
+        int c = skipWhitespace();
+        switch (c) {
+            case -1:
+                throw new EOFException("End of input" + locationString());
+            case '{':
+                return JsonToken.BEGIN_OBJECT;
+            case '[':
+                return JsonToken.BEGIN_ARRAY;
+            case '"':
+                return JsonToken.STRING;
+            case 't':
+                checkLiteral(TRUE);
+                return JsonToken.BOOLEAN;
+            case 'f':
+                checkLiteral(FALSE);
+                return JsonToken.BOOLEAN;
+            case 'n':
+                checkLiteral(NULL);
+                return JsonToken.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return JsonToken.NUMBER;
+                }
+                throw syntaxError("Expected value");
+        }
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        expect(JsonToken.NAME);
+        int start = pos + 1;
+        int end = scanString(start);
+        String name;
+        if (buffer[end] == '"') {
+            name = keys != null ? keys.lookup(buffer, start, end) : decode(start, end);
+            pos = end + 1;
+        } else {
+            name = readEscaped(start, end);
+        }
+        pathNames[stackSize - 1] = name;
+        peeked = null;
+        return name;
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        JsonToken token = peek();
+        String result;
+        if (token == JsonToken.STRING) {
+            result = readString();
+        } else if (token == JsonToken.NUMBER) {
+            int end = numberEnd();
+            result = latin1(pos, end);
+            pos = end;
+        } else {
+            throw unexpected("a string", token);
+        }
+        afterValue();
+        return result;
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        JsonToken token = peek();
+        if (token != JsonToken.BOOLEAN) {
+            throw unexpected("a boolean", token);
+        }
+        boolean result = buffer[pos] == 't';
+        pos += result ? TRUE.length : FALSE.length;
+        afterValue();
+        return result;
+    }
+
+    @Override
+    public void nextNull() throws IOException {
+        JsonToken token = peek();
+        if (token != JsonToken.NULL) {
+            throw unexpected("null", token);
+        }
+        pos += NULL.length;
+        afterValue();
+    }
+
+    @Override
+    public double nextDouble() throws IOException {
+        JsonToken token = peek();
+        double result;
+        if (token == JsonToken.NUMBER) {
+            int end = numberEnd();
+            // 15位以内的整数可以精确转换, 不构建String
+            long integer = end - pos <= 15 ? parseInteger(pos, end) : Long.MIN_VALUE;
+            result = integer != Long.MIN_VALUE ? integer : Double.parseDouble(latin1(pos, end));
+            pos = end;
+        } else if (token == JsonToken.STRING) {
+            result = Double.parseDouble(readString());
+        } else {
+            throw unexpected("a double", token);
+        }
+        if (!isLenient() && (Double.isNaN(result) || Double.isInfinite(result))) {
+            throw new MalformedJsonException("JSON forbids NaN and infinities: " + result + locationString());
+        }
+        afterValue();
+        return result;
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        long result = nextIntegral("a long");
+        afterValue();
+        return result;
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        int start = pos;
+        long result = nextIntegral("an int");
+        if ((int) result != result) {
+            throw new NumberFormatException("Expected an int but was " + latin1(start, pos) + locationString());
+        }
+        afterValue();
+        return (int) result;
+    }
+
+    /**
+     * 与 {@link JsonReader#nextLong()} 语义一致: 接受字符串形式的数字, 以及值为整数的小数(如 {@code 1.0}).
+     */
+    private long nextIntegral(String expected) throws IOException {
+        JsonToken token = peek();
+        String text;
+        if (token == JsonToken.NUMBER) {
+            int end = numberEnd();
+            long result = parseInteger(pos, end);
+            if (result != Long.MIN_VALUE) {
+                pos = end;
+                return result;
+            }
+            text = latin1(pos, end);
+            pos = end;
+        } else if (token == JsonToken.STRING) {
+            text = readString();
+        } else {
+            throw unexpected(expected, token);
+        }
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException ignored) {
+            // 按double解析
+        }
+        double value = Double.parseDouble(text);
+        long result = (long) value;
+        if (result != value) {
+            throw new NumberFormatException("Expected " + expected + " but was " + text + locationString());
+        }
+        return result;
+    }
+
+    /**
+     * 解析不超过18位的整数, 带小数点/指数或者更长时返回 {@link Long#MIN_VALUE}, 由调用方按文本解析.
+     */
+    private long parseInteger(int from, int to) {
+        int i = from;
+        boolean negative = buffer[i] == '-';
+        if (negative) {
+            i++;
+        }
+        if (to - i > 18 || i == to) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        int count = 0;
+        do {
+            JsonToken token = peek();
+            switch (token) {
+                case BEGIN_ARRAY:
+                    beginArray();
+                    count++;
+                    break;
+                case BEGIN_OBJECT:
+                    beginObject();
+                    count++;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    count--;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    count--;
+                    break;
+                case NAME:
+                    pos = skipString(pos + 1);
+                    pathNames[stackSize - 1] = "null";
+                    peeked = null;
+                    break;
+                case STRING:
+                    pos = skipString(pos + 1);
+                    afterValue();
+                    break;
+                case NUMBER:
+                    pos = numberEnd();
+                    afterValue();
+                    break;
+                case BOOLEAN:
+                    pos += buffer[pos] == 't' ? TRUE.length : FALSE.length;
+                    afterValue();
+                    break;
+                case NULL:
+                    pos += NULL.length;
+                    afterValue();
+                    break;
+                default:
+                    return;
+            }
+        } while (count != 0);
+    }
+
+    @Override
+    public void close() {
+        peeked = null;
+        stack[0] = CLOSED;
+        stackSize = 1;
+    }
+
+    @Override
+    public String getPath() {
+        StringBuilder result = new StringBuilder().append('$');
+        for (int i = 0; i < stackSize; i++) {
+            switch (stack[i]) {
+                case EMPTY_ARRAY:
+                case NONEMPTY_ARRAY:
+                    result.append('[').append(pathIndices[i]).append(']');
+                    break;
+                case EMPTY_OBJECT:
+                case DANGLING_NAME:
+                case NONEMPTY_OBJECT:
+                    result.append('.');
+                    if (pathNames[i] != null) {
+                        result.append(pathNames[i]);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return result.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + locationString();
+    }
+
+    private void afterValue() {
+        pathIndices[stackSize - 1]++;
+        peeked = null;
+    }
+
+    private void expect(JsonToken expected) throws IOException {
+        JsonToken token = peek();
+        if (token != expected) {
+            throw new IllegalStateException("Expected " + expected + " but was " + token + locationString());
+        }
+    }
+
+    private IllegalStateException unexpected(String expected, JsonToken token) {
+        return new IllegalStateException("Expected " + expected + " but was " + token + locationString());
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+            pathIndices = Arrays.copyOf(pathIndices, stackSize * 2);
+            pathNames = Arrays.copyOf(pathNames, stackSize * 2);
+        }
+        stack[stackSize++] = scope;
+    }
+
+    /**
+     * 跳过空白, 返回 pos 处的字节, 输入结束时返回-1.
+     */
+    private int skipWhitespace() {
+        while (pos < limit) {
+            byte c = buffer[pos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+            pos++;
+        }
+        return -1;
+    }
+
+    private void checkLiteral(byte[] literal) throws IOException {
+        int end = pos + literal.length;
+        if (end > limit || !Arrays.equals(literal, 0, literal.length, buffer, pos, end) || (end < limit && !isDelimiter(buffer[end]))) {
+            throw syntaxError("Expected value");
+        }
+    }
+
+    private static boolean isDelimiter(byte c) {
+        return c == ',' || c == '}' || c == ']' || c == ':' || c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    /**
+     * pos 处数字的结束位置, 校验数字的格式.
+     */
+    private int numberEnd() throws IOException {
+        int i = pos;
+        if (buffer[i] == '-') {
+            i++;
+        }
+        int digits = i;
+        while (i < limit && buffer[i] >= '0' && buffer[i] <= '9') {
+            i++;
+        }
+        boolean valid = i > digits && (buffer[digits] != '0' || i - digits == 1);
+        if (valid && i < limit && buffer[i] == '.') {
+            int fraction = ++i;
+            while (i < limit && buffer[i] >= '0' && buffer[i] <= '9') {
+                i++;
+            }
+            valid = i > fraction;
+        }
+        if (valid && i < limit && (buffer[i] == 'e' || buffer[i] == 'E')) {
+            i++;
+            if (i < limit && (buffer[i] == '+' || buffer[i] == '-')) {
+                i++;
+            }
+            int exponent = i;
+            while (i < limit && buffer[i] >= '0' && buffer[i] <= '9') {
+                i++;
+            }
+            valid = i > exponent;
+        }
+        if (!valid || (i < limit && !isDelimiter(buffer[i]))) {
+            throw syntaxError("Malformed number");
+        }
+        return i;
+    }
+
+    /**
+     * 从 from 开始找到第一个 {@code "} 或 {@code \}, 返回其位置.
+     */
+    private int scanString(int from) throws IOException {
+        for (int i = from; i < limit; i++) {
+            byte c = buffer[i];
+            if (c == '"' || c == '\\') {
+                return i;
+            }
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    /**
+     * 跳过字符串, from 为开始引号之后的位置, 返回结束引号之后的位置.
+     */
+    private int skipString(int from) throws IOException {
+        for (int i = from; i < limit; i++) {
+            byte c = buffer[i];
+            if (c == '"') {
+                return i + 1;
+            }
+            if (c == '\\') {
+                i++;
+            }
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    private String readString() throws IOException {
+        int start = pos + 1;
+        int end = scanString(start);
+        if (buffer[end] == '"') {
+            pos = end + 1;
+            return decode(start, end);
+        }
+        return readEscaped(start, end);
+    }
+
+    /**
+     * 带转义的字符串, start 为开始引号之后的位置, escape 为第一个 {@code \} 的位置.
+     */
+    private String readEscaped(int start, int escape) throws IOException {
+        StringBuilder builder = new StringBuilder(escape - start + 16);
+        int i = escape;
+        while (true) {
+            builder.append(decode(start, i));
+            if (buffer[i] == '"') {
+                pos = i + 1;
+                return builder.toString();
+            }
+            i = readEscapeCharacter(builder, i + 1);
+            start = i;
+            i = scanString(i);
+        }
+    }
+
+    private int readEscapeCharacter(StringBuilder builder, int i) throws IOException {
+        if (i >= limit) {
+            throw syntaxError("Unterminated escape sequence");
+        }
+        byte c = buffer[i];
+        switch (c) {
+            case 'u':
+                if (i + 4 >= limit) {
+                    throw syntaxError("Unterminated escape sequence");
+                }
+                char result = 0;
+                for (int j = i + 1; j <= i + 4; j++) {
+                    int digit = Character.digit(buffer[j], 16);
+                    if (digit < 0) {
+                        throw new NumberFormatException("\\u" + latin1(i + 1, i + 5));
+                    }
+                    result = (char) ((result << 4) + digit);
+                }
+                builder.append(result);
+                return i + 5;
+            case 't':
+                builder.append('\t');
+                break;
+            case 'b':
+                builder.append('\b');
+                break;
+            case 'n':
+                builder.append('\n');
+                break;
+            case 'r':
+                builder.append('\r');
+                break;
+            case 'f':
+                builder.append('\f');
+                break;
+            case '"':
+            case '\\':
+            case '/':
+            case '\'':
+            case '\n':
+                builder.append((char) c);
+                break;
+            default:
+                throw syntaxError("Invalid escape sequence");
+        }
+        return i + 1;
+    }
+
+    private String decode(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] < 0) {
+                return new String(buffer, from, to - from, StandardCharsets.UTF_8);
+            }
+        }
+        // 纯ASCII, 直接作为latin1的紧凑字符串
+        return latin1(from, to);
+    }
+
+    private String latin1(int from, int to) {
+        return new String(buffer, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    private IOException syntaxError(String message) {
+        return new MalformedJsonException(message + locationString());
+    }
+
+    private String locationString() {
+        return " at byte " + pos + " path " + getPath();
+    }
+}
@@ -0,0 +1,25 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * {@link FlatReflectionTypeAdapterFactory} 中一次顶层对象的序列化.
+ */
+@Name("com.javedemo.gson.FlatWrite")
+@Label("Flat Write")
+@Category({"Gson", "Flat"})
+@Description("Serialization of one object to flat json")
+final class FlatWriteEvent extends Event {
+    @Label("Type")
+    Class<?> type;
+
+    @Label("Fields")
+    int fields;
+
+    @Label("Dynamic Resolutions")
+    int dynamicResolutions;
+}
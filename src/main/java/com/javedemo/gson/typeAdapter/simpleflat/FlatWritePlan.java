@@ -0,0 +1,285 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.internal.bind.TypeAdapters;
+import com.google.gson.stream.JsonWriter;
+import com.javedemo.gson.typeAdapter.simpleflat.FlatReflectionTypeAdapterFactory.InterfaceBoundedField;
+import com.javedemo.gson.typeAdapter.simpleflat.FlatReflectionTypeAdapterFactory.ObjectPathBoundedField;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 平铺序列化的写计划: 某个前缀下每个字段完整的平铺key预先拼好, 写的时候不再做字符串拼接.
+ * <p>
+ * 例如前缀 {@code backDoorPrefix} 下, 叶子字段直接写 {@code backDoorPrefix.doorName},
+ * 接口字段直接写 {@code backDoorPrefix.lowerWindowPrefix.IWindowType}, 接口实现类的字段由子计划负责.
+ * <p>
+ * 字段按 fieldPath 的公共前缀组织成一棵树, 每个中间层对象每次写只取一次, 例如 {@code backDoor.upperWindow}
+ * 下的全部叶子共用一次 {@code backDoor}/{@code upperWindow} 的读取. 中间层为null时整棵子树一起处理:
+ * 逐个交给字段的 TypeAdapter 写null, 默认的 TypeAdapter 写 {@code key:null}, 没有 serializeNulls 时由 JsonWriter 丢弃.
+ * <p>
+ * JsonWriter 没有写入原始name的api, 所以这里缓存的是完整key的String, 转义仍由 JsonWriter 完成.
+ */
+final class FlatWritePlan {
+
+    private final FlatReflectionTypeAdapterFactory factory;
+    private final Node[] nodes;
+
+    /**
+     * @param boundFields 当前对象的平铺字段
+     * @param prefix      当前对象在整个平铺json中的前缀, 顶层为空串
+     */
+    FlatWritePlan(FlatReflectionTypeAdapterFactory factory, Map<String, ObjectPathBoundedField> boundFields, String prefix) {
+        this.factory = factory;
+        List<ObjectPathBoundedField> serialized = new ArrayList<>();
+        for (ObjectPathBoundedField boundField : boundFields.values()) {
+            if (boundField.isSerialized()) {
+                serialized.add(boundField);
+            }
+        }
+        this.nodes = build(serialized, 0, prefix);
+    }
+
+    /**
+     * @param stats 本次写的计数, 没有设置 {@link FlatMetrics} 并且没有录制JFR写事件时为null
+     */
+    void write(JsonWriter writer, Object value, FlatCallStats stats) throws IOException {
+        writeNodes(nodes, writer, value, stats);
+    }
+
+    /**
+     * 预先为接口字段的每个注册实现类构建子计划, 递归处理子计划中的接口字段.
+     *
+     * @param visiting 当前递归路径上的实现类, 实现类中再次出现同一个接口时不再展开
+     */
+    void prepare(Set<Class<?>> visiting) {
+        prepareNodes(nodes, visiting);
+    }
+
+    private void prepareNodes(Node[] nodes, Set<Class<?>> visiting) {
+        for (Node node : nodes) {
+            if (node instanceof PathNode) {
+                prepareNodes(((PathNode) node).children, visiting);
+            } else if (node instanceof DynamicNode) {
+                ((DynamicNode) node).prepare(factory, visiting);
+            }
+        }
+    }
+
+    private void writeNodes(Node[] nodes, JsonWriter writer, Object holder, FlatCallStats stats) throws IOException {
+        for (Node node : nodes) {
+            node.write(this, writer, holder, stats);
+        }
+    }
+
+    /**
+     * 按 fieldPath 第 depth 层分组, 只合并相邻的同一路径, 保持 boundFields 原有的顺序.
+     */
+    private static Node[] build(List<ObjectPathBoundedField> boundFields, int depth, String prefix) {
+        List<Node> nodes = new ArrayList<>();
+        int i = 0;
+        while (i < boundFields.size()) {
+            ObjectPathBoundedField boundField = boundFields.get(i);
+            if (boundField.fieldPath.size() == depth + 1) {
+                String name = prefix.isEmpty() ? boundField.getName() : prefix + "." + boundField.getName();
+                nodes.add(boundField.isDynamic() ? new DynamicNode(boundField, name) : new LeafNode(boundField, name));
+                i++;
+                continue;
+            }
+
+            Field field = boundField.fieldPath.get(depth);
+            int end = i + 1;
+            while (end < boundFields.size() && boundFields.get(end).fieldPath.size() > depth + 1
+                    && boundFields.get(end).fieldPath.get(depth).equals(field)) {
+                end++;
+            }
+            nodes.add(new PathNode(field, build(boundFields.subList(i, end), depth + 1, prefix)));
+            i = end;
+        }
+        return nodes.toArray(new Node[0]);
+    }
+
+    private interface Node {
+        /**
+         * @param holder 当前层的对象, 不为null
+         * @param stats  可能为null
+         */
+        void write(FlatWritePlan plan, JsonWriter writer, Object holder, FlatCallStats stats) throws IOException;
+
+        /**
+         * 当前层的对象为null, 叶子交给字段的 TypeAdapter 写null. 没有 serializeNulls 时 JsonWriter 丢弃值为null的key.
+         */
+        void writeNull(JsonWriter writer) throws IOException;
+    }
+
+    /**
+     * 中间层对象, 例如 {@code backDoor}, 子节点共用一次读取.
+     */
+    private static final class PathNode implements Node {
+        final FieldAccessor field;
+        final Node[] children;
+
+        PathNode(Field field, Node[] children) {
+            this.field = FieldAccessorGenerator.generate(field);
+            this.children = children;
+        }
+
+        @Override
+        public void write(FlatWritePlan plan, JsonWriter writer, Object holder, FlatCallStats stats) throws IOException {
+            Object child = field.getObject(holder);
+            if (child != null) {
+                plan.writeNodes(children, writer, child, stats);
+            } else {
+                writeNull(writer);
+            }
+        }
+
+        @Override
+        public void writeNull(JsonWriter writer) throws IOException {
+            for (Node node : children) {
+                node.writeNull(writer);
+            }
+        }
+    }
+
+    private static final class LeafNode implements Node {
+        final ObjectPathBoundedField boundField;
+        /**
+         * 完整的平铺key
+         */
+        final String name;
+
+        LeafNode(ObjectPathBoundedField boundField, String name) {
+            this.boundField = boundField;
+            this.name = name;
+        }
+
+        @Override
+        public void write(FlatWritePlan plan, JsonWriter writer, Object holder, FlatCallStats stats) throws IOException {
+            writer.name(name);
+            boundField.writeFromHolder(writer, holder);
+            if (stats != null) {
+                stats.fields++;
+            }
+        }
+
+        @Override
+        public void writeNull(JsonWriter writer) throws IOException {
+            writer.name(name);
+            boundField.writeNull(writer);
+        }
+    }
+
+    /**
+     * 接口字段: 先写类型key, 再按实现类的子计划写字段. 实现类按字段值的实际类型选择.
+     */
+    private static final class DynamicNode implements Node {
+        final ObjectPathBoundedField boundField;
+        /**
+         * 实现类字段的前缀
+         */
+        final String name;
+
+        /**
+         * 按字段值的实际类型缓存, 首次写出时由 {@link #resolve} 构建.
+         */
+        private final ConcurrentMap<Class<?>, Resolved> resolvedByType = new ConcurrentHashMap<>();
+        /**
+         * 最近一次写出的实际类型, 只有一个实现类时不需要查map
+         */
+        private volatile Resolved last;
+
+        DynamicNode(ObjectPathBoundedField boundField, String name) {
+            this.boundField = boundField;
+            this.name = name;
+        }
+
+        @Override
+        public void write(FlatWritePlan plan, JsonWriter writer, Object holder, FlatCallStats stats) throws IOException {
+            Object interfaceObject = boundField.accessor.getLeaf(holder);
+            if (interfaceObject == null) {
+                return;
+            }
+
+            Class<?> runtimeType = interfaceObject.getClass();
+            Resolved resolved = last;
+            if (resolved == null || resolved.runtimeType != runtimeType) {
+                resolved = getResolved(plan.factory, runtimeType);
+                last = resolved;
+            }
+            writer.name(resolved.typeKey);
+            TypeAdapters.STRING.write(writer, resolved.typeValue);
+
+            if (stats != null) {
+                stats.dynamicResolutions++;
+            }
+
+            // 填充字段
+            resolved.plan.write(writer, interfaceObject, stats);
+        }
+
+        @Override
+        public void writeNull(JsonWriter writer) {
+            // 接口字段为null时什么都不写
+        }
+
+        void prepare(FlatReflectionTypeAdapterFactory factory, Set<Class<?>> visiting) {
+            for (InterfaceBoundedField interfaceBoundedField : factory.getReadBinding(boundField.getLastField().getType()).getMap().values()) {
+                Class<?> runtimeType = interfaceBoundedField.getClazz();
+                if (visiting.add(runtimeType)) {
+                    getResolved(factory, runtimeType).plan.prepare(visiting);
+                    visiting.remove(runtimeType);
+                }
+            }
+        }
+
+        private Resolved getResolved(FlatReflectionTypeAdapterFactory factory, Class<?> runtimeType) {
+            Resolved resolved = resolvedByType.get(runtimeType);
+            if (resolved == null) {
+                resolved = resolve(factory, runtimeType);
+                Resolved previous = resolvedByType.putIfAbsent(runtimeType, resolved);
+                if (previous != null) {
+                    resolved = previous;
+                }
+            }
+            return resolved;
+        }
+
+        /**
+         * 接口的实现类解析结果由factory缓存, 这里只需要拼一次key并构建子计划.
+         */
+        private Resolved resolve(FlatReflectionTypeAdapterFactory factory, Class<?> runtimeType) {
+            FlatPlanBuildEvent event = new FlatPlanBuildEvent();
+            event.begin();
+            InterfaceBoundedField interfaceBoundedField = factory.getWriteBinding(boundField.getLastField().getType(), runtimeType);
+            Resolved resolved = new Resolved(runtimeType, name + "." + interfaceBoundedField.getTypeName(), interfaceBoundedField.getTypeValue(),
+                    new FlatWritePlan(factory, interfaceBoundedField.getObjectPathBoundedFields(), name));
+            if (event.shouldCommit()) {
+                event.type = runtimeType;
+                event.keys = interfaceBoundedField.getObjectPathBoundedFields().size();
+                event.commit();
+            }
+            return resolved;
+        }
+    }
+
+    private static final class Resolved {
+        final Class<?> runtimeType;
+        final String typeKey;
+        final String typeValue;
+        final FlatWritePlan plan;
+
+        Resolved(Class<?> runtimeType, String typeKey, String typeValue, FlatWritePlan plan) {
+            this.runtimeType = runtimeType;
+            this.typeKey = typeKey;
+            this.typeValue = typeValue;
+            this.plan = plan;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.internal.ConstructorConstructor;
+import com.google.gson.internal.bind.ReflectiveTypeAdapterFactory;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * injectInto 用到的反射操作, 依赖 Gson 的内部字段, 只在 injectInto 时使用.
+ * 不依赖内部字段的注册方式见 {@link FlatRegistration}.
+ */
+final class GsonInjection {
+
+    private GsonInjection() {
+    }
+
+    /**
+     * gson 自己的 {@link ConstructorConstructor}, 包含 GsonBuilder 注册的 InstanceCreator.
+     */
+    static ConstructorConstructor constructorConstructor(Gson gson) {
+        try {
+            Field constructorConstructorField = Gson.class.getDeclaredField("constructorConstructor");
+            constructorConstructorField.setAccessible(true);
+            return (ConstructorConstructor) constructorConstructorField.get(gson);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new RuntimeException("reflective injection failed: no constructorConstructor found", e);
+        }
+    }
+
+    /**
+     * 用 replacement 替换 gson 中的 {@link ReflectiveTypeAdapterFactory}.
+     */
+    @SuppressWarnings("unchecked")
+    static void replaceReflectiveFactory(Gson gson, TypeAdapterFactory replacement) {
+        try {
+            Field factoriesField = Gson.class.getDeclaredField("factories");
+            factoriesField.setAccessible(true);
+
+            List<TypeAdapterFactory> factories = (List<TypeAdapterFactory>) factoriesField.get(gson);
+            List<TypeAdapterFactory> replacementFactories = new ArrayList<>();
+            boolean replaced = false;
+            for (TypeAdapterFactory factory : factories) {
+                if (factory instanceof ReflectiveTypeAdapterFactory) {
+                    // replace reflective type adapter by this one
+                    factory = replacement;
+                    replaced = true;
+                }
+                replacementFactories.add(factory);
+            }
+            if (!replaced) {
+                throw new RuntimeException("reflective injection failed: no ReflectiveTypeAdapterFactory found");
+            }
+            // replace whole Gson.factories list by ours, because its unmodifiable
+            factoriesField.set(gson, Collections.unmodifiableList(replacementFactories));
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * 一个基本类型/String叶子字段的特化读写, 直接 {@link JsonReader#nextInt()}/{@link JsonWriter#value(long)}, 不经过 {@link TypeAdapter} 装箱.
+ * <p>
+ * 每种 {@link LeafKind} 对应一个抽象子类(如 {@link OfInt}), 声明该类型的 get/set 并实现json的读写.
+ * {@link FieldAccessorGenerator} 为基本类型/String字段生成的类继承对应的子类, 只实现 get/set.
+ * <p>
+ * 读写的语义与gson内置的 TypeAdapter 保持一致, 例如 NaN/Infinity 仍交给 TypeAdapter 决定是否报错.
+ */
+abstract class LeafAccessor extends FieldAccessor {
+
+    /**
+     * 读取一个值并设置到 holder 上, json为null时跳过(保持基本类型的默认值).
+     */
+    void read(JsonReader in, Object holder) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return;
+        }
+        readValue(in, holder);
+    }
+
+    /**
+     * 写出 holder 上的值, holder 为null时(路径中间层为null)写null.
+     *
+     * @param typeAdapter 字段的 TypeAdapter, 只用于特殊值
+     */
+    final void write(JsonWriter out, Object holder, TypeAdapter<Object> typeAdapter) throws IOException {
+        if (holder == null) {
+            out.nullValue();
+            return;
+        }
+        writeValue(out, holder, typeAdapter);
+    }
+
+    abstract void readValue(JsonReader in, Object holder) throws IOException;
+
+    abstract void writeValue(JsonWriter out, Object holder, TypeAdapter<Object> typeAdapter) throws IOException;
+
+    abstract static class OfInt extends LeafAccessor {
+        abstract int get(Object holder);
+
+        abstract void set(Object holder, int value);
+
+        @Override
+        final Object getObject(Object holder) {
+            return get(holder);
+        }
+
+        @Override
+        final void setObject(Object holder, Object value) {
+            set(holder, (Integer) value);
+        }
+
+        @Override
+        final void readValue(JsonReader in, Object holder) throws IOException {
+            int value;
+            try {
+                value = in.nextInt();
+            } catch (NumberFormatException e) {
+                throw new JsonSyntaxException(e);
+            }
+            set(holder, value);
+        }
+
+        @Override
+        final void writeValue(JsonWriter out, Object holder, TypeAdapter<Object> typeAdapter) throws IOException {
+            out.value((long) get(holder));
+        }
+    }
+
+    abstract static class OfLong extends LeafAccessor {
+        abstract long get(Object holder);
+
+        abstract void set(Object holder, long value);
+
+        @Override
+        final Object getObject(Object holder) {
+            return get(holder);
+        }
+
+        @Override
+        final void setObject(Object holder, Object value) {
+            set(holder, (Long) value);
+        }
+
+        @Override
+        final void readValue(JsonReader in, Object holder) throws IOException {
+            long value;
+            try {
+                value = in.nextLong();
+            } catch (NumberFormatException e) {
+                throw new JsonSyntaxException(e);
+            }
+            set(holder, value);
+        }
+
+        @Override
+        final void writeValue(JsonWriter out, Object holder, TypeAdapter<Object> typeAdapter) throws IOException {
+            out.value(get(holder));
+        }
+    }
+
+    abstract static class OfShort extends LeafAccessor {
+        abstract short get(Object holder);
+
+        abstract void set(Object holder, short value);
+
+        @Override
+        final Object getObject(Object holder) {
+            return get(holder);
+        }
+
+        @Override
+        final void setObject(Object holder, Object value) {
+            set(holder, (Short) value);
+        }
+
+        @Override
+        final void readValue(JsonReader in, Object holder) throws IOException {
+            short value;
+            try {
+                value = (short) in.nextInt();
+            } catch (NumberFormatException e) {
+                throw new JsonSyntaxException(e);
+            }
+            set(holder, value);
+        }
+
+        @Override
+        final void writeValue(JsonWriter out, Object holder, TypeAdapter<Object> typeAdapter) throws IOException {
+            out.value((long) get(holder));
+        }
+    }
+
+    abstract static class OfByte extends LeafAccessor {
+        abstract byte get(Object holder);
+
+        abstract void set(Object holder, byte value);
+
+        @Override
+        final Object getObject(Object holder) {
+            return get(holder);
+        }
+
+        @Override
+        final void setObject(Object holder, Object value) {
+            set(holder, (Byte) value);
+        }
+
+        @Override
+        final void readValue(JsonReader in, Object holder) throws IOException {
+            byte value;
+            try {
+                value = (byte) in.nextInt();
+            } catch (NumberFormatException e) {
+                throw new JsonSyntaxException(e);
+            }
+            set(holder, value);
+        }
+
+        @Override
+        final void writeValue(JsonWriter out, Object holder, TypeAdapter<Object> typeAdapter) throws IOException {
+            out.value((long) get(holder));
+        }
+    }
+
+    abstract static class OfDouble extends LeafAccessor {
+        abstract double get(Object holder);
+
+        abstract void set(Object holder, double value);
+
+        @Override
+        final Object getObject(Object holder) {
+            return get(holder);
+        }
+
+        @Override
+        final void setObject(Object holder, Object value) {
+            set(holder, (Double) value);
+        }
+
+        @Override
+        final void readValue(JsonReader in, Object holder) throws IOException {
+            set(holder, in.nextDouble());
+        }
+
+        @Override
+        final void writeValue(JsonWriter out, Object holder, TypeAdapter<Object> typeAdapter) throws IOException {
+            double value = get(holder);
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                // serializeSpecialFloatingPointValues 由gson的TypeAdapter判断
+                typeAdapter.write(out, value);
+            } else {
+                out.value(value);
+            }
+        }
+    }
+
+    abstract static class OfFloat extends LeafAccessor {
+        abstract float get(Object holder);
+
+        abstract void set(Object holder, float value);
+
+        @Override
+        final Object getObject(Object holder) {
+            return get(holder);
+        }
+
+        @Override
+        final void setObject(Object holder, Object value) {
+            set(holder, (Float) value);
+        }
+
+        @Override
+        final void readValue(JsonReader in, Object holder) throws IOException {
+            set(holder, (float) in.nextDouble());
+        }
+
+        @Override
+        final void writeValue(JsonWriter out, Object holder, TypeAdapter<Object> typeAdapter) throws IOException {
+            float value = get(holder);
+            if (Float.isNaN(value) || Float.isInfinite(value)) {
+                typeAdapter.write(out, value);
+            } else {
+                // 与gson一致按float的精度输出, value(double)会输出 0.10000000149011612
+                out.jsonValue(Float.toString(value));
+            }
+        }
+    }
+
+    abstract static class OfBoolean extends LeafAccessor {
+        abstract boolean get(Object holder);
+
+        abstract void set(Object holder, boolean value);
+
+        @Override
+        final Object getObject(Object holder) {
+            return get(holder);
+        }
+
+        @Override
+        final void setObject(Object holder, Object value) {
+            set(holder, (Boolean) value);
+        }
+
+        @Override
+        final void readValue(JsonReader in, Object holder) throws IOException {
+            boolean value;
+            if (in.peek() == JsonToken.STRING) {
+                // support strings for compatibility with GSON 1.7
+                value = Boolean.parseBoolean(in.nextString());
+            } else {
+                value = in.nextBoolean();
+            }
+            set(holder, value);
+        }
+
+        @Override
+        final void writeValue(JsonWriter out, Object holder, TypeAdapter<Object> typeAdapter) throws IOException {
+            out.value(get(holder));
+        }
+    }
+
+    abstract static class OfChar extends LeafAccessor {
+        abstract char get(Object holder);
+
+        abstract void set(Object holder, char value);
+
+        @Override
+        final Object getObject(Object holder) {
+            return get(holder);
+        }
+
+        @Override
+        final void setObject(Object holder, Object value) {
+            set(holder, (Character) value);
+        }
+
+        @Override
+        final void readValue(JsonReader in, Object holder) throws IOException {
+            String str = in.nextString();
+            if (str.length() != 1) {
+                throw new JsonSyntaxException("Expecting character, got: " + str);
+            }
+            set(holder, str.charAt(0));
+        }
+
+        @Override
+        final void writeValue(JsonWriter out, Object holder, TypeAdapter<Object> typeAdapter) throws IOException {
+            out.value(String.valueOf(get(holder)));
+        }
+    }
+
+    abstract static class OfString extends LeafAccessor {
+        abstract String get(Object holder);
+
+        abstract void set(Object holder, String value);
+
+        @Override
+        final Object getObject(Object holder) {
+            return get(holder);
+        }
+
+        @Override
+        final void setObject(Object holder, Object value) {
+            set(holder, (String) value);
+        }
+
+        @Override
+        final void read(JsonReader in, Object holder) throws IOException {
+            // String 可以为null, 不像基本类型那样跳过
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                set(holder, null);
+                return;
+            }
+            readValue(in, holder);
+        }
+
+        @Override
+        final void readValue(JsonReader in, Object holder) throws IOException {
+            String value;
+            if (in.peek() == JsonToken.BOOLEAN) {
+                value = Boolean.toString(in.nextBoolean());
+            } else {
+                value = in.nextString();
+            }
+            set(holder, value);
+        }
+
+        @Override
+        final void writeValue(JsonWriter out, Object holder, TypeAdapter<Object> typeAdapter) throws IOException {
+            out.value(get(holder));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.internal.bind.TypeAdapters;
+
+/**
+ * 可以特化读写的叶子字段类型: 基本类型和String, 读写由对应的 {@link LeafAccessor} 子类实现, 不经过 {@link TypeAdapter} 装箱.
+ * <p>
+ * 只有字段的 TypeAdapter 是gson内置的才会特化, 用户注册了自己的 TypeAdapter 时仍然走 TypeAdapter.
+ */
+enum LeafKind {
+    INT(int.class, LeafAccessor.OfInt.class),
+    LONG(long.class, LeafAccessor.OfLong.class),
+    SHORT(short.class, LeafAccessor.OfShort.class),
+    BYTE(byte.class, LeafAccessor.OfByte.class),
+    DOUBLE(double.class, LeafAccessor.OfDouble.class),
+    FLOAT(float.class, LeafAccessor.OfFloat.class),
+    BOOLEAN(boolean.class, LeafAccessor.OfBoolean.class),
+    CHAR(char.class, LeafAccessor.OfChar.class),
+    STRING(String.class, LeafAccessor.OfString.class);
+
+    /**
+     * 字段的声明类型
+     */
+    final Class<?> type;
+    /**
+     * 生成的accessor继承的类
+     */
+    final Class<? extends LeafAccessor> accessorType;
+
+    LeafKind(Class<?> type, Class<? extends LeafAccessor> accessorType) {
+        this.type = type;
+        this.accessorType = accessorType;
+    }
+
+    /**
+     * 字段的类型和 TypeAdapter 都是gson内置的基本类型/String时返回对应的特化, 否则返回null.
+     *
+     * @param rawType     字段声明的类型
+     * @param typeAdapter gson为字段解析出的 TypeAdapter
+     */
+    static LeafKind of(Class<?> rawType, TypeAdapter<?> typeAdapter) {
+        if (rawType == int.class && typeAdapter == TypeAdapters.INTEGER) {
+            return INT;
+        }
+        if (rawType == long.class && typeAdapter == TypeAdapters.LONG) {
+            // LongSerializationPolicy.STRING 时是gson的另一个adapter, 不特化
+            return LONG;
+        }
+        if (rawType == short.class && typeAdapter == TypeAdapters.SHORT) {
+            return SHORT;
+        }
+        if (rawType == byte.class && typeAdapter == TypeAdapters.BYTE) {
+            return BYTE;
+        }
+        if (rawType == double.class && (typeAdapter == TypeAdapters.DOUBLE || isGsonFloatingAdapter(typeAdapter))) {
+            return DOUBLE;
+        }
+        if (rawType == float.class && (typeAdapter == TypeAdapters.FLOAT || isGsonFloatingAdapter(typeAdapter))) {
+            return FLOAT;
+        }
+        if (rawType == boolean.class && typeAdapter == TypeAdapters.BOOLEAN) {
+            return BOOLEAN;
+        }
+        if (rawType == char.class && typeAdapter == TypeAdapters.CHARACTER) {
+            return CHAR;
+        }
+        if (rawType == String.class && typeAdapter == TypeAdapters.STRING) {
+            return STRING;
+        }
+        return null;
+    }
+
+    /**
+     * 按字段的声明类型取特化, 不看 TypeAdapter, 用于决定生成的accessor继承哪个类.
+     *
+     * @return 不是基本类型/String时返回null
+     */
+    static LeafKind ofType(Class<?> type) {
+        for (LeafKind kind : values()) {
+            if (kind.type == type) {
+                return kind;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 未开启 serializeSpecialFloatingPointValues 时, double/float 使用的是 {@link Gson} 内部的匿名adapter.
+     */
+    private static boolean isGsonFloatingAdapter(TypeAdapter<?> typeAdapter) {
+        return typeAdapter.getClass().getEnclosingClass() == Gson.class;
+    }
+}
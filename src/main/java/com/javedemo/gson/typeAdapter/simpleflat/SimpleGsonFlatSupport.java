@@ -28,14 +28,21 @@ import java.util.stream.Collectors;
  *     Gson gson = new Gson();
  *     GsonFlatSupport.injectInto(gson);
  * </pre>
+ * 或者通过 GsonBuilder 注册, 见 {@link #registration()}.
  */
 @SuppressWarnings("WeakerAccess")
 public class SimpleGsonFlatSupport implements TypeAdapterFactory {
     protected final ConstructorConstructor constructorConstructor;
     protected final FieldNamingStrategy fieldNamingPolicy;
     protected final Excluder excluder;
-    List<TypeAdapterFactory> oldFactories;
-    Gson originalGson;
+    /**
+     * 当前线程正在构建的顶层类型, 用于在 {@link Gson#getAdapter} 之前发现循环依赖
+     */
+    private final ThreadLocal<Set<Class<?>>> building = ThreadLocal.withInitial(HashSet::new);
+    /**
+     * 读写指标, 为null时不记录
+     */
+    private volatile FlatMetrics metrics;
 
     /**
      * Injects a new instance of {@link SimpleGsonFlatSupport} into given {@link Gson} instance
@@ -47,54 +54,35 @@ public class SimpleGsonFlatSupport implements TypeAdapterFactory {
         new SimpleGsonFlatSupport(gson);
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * 通过 {@link GsonBuilder#registerTypeAdapterFactory} 注册, 不反射修改 Gson 的内部字段, 见 {@link FlatRegistration}.
+     * GsonBuilder 注册的 InstanceCreator 对平铺的类型不生效.
+     */
+    public static FlatRegistration<SimpleGsonFlatSupport> registration() {
+        return new FlatRegistration<>(gson -> new SimpleGsonFlatSupport(gson, new ConstructorConstructor(Collections.emptyMap())));
+    }
+
+    /**
+     * 反射替换 gson 中的 {@link ReflectiveTypeAdapterFactory}.
+     */
     protected SimpleGsonFlatSupport(Gson gson) {
-        /*
-         * Dirty work goes here.
-         */
-        try {
-            FieldNamingPolicy fieldNamingPolicy = null;
-            Excluder excluder = null;
-
-            Field factoriesField = Gson.class.getDeclaredField("factories");
-            factoriesField.setAccessible(true);
-
-
-            List<TypeAdapterFactory> factories = (List<TypeAdapterFactory>) factoriesField.get(gson);
-            List<TypeAdapterFactory> replacementFactories = new ArrayList<>();
-            oldFactories = factories;
-            originalGson = new Gson();
-            factoriesField.set(originalGson, factories);
-            ;
-            for (TypeAdapterFactory factory : factories) {
-                if (factory instanceof ReflectiveTypeAdapterFactory) {
-                    ReflectiveTypeAdapterFactory reflectiveFactory = (ReflectiveTypeAdapterFactory) factory;
-                    Field fieldNamingPolicyField = reflectiveFactory.getClass().getDeclaredField("fieldNamingPolicy");
-                    fieldNamingPolicyField.setAccessible(true);
-                    fieldNamingPolicy = (FieldNamingPolicy) fieldNamingPolicyField.get(reflectiveFactory);
-                    // replace reflective type adapter by this one
-                    factory = this;
-                }
-                if (factory instanceof Excluder) {
-                    excluder = (Excluder) factory;
-                }
-                replacementFactories.add(factory);
-            }
-            // replace whole Gson.factories list by ours, because its unmodifiable
-            factoriesField.set(gson, Collections.unmodifiableList(replacementFactories));
-
-            Field constructorConstructorField = gson.getClass().getDeclaredField("constructorConstructor");
-            constructorConstructorField.setAccessible(true);
-            this.constructorConstructor = (ConstructorConstructor) constructorConstructorField.get(gson);
-
-            if (fieldNamingPolicy == null)
-                throw new RuntimeException("reflective injection failed: no fieldNamingPolicy found");
-            if (excluder == null) throw new RuntimeException("reflective injection failed: no excluder found");
-            this.fieldNamingPolicy = fieldNamingPolicy;
-            this.excluder = excluder;
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            throw new RuntimeException(e);
-        }
+        this(gson, GsonInjection.constructorConstructor(gson));
+        GsonInjection.replaceReflectiveFactory(gson, this);
+    }
+
+    protected SimpleGsonFlatSupport(Gson gson, ConstructorConstructor constructorConstructor) {
+        this.constructorConstructor = constructorConstructor;
+        this.fieldNamingPolicy = gson.fieldNamingStrategy();
+        this.excluder = gson.excluder();
+    }
+
+    /**
+     * 设置读写指标, 只对之后创建的adapter生效, 需要在第一次序列化/反序列化之前调用.
+     *
+     * @param metrics null 时不记录
+     */
+    public void setMetrics(FlatMetrics metrics) {
+        this.metrics = metrics;
     }
 
     protected boolean excludeField(Field f, boolean serialize) {
@@ -114,8 +102,24 @@ public class SimpleGsonFlatSupport implements TypeAdapterFactory {
             return null; // it's a primitive!
         }
 
+        FlatMetrics metrics = this.metrics;
+        FlatMetrics.TypeMetrics typeMetrics = metrics == null ? null : metrics.forType(raw);
+        long start = typeMetrics == null ? 0 : System.nanoTime();
+
         ObjectConstructor<T> constructor = constructorConstructor.get(type);
-        return new Adapter<>(constructor, getBoundFields(gson, type, Collections.emptyList()));
+        Set<Class<?>> building = this.building.get();
+        boolean added = building.add(raw);
+        try {
+            Adapter<T> adapter = new Adapter<>(constructor, getBoundFields(gson, type, Collections.emptyList()), typeMetrics);
+            if (typeMetrics != null) {
+                typeMetrics.recordPlanBuild(System.nanoTime() - start);
+            }
+            return adapter;
+        } finally {
+            if (added) {
+                building.remove(raw);
+            }
+        }
     }
 
     protected ObjectPathBoundedField createBoundField(final Gson context, final List<Field> fieldPath, final String name, boolean serialize, boolean deserialize) {
@@ -165,10 +169,8 @@ public class SimpleGsonFlatSupport implements TypeAdapterFactory {
                 Type fieldType = $Gson$Types.resolve(type.getType(), raw, field.getGenericType());
 
                 TypeToken<?> fieldTypeToken = TypeToken.get(fieldType);
-                Class<?> declaringClass = field.getType();
-                TypeAdapter<?> adapter = originalGson.getAdapter(declaringClass);
 
-                if (adapter instanceof ReflectiveTypeAdapterFactory.Adapter && !field.getType().isInterface()) {
+                if (!field.getType().isInterface() && isFlatType(context, field)) {
                     for (Map.Entry<String, ObjectPathBoundedField> entry : getBoundFields(context, fieldTypeToken, fieldsPath).entrySet()) {
                         ObjectPathBoundedField previous = result.put(entry.getKey(), entry.getValue());
                         if (previous != null)
@@ -193,12 +195,67 @@ public class SimpleGsonFlatSupport implements TypeAdapterFactory {
     }
 
 
-    protected static class Adapter<T> extends TypeAdapter<T> {
+    /**
+     * 字段的类型是否是平铺的POJO, 即 gson 为它选择了平铺的adapter. 与其他类型共用 gson 的adapter缓存.
+     * 正在构建的顶层类型在 gson 中还没有adapter, 先检查循环依赖.
+     */
+    private boolean isFlatType(Gson context, Field field) {
+        Class<?> fieldClass = field.getType();
+        for (Class<?> buildingType : building.get()) {
+            if (buildingType.isAssignableFrom(fieldClass)) {
+                throw new RuntimeException("circle depend pre=" + buildingType + ",now=" + field);
+            }
+        }
+        return context.getAdapter(fieldClass) instanceof Adapter;
+    }
+
+    protected static class Adapter<T> extends TypeAdapter<T> implements FlatKeyDictionary.Owner {
         protected final ObjectConstructor<T> constructor;
         protected final Map<String, ObjectPathBoundedField> boundFields;
+        /**
+         * boundFields 的完美哈希表, 不能构建时为null, 按 boundFields 查找
+         */
+        private final FlatKeyTable<ObjectPathBoundedField> keyTable;
+        /**
+         * 最长的 fieldPath 的中间层数量, 用于创建 {@link FlatReadCursor}
+         */
+        private final int maxDepth;
+        /**
+         * 没有设置 {@link FlatMetrics} 时为null, 读写时不计时也不计数
+         */
+        private final FlatMetrics.TypeMetrics metrics;
+        /**
+         * {@link FlatUtf8} 使用的key字典, 第一次使用时创建
+         */
+        private volatile FlatKeyDictionary utf8Keys;
+
         protected Adapter(ObjectConstructor<T> constructor, Map<String, ObjectPathBoundedField> boundFields) {
+            this(constructor, boundFields, null);
+        }
+
+        protected Adapter(ObjectConstructor<T> constructor, Map<String, ObjectPathBoundedField> boundFields, FlatMetrics.TypeMetrics metrics) {
+            this.metrics = metrics;
             this.constructor = constructor;
             this.boundFields = boundFields;
+            this.keyTable = FlatKeyTable.build(boundFields);
+            int maxDepth = 0;
+            for (ObjectPathBoundedField boundField : boundFields.values()) {
+                maxDepth = Math.max(maxDepth, boundField.fieldPath.size() - 1);
+            }
+            this.maxDepth = maxDepth;
+        }
+
+        /**
+         * 接口字段按嵌套json处理, 全部key都是静态的.
+         */
+        @Override
+        public FlatKeyDictionary utf8Keys() {
+            FlatKeyDictionary utf8Keys = this.utf8Keys;
+            if (utf8Keys == null) {
+                utf8Keys = new FlatKeyDictionary(boundFields.keySet(), key -> false);
+                this.utf8Keys = utf8Keys;
+            }
+            return utf8Keys;
         }
 
         @Override
@@ -208,27 +265,36 @@ public class SimpleGsonFlatSupport implements TypeAdapterFactory {
                 return null;
             }
 
+            long start = metrics == null ? 0 : System.nanoTime();
+            int fields = 0;
+            int skippedKeys = 0;
+
             T instance = constructor.construct();
+            FlatReadCursor cursor = new FlatReadCursor(instance, maxDepth);
 
             try {
                 in.beginObject();
                 while (in.hasNext()) {
                     String name = in.nextName();
-                    ObjectPathBoundedField field = boundFields.get(name);
+                    ObjectPathBoundedField field = keyTable != null ? keyTable.get(name, 0) : boundFields.get(name);
                     if (field == null || !field.deserialized) {
                         in.skipValue();
+                        skippedKeys++;
                     } else {
 
-                            field.read(in, instance);
+                            field.read(in, cursor);
+                            fields++;
 
                     }
                 }
             } catch (IllegalStateException e) {
                 throw new JsonSyntaxException(e);
-            } catch (IllegalAccessException e) {
-                throw new AssertionError(e);
             }
             in.endObject();
+            if (metrics != null) {
+                // 接口字段按嵌套json处理, 没有动态类型
+                metrics.recordRead(System.nanoTime() - start, fields, skippedKeys, 0);
+            }
             return instance;
         }
 
@@ -239,18 +305,25 @@ public class SimpleGsonFlatSupport implements TypeAdapterFactory {
                 return;
             }
 
+            long start = metrics == null ? 0 : System.nanoTime();
+            int fields = 0;
+
             out.beginObject();
             try {
                 for (ObjectPathBoundedField boundField : boundFields.values()) {
                     if (boundField.serialized) {
                         out.name(boundField.getName());
                         boundField.write(out, value);
+                        fields++;
                     }
                 }
             } catch (IllegalAccessException e) {
                 throw new AssertionError();
             }
             out.endObject();
+            if (metrics != null) {
+                metrics.recordWrite(System.nanoTime() - start, fields, 0);
+            }
         }
     }
 
@@ -269,6 +342,18 @@ public class SimpleGsonFlatSupport implements TypeAdapterFactory {
          * 静态分析出的typeAdapter
          */
         protected final TypeAdapter<?> typeAdapter;
+        /**
+         * 预先组合好的路径访问器
+         */
+        protected final FieldPathAccessor accessor;
+        /**
+         * 基本类型/String的特化读写, 不支持时为null
+         */
+        final LeafKind leafKind;
+        /**
+         * leafKind 使用的字段accessor, leafKind 为null时为null
+         */
+        final LeafAccessor leafAccessor;
 
         protected ObjectPathBoundedField(Gson context, List<Field> fieldPath, String name, boolean serialize, boolean deserialize) {
             this.name = name;
@@ -282,6 +367,11 @@ public class SimpleGsonFlatSupport implements TypeAdapterFactory {
             this.isPrimitive = Primitives.isPrimitive(fieldType.getRawType());
             TypeAdapter<?> adapter = context.getAdapter(fieldType);
             this.typeAdapter = adapter;
+            this.accessor = FieldPathAccessor.of(fieldPath, constructorConstructor);
+            LeafKind leafKind = LeafKind.of(lastField.getType(), adapter);
+            FieldAccessor leaf = accessor.leaf();
+            this.leafAccessor = leafKind != null && leafKind.accessorType.isInstance(leaf) ? (LeafAccessor) leaf : null;
+            this.leafKind = leafAccessor == null ? null : leafKind;
         }
 
         public String getName() {
@@ -302,32 +392,46 @@ public class SimpleGsonFlatSupport implements TypeAdapterFactory {
 
         @SuppressWarnings({"unchecked", "rawtypes"}) // the type adapter and field type always agree
         protected void write(JsonWriter writer, Object value) throws IOException, IllegalAccessException {
-            // find needed object by path. 层层推进,更换value,直到获取到该字段的真正的持有对象.
-            for (Field field : fieldPath) {
-                value = field.get(value);
-                if (value == null) break;
+            if (leafKind != null) {
+                leafAccessor.write(writer, accessor.getParent(value), (TypeAdapter) typeAdapter);
+                return;
             }
+            // find needed object by path. 层层推进,任意一层为null时返回null.
+            value = accessor.get(value);
             TypeAdapter t = new NonPrivateTypeAdapterRuntimeTypeWrapper(context, this.typeAdapter, resolvedType);
             t.write(writer, value);
         }
 
 
-        protected void read(JsonReader reader, Object value) throws IOException, IllegalAccessException {
+        /**
+         * 同 {@link #read(JsonReader, Object)}, 中间层对象通过游标获取, 相邻key共用已解析的中间层.
+         */
+        protected void read(JsonReader reader, FlatReadCursor cursor) throws IOException {
+            if (leafKind != null) {
+                leafAccessor.read(reader, cursor.moveTo(fieldPath, accessor));
+                return;
+            }
 
+            // 使用静态解析好的typeAdapter读取值.
+            Object fieldValue = typeAdapter.read(FlatUtf8JsonReader.valueReader(reader));
+            Object holder = cursor.moveTo(fieldPath, accessor);
+            if (fieldValue != null || !isPrimitive) {
+                accessor.set(holder, fieldValue);
+            }
+        }
+
+        protected void read(JsonReader reader, Object value) throws IOException, IllegalAccessException {
+            if (leafKind != null) {
+                leafAccessor.read(reader, accessor.getOrCreateHolder(value));
+                return;
+            }
 
             // 使用静态解析好的typeAdapter读取值.
-            Object fieldValue = typeAdapter.read(reader);
+            Object fieldValue = typeAdapter.read(FlatUtf8JsonReader.valueReader(reader));
 //            步步推进,初始化每层的object.
-            for (Field field : fieldPath.subList(0, fieldPath.size() - 1)) {
-                Object child = field.get(value);
-                if (child == null) {
-                    child = constructorConstructor.get(TypeToken.get(field.getType())).construct();
-                    field.set(value, child);
-                }
-                value = child;
-            }
+            Object holder = accessor.getOrCreateHolder(value);
             if (fieldValue != null || !isPrimitive) {
-                fieldPath.get(fieldPath.size() - 1).set(value, fieldValue);
+                accessor.set(holder, fieldValue);
             }
         }
     }
@@ -0,0 +1,185 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.reflect.TypeToken;
+import com.javedemo.gson.jsonAdapter.FlatSubTypes;
+import com.javedemo.gson.typeAdapter.simpleflat.FlatReflectionTypeAdapterFactory.DynamicTypeInterfaceBoundedField;
+import com.javedemo.gson.typeAdapter.simpleflat.FlatReflectionTypeAdapterFactory.InterfaceBoundedField;
+import com.javedemo.gson.typeAdapter.simpleflat.FlatReflectionTypeAdapterFactory.InterfaceFieldParser;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 声明式注册接口的实现类, 生成 {@link InterfaceFieldParser}, 代替手写的parser.
+ * <p>
+ * Usage:
+ * <pre>
+ *     Map&lt;Class, InterfaceFieldParser&gt; parsers = SubTypeRegistry.builder()
+ *             .annotated(IWindow.class)                     // 读取接口上的 {@link FlatSubTypes}
+ *             .subTypes(IMaterial.class, "IMaterialType")   // 或者直接列出
+ *                 .subType("纯天然材料", NatureMaterial.class)
+ *             .build();
+ *     FlatReflectionTypeAdapterFactory.injectInto(gson, parsers);
+ * </pre>
+ * 注册的实现类在 build 时校验, 读写用的 {@link DynamicTypeInterfaceBoundedField}/{@link InterfaceBoundedField}
+ * 在注入时由factory构建一次, 之后只读. 序列化时按对象的实际类型选择实现类.
+ */
+public final class SubTypeRegistry {
+
+    private SubTypeRegistry() {
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        /**
+         * 与 {@link FlatReflectionTypeAdapterFactory#injectInto} 的参数类型一致, key 使用原始类型
+         */
+        @SuppressWarnings("rawtypes")
+        private final Map<Class, InterfaceFieldParser> parsers = new LinkedHashMap<>();
+        private Class<?> currentInterface;
+        private String currentTypeName;
+        private Map<String, Class<?>> currentSubTypes;
+
+        private Builder() {
+        }
+
+        /**
+         * 注册接口上 {@link FlatSubTypes} 声明的实现类.
+         */
+        public Builder annotated(Class<?>... interfaceTypes) {
+            for (Class<?> interfaceType : interfaceTypes) {
+                FlatSubTypes flatSubTypes = interfaceType.getAnnotation(FlatSubTypes.class);
+                if (flatSubTypes == null) {
+                    throw new RuntimeException("can not find FlatSubTypes of interface ,clazz=" + interfaceType.getName());
+                }
+                subTypes(interfaceType, flatSubTypes.typeName());
+                for (FlatSubTypes.SubType subType : flatSubTypes.value()) {
+                    subType(subType.name(), subType.value());
+                }
+            }
+            return this;
+        }
+
+        /**
+         * 开始注册一个接口, 之后通过 {@link #subType(String, Class)} 列出实现类.
+         *
+         * @param typeName 类型标识的key
+         */
+        public Builder subTypes(Class<?> interfaceType, String typeName) {
+            flush();
+            if (parsers.containsKey(interfaceType)) {
+                throw new RuntimeException("interface registered twice ,clazz=" + interfaceType.getName());
+            }
+            currentInterface = interfaceType;
+            currentTypeName = typeName;
+            currentSubTypes = new LinkedHashMap<>();
+            return this;
+        }
+
+        /**
+         * @param name 类型标识的值
+         */
+        public Builder subType(String name, Class<?> subType) {
+            if (currentInterface == null) {
+                throw new IllegalStateException("call subTypes before subType ,name=" + name);
+            }
+            if (!currentInterface.isAssignableFrom(subType) || subType.isInterface() || Modifier.isAbstract(subType.getModifiers())) {
+                throw new RuntimeException("sub type must be a concrete implementation ,interface=" + currentInterface.getName() + ",subType=" + subType.getName());
+            }
+            if (currentSubTypes.containsKey(name) || currentSubTypes.containsValue(subType)) {
+                throw new RuntimeException("sub type registered twice ,interface=" + currentInterface.getName() + ",name=" + name + ",subType=" + subType.getName());
+            }
+            currentSubTypes.put(name, subType);
+            return this;
+        }
+
+        @SuppressWarnings("rawtypes")
+        public Map<Class, InterfaceFieldParser> build() {
+            flush();
+            return Collections.unmodifiableMap(new LinkedHashMap<>(parsers));
+        }
+
+        private void flush() {
+            if (currentInterface == null) {
+                return;
+            }
+            if (currentSubTypes.isEmpty()) {
+                throw new RuntimeException("no sub type registered ,interface=" + currentInterface.getName());
+            }
+            parsers.put(currentInterface, new SubTypeFieldParser(currentInterface, currentTypeName, Collections.unmodifiableMap(currentSubTypes)));
+            currentInterface = null;
+            currentTypeName = null;
+            currentSubTypes = null;
+        }
+    }
+
+    /**
+     * 由注册信息生成的parser, 结果由factory缓存.
+     */
+    static final class SubTypeFieldParser implements InterfaceFieldParser {
+        private final Class<?> interfaceType;
+        private final String typeName;
+        /**
+         * 类型标识的值 -> 实现类, 保持注册顺序
+         */
+        private final Map<String, Class<?>> subTypes;
+
+        SubTypeFieldParser(Class<?> interfaceType, String typeName, Map<String, Class<?>> subTypes) {
+            this.interfaceType = interfaceType;
+            this.typeName = typeName;
+            this.subTypes = subTypes;
+        }
+
+        /**
+         * 不知道实际类型时使用第一个注册的实现类.
+         */
+        @Override
+        public InterfaceBoundedField getBoundedFildsForWrite(FlatReflectionTypeAdapterFactory flatReflectionTypeAdapterFactory) {
+            return flatReflectionTypeAdapterFactory.getReadBinding(interfaceType).getMap().values().iterator().next();
+        }
+
+        @Override
+        public InterfaceBoundedField getBoundedFildsForWrite(FlatReflectionTypeAdapterFactory flatReflectionTypeAdapterFactory, Class<?> runtimeType) {
+            InterfaceBoundedField assignable = null;
+            for (InterfaceBoundedField interfaceBoundedField : flatReflectionTypeAdapterFactory.getReadBinding(interfaceType).getMap().values()) {
+                Class<?> clazz = interfaceBoundedField.getClazz();
+                if (clazz == runtimeType) {
+                    return interfaceBoundedField;
+                }
+                if (assignable == null && clazz.isAssignableFrom(runtimeType)) {
+                    assignable = interfaceBoundedField;
+                }
+            }
+            // 注册类的子类(例如匿名类)按最先注册的父类写出
+            if (assignable != null) {
+                return assignable;
+            }
+            throw new RuntimeException("can not find sub type of interface ,interface=" + interfaceType.getName() + ",runtimeType=" + runtimeType.getName());
+        }
+
+        @Override
+        public DynamicTypeInterfaceBoundedField getBoundedFildsForRead(FlatReflectionTypeAdapterFactory flatReflectionTypeAdapterFactory) {
+            Map<String, InterfaceBoundedField> map = new LinkedHashMap<>();
+            for (Map.Entry<String, Class<?>> subType : subTypes.entrySet()) {
+                InterfaceBoundedField interfaceBoundedField = new InterfaceBoundedField();
+                interfaceBoundedField.setTypeName(typeName);
+                interfaceBoundedField.setTypeValue(subType.getKey());
+                interfaceBoundedField.setClazz(subType.getValue());
+                interfaceBoundedField.setObjectPathBoundedFields(Collections.unmodifiableMap(
+                        flatReflectionTypeAdapterFactory.buildBoundFields(flatReflectionTypeAdapterFactory.gson, TypeToken.get(subType.getValue()), new ArrayList<>())));
+                map.put(subType.getKey(), interfaceBoundedField);
+            }
+
+            DynamicTypeInterfaceBoundedField dynamicTypeInterfaceBoundedField = new DynamicTypeInterfaceBoundedField();
+            dynamicTypeInterfaceBoundedField.setTypeName(typeName);
+            dynamicTypeInterfaceBoundedField.setMap(Collections.unmodifiableMap(map));
+            return dynamicTypeInterfaceBoundedField;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 直接从 {@link ByteBuffer} (通常是映射的文件) 解码UTF-8的 {@link Reader}, 不复制到中间的 byte[] 或 String.
+ */
+final class Utf8ByteBufferReader extends Reader {
+    private final ByteBuffer in;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    /**
+     * len 为1时放不下代理对, 暂存低位, 下次读取时返回
+     */
+    private CharBuffer pending;
+    private boolean flushed;
+
+    Utf8ByteBufferReader(ByteBuffer in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pending != null && pending.hasRemaining()) {
+            cbuf[off] = pending.get();
+            return 1;
+        }
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (out.position() == off && !flushed) {
+            CoderResult result = decoder.decode(in, out, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (!in.hasRemaining()) {
+                flushed = decoder.flush(out).isUnderflow();
+            } else if (result.isOverflow() && out.position() == off) {
+                if (pending == null) {
+                    pending = CharBuffer.allocate(2);
+                }
+                pending.clear();
+                result = decoder.decode(in, pending, true);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                pending.flip();
+                out.put(pending.get());
+            }
+        }
+        int read = out.position() - off;
+        return read == 0 ? -1 : read;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,146 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.javedemo.gson.jsonAdapter.FieldNamePrefix;
+import com.javedemo.gson.jsonAdapter.FlatSubTypes;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+public class DefaultFlatMetricsTest {
+    private final Map<Class, FlatReflectionTypeAdapterFactory.InterfaceFieldParser> parsers = SubTypeRegistry.builder()
+            .annotated(Shape.class)
+            .subTypes(Fill.class, "fillType")
+            .subType("solid", SolidFill.class)
+            .build();
+
+    private static final String JSON = "{\"title\":\"草图\",\"unknown\":1,\"main.shapeType\":\"circle\",\"main.radius\":2.5," +
+            "\"main.fill.fillType\":\"solid\",\"main.fill.color\":\"红\",\"extra.shapeType\":\"square\",\"extra.side\":4}";
+
+    /**
+     * 流式和 JsonObject 两种读取方式的计数一致: 4个字段, 1个未知key, 3个动态类型.
+     */
+    @Test
+    public void testFlatReflectionMetrics() {
+        for (boolean streamingRead : new boolean[]{true, false}) {
+            Gson gson = new GsonBuilder().create();
+            DefaultFlatMetrics metrics = new DefaultFlatMetrics();
+            FlatReflectionTypeAdapterFactory.injectInto(gson, parsers, streamingRead).setMetrics(metrics);
+
+            Drawing drawing = gson.fromJson(JSON, Drawing.class);
+            gson.fromJson(JSON, Drawing.class);
+            gson.toJson(drawing);
+
+            FlatTypeStats stats = metrics.getTypeStats(Drawing.class);
+            Assert.assertEquals(stats.getReadCount(), 2);
+            Assert.assertEquals(stats.getReadFields(), 8);
+            Assert.assertEquals(stats.getSkippedKeys(), 2);
+            Assert.assertEquals(stats.getReadDynamicResolutions(), 6);
+            Assert.assertEquals(stats.getWriteCount(), 1);
+            Assert.assertEquals(stats.getWriteFields(), 4);
+            Assert.assertEquals(stats.getWriteDynamicResolutions(), 3);
+            Assert.assertEquals(stats.getPlanBuildCount(), 1);
+            Assert.assertTrue(stats.getReadP99Nanos() >= stats.getReadP50Nanos() && stats.getReadP99Nanos() <= stats.getReadMaxNanos(), stats.toString());
+            Assert.assertTrue(stats.getReadNanos() >= stats.getReadMaxNanos(), stats.toString());
+        }
+    }
+
+    @Test
+    public void testSimpleFlatMetrics() {
+        DefaultFlatMetrics metrics = new DefaultFlatMetrics();
+        FlatRegistration<SimpleGsonFlatSupport> registration = SimpleGsonFlatSupport.registration();
+        Gson gson = new GsonBuilder().registerTypeAdapterFactory(registration).create();
+        registration.factory(gson).setMetrics(metrics);
+
+        Label label = gson.fromJson("{\"text\":\"a\",\"size\":3,\"other\":true}", Label.class);
+        Assert.assertEquals(gson.toJson(label), "{\"text\":\"a\",\"size\":3}");
+
+        FlatTypeStats stats = metrics.getTypeStats(Label.class);
+        Assert.assertEquals(stats.getReadCount(), 1);
+        Assert.assertEquals(stats.getReadFields(), 2);
+        Assert.assertEquals(stats.getSkippedKeys(), 1);
+        Assert.assertEquals(stats.getWriteFields(), 2);
+        Assert.assertNotNull(metrics.getTypeStats(Font.class), "nested type builds its own adapter");
+        Assert.assertEquals(metrics.getTypeStats(Font.class).getReadCount(), 0);
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        Gson gson = new GsonBuilder().create();
+        DefaultFlatMetrics metrics = new DefaultFlatMetrics();
+        FlatReflectionTypeAdapterFactory.injectInto(gson, parsers, true).setMetrics(metrics);
+        ObjectName name = metrics.registerMBean("DefaultFlatMetricsTest");
+        try {
+            gson.fromJson(JSON, Drawing.class);
+
+            Assert.assertEquals(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "ReadCount"), 1L);
+            Assert.assertEquals(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "SkippedKeys"), 1L);
+            CompositeData[] typeStats = (CompositeData[]) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "TypeStats");
+            Assert.assertEquals(typeStats[0].get("type"), Drawing.class.getName());
+
+            ManagementFactory.getPlatformMBeanServer().invoke(name, "reset", null, null);
+            Assert.assertEquals(metrics.getReadCount(), 0);
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void testPercentile() {
+        DefaultFlatMetrics.Latency latency = new DefaultFlatMetrics.Latency();
+        Assert.assertEquals(latency.percentile(0.5), 0);
+        for (int i = 0; i < 99; i++) {
+            latency.record(1000);
+        }
+        latency.record(1_000_000);
+        // 1000 在 [512, 1024) 桶中
+        Assert.assertEquals(latency.percentile(0.5), 1023);
+        Assert.assertEquals(latency.percentile(0.99), 1023);
+        Assert.assertEquals(latency.percentile(1), 1_000_000);
+    }
+
+    @FlatSubTypes(typeName = "shapeType", value = {
+            @FlatSubTypes.SubType(value = Circle.class, name = "circle"),
+            @FlatSubTypes.SubType(value = Square.class, name = "square")})
+    private interface Shape {
+    }
+
+    private interface Fill {
+    }
+
+    private static class Drawing {
+        private String title;
+        @FieldNamePrefix("main")
+        private Shape main;
+        @FieldNamePrefix("extra")
+        private Shape extra;
+    }
+
+    private static class Circle implements Shape {
+        private double radius;
+        @FieldNamePrefix("fill")
+        private Fill fill;
+    }
+
+    private static class Square implements Shape {
+        private int side;
+    }
+
+    private static class SolidFill implements Fill {
+        private String color;
+    }
+
+    private static class Label {
+        private String text;
+        private Font font;
+    }
+
+    private static class Font {
+        private int size;
+    }
+}
@@ -0,0 +1,75 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.internal.ConstructorConstructor;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class FieldPathAccessorTest {
+    private final ConstructorConstructor constructorConstructor = new ConstructorConstructor(Collections.emptyMap());
+
+    @Test
+    public void testGeneratedPath() throws NoSuchFieldException {
+        FieldPathAccessor accessor = FieldPathAccessor.of(path("a", "b", "value"), constructorConstructor);
+        // 每条路径生成一个子类, 同一条路径复用
+        Assert.assertNotSame(accessor.getClass(), FieldPathAccessor.class);
+        Assert.assertSame(FieldPathAccessor.of(path("a", "b", "value"), constructorConstructor).getClass(), accessor.getClass());
+        Assert.assertTrue(accessor.leaf() instanceof LeafAccessor.OfInt);
+
+        Root root = new Root();
+        Assert.assertNull(accessor.get(root));
+        Assert.assertNull(accessor.getParent(root));
+        Assert.assertNull(accessor.get(null));
+
+        Object holder = accessor.getOrCreateHolder(root);
+        Assert.assertNotNull(root.a);
+        Assert.assertSame(holder, root.a.b);
+        accessor.set(holder, 3);
+        Assert.assertEquals(root.a.b.value, 3);
+        Assert.assertEquals(accessor.get(root), 3);
+        Assert.assertEquals(accessor.getLeaf(holder), 3);
+        Assert.assertSame(accessor.getParent(root), root.a.b);
+        // 已存在的中间层不会被替换
+        Assert.assertSame(accessor.getOrCreateChild(0, root), root.a);
+        Assert.assertSame(accessor.getOrCreateChild(1, root.a), root.a.b);
+    }
+
+    @Test
+    public void testSingleField() throws NoSuchFieldException {
+        FieldPathAccessor accessor = FieldPathAccessor.of(path("name"), constructorConstructor);
+        Root root = new Root();
+        Assert.assertSame(accessor.getOrCreateHolder(root), root);
+        Assert.assertSame(accessor.getParent(root), root);
+        accessor.set(root, "x");
+        Assert.assertEquals(accessor.get(root), "x");
+    }
+
+    private static List<Field> path(String... names) throws NoSuchFieldException {
+        List<Field> fieldPath = new ArrayList<>();
+        Class<?> type = Root.class;
+        for (String name : names) {
+            Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            fieldPath.add(field);
+            type = field.getType();
+        }
+        return fieldPath;
+    }
+
+    private static class Root {
+        private String name;
+        private A a;
+    }
+
+    private static class A {
+        private B b;
+    }
+
+    private static class B {
+        private int value;
+    }
+}
@@ -0,0 +1,158 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.javedemo.gson.jsonAdapter.FieldNamePrefix;
+import com.javedemo.gson.jsonAdapter.FlatSubTypes;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class FlatJfrEventsTest {
+    private final Map<Class, FlatReflectionTypeAdapterFactory.InterfaceFieldParser> parsers = SubTypeRegistry.builder()
+            .annotated(Shape.class)
+            .build();
+
+    /**
+     * 类型标识在字段之后, 流式读取时字段先缓存再回放.
+     */
+    private static final String JSON = "{\"title\":\"草图\",\"unknown\":1,\"main.radius\":2.5,\"main.shapeType\":\"circle\"}";
+
+    @Test
+    public void testEvents() throws Exception {
+        for (boolean streamingRead : new boolean[]{true, false}) {
+            List<RecordedEvent> events = record(() -> {
+                Gson gson = new GsonBuilder().create();
+                FlatReflectionTypeAdapterFactory.injectInto(gson, parsers, streamingRead);
+                Drawing drawing = gson.fromJson(JSON, Drawing.class);
+                gson.toJson(drawing);
+            });
+
+            RecordedEvent planBuild = only(events, "com.javedemo.gson.FlatPlanBuild", Drawing.class.getName());
+            Assert.assertEquals(planBuild.getInt("keys"), 2);
+            only(events, "com.javedemo.gson.FlatPlanBuild", Circle.class.getName());
+
+            RecordedEvent read = only(events, "com.javedemo.gson.FlatRead", Drawing.class.getName());
+            Assert.assertEquals(read.getBoolean("streaming"), streamingRead);
+            Assert.assertEquals(read.getInt("keys"), 4);
+            Assert.assertEquals(read.getInt("fields"), 2);
+            Assert.assertEquals(read.getInt("skippedKeys"), 1);
+            Assert.assertEquals(read.getInt("dynamicResolutions"), 1);
+
+            RecordedEvent resolve = only(events, "com.javedemo.gson.FlatDynamicResolve", null);
+            Assert.assertEquals(resolve.getClass("interfaceType").getName(), Shape.class.getName());
+            Assert.assertEquals(resolve.getClass("implementation").getName(), Circle.class.getName());
+            Assert.assertEquals(resolve.getString("typeValue"), "circle");
+            // 类型标识之前的 main.radius, 两种读取方式相同
+            Assert.assertEquals(resolve.getInt("keysBeforeType"), 1);
+
+            RecordedEvent write = only(events, "com.javedemo.gson.FlatWrite", Drawing.class.getName());
+            Assert.assertEquals(write.getInt("fields"), 2);
+            Assert.assertEquals(write.getInt("dynamicResolutions"), 1);
+        }
+    }
+
+    /**
+     * 读写过程中才开始录制: 事件已经 begin, 但本次调用没有计数, 不能因此报错.
+     */
+    @Test
+    public void testRecordingStartedDuringCall() {
+        Recording[] recording = new Recording[1];
+        TypeAdapter<Marker> startsRecording = new TypeAdapter<Marker>() {
+            @Override
+            public void write(JsonWriter out, Marker value) throws IOException {
+                start();
+                out.value("m");
+            }
+
+            @Override
+            public Marker read(JsonReader in) throws IOException {
+                start();
+                in.skipValue();
+                return new Marker();
+            }
+
+            private void start() {
+                if (recording[0] == null) {
+                    recording[0] = new Recording();
+                    recording[0].enable("com.javedemo.gson.FlatRead").withoutThreshold();
+                    recording[0].enable("com.javedemo.gson.FlatWrite").withoutThreshold();
+                    recording[0].start();
+                }
+            }
+        };
+        Gson gson = new GsonBuilder().registerTypeAdapter(Marker.class, startsRecording).create();
+        FlatReflectionTypeAdapterFactory.injectInto(gson, parsers, true);
+        try {
+            Signed signed = gson.fromJson("{\"title\":\"t\",\"marker\":\"m\"}", Signed.class);
+            Assert.assertNotNull(signed.marker);
+            recording[0].close();
+            recording[0] = null;
+
+            Assert.assertEquals(gson.toJson(signed), "{\"title\":\"t\",\"marker\":\"m\"}");
+        } finally {
+            if (recording[0] != null) {
+                recording[0].close();
+            }
+        }
+    }
+
+    private static List<RecordedEvent> record(Runnable runnable) throws Exception {
+        Path file = Files.createTempFile("flat", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[]{"FlatPlanBuild", "FlatRead", "FlatWrite", "FlatDynamicResolve"}) {
+                recording.enable("com.javedemo.gson." + name).withoutThreshold();
+            }
+            recording.start();
+            runnable.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static RecordedEvent only(List<RecordedEvent> events, String eventName, String typeName) {
+        List<RecordedEvent> matched = events.stream()
+                .filter(e -> e.getEventType().getName().equals(eventName))
+                .filter(e -> typeName == null || e.getClass("type") != null && e.getClass("type").getName().equals(typeName))
+                .collect(Collectors.toList());
+        Assert.assertEquals(matched.size(), 1, eventName + " " + typeName + " " + matched);
+        return matched.get(0);
+    }
+
+    @FlatSubTypes(typeName = "shapeType", value = @FlatSubTypes.SubType(value = Circle.class, name = "circle"))
+    private interface Shape {
+    }
+
+    private static class Drawing {
+        private String title;
+        @FieldNamePrefix("main")
+        private Shape main;
+    }
+
+    private static class Marker {
+    }
+
+    private static class Signed {
+        private String title;
+        private Marker marker;
+    }
+
+    private static class Circle implements Shape {
+        private double radius;
+    }
+}
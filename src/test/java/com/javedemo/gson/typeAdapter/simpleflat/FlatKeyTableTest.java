@@ -0,0 +1,48 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class FlatKeyTableTest {
+
+    @Test
+    public void testWideType() {
+        // 300个前缀相同, 只在中间和末尾不同的key
+        Map<String, Integer> boundFields = new LinkedHashMap<>();
+        for (int i = 0; i < 300; i++) {
+            boundFields.put("backDoorPrefix.lowerWindowPrefix" + (i % 7) + ".field" + i, i);
+        }
+        FlatKeyTable<Integer> table = FlatKeyTable.build(boundFields);
+        Assert.assertNotNull(table);
+        Assert.assertTrue(table.getPositions().length <= FlatKeyTable.MAX_POSITIONS);
+
+        for (Map.Entry<String, Integer> entry : boundFields.entrySet()) {
+            Assert.assertEquals(table.get(entry.getKey(), 0), entry.getValue());
+            Assert.assertEquals(table.get("main." + entry.getKey(), 5), entry.getValue());
+        }
+        Assert.assertNull(table.get("backDoorPrefix.lowerWindowPrefix0.field1", 0));
+        Assert.assertNull(table.get("backDoorPrefix.lowerWindowPrefix1.field1x", 0));
+        Assert.assertNull(table.get("", 0));
+        Assert.assertNull(table.get("unknown", 0));
+    }
+
+    @Test
+    public void testChoosePositions() {
+        Map<String, Integer> boundFields = new LinkedHashMap<>();
+        boundFields.put("name", 0);
+        boundFields.put("frontDoor.doorName", 1);
+        boundFields.put("backDoorPrefix.doorName", 2);
+        boundFields.put("backDoorPrefix.lowerWindowPrefix.windowName", 3);
+        boundFields.put("backDoorPrefix.upperWindow.windowName", 4);
+        FlatKeyTable<Integer> table = FlatKeyTable.build(boundFields);
+        Assert.assertNotNull(table);
+        // 长度已经能区分大部分key, 只需要很少的字符
+        Assert.assertTrue(table.getPositions().length <= 1, "positions=" + table.getPositions().length);
+        boundFields.forEach((key, value) -> Assert.assertEquals(table.get(key, 0), value));
+
+        Assert.assertNull(FlatKeyTable.build(new LinkedHashMap<String, Integer>()));
+    }
+}
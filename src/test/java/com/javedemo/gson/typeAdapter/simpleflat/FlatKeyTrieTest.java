@@ -0,0 +1,41 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class FlatKeyTrieTest {
+
+    private final FlatKeyTrie<String> trie;
+
+    {
+        Map<String, String> boundFields = new LinkedHashMap<>();
+        boundFields.put("name", "name");
+        boundFields.put("doorName", "doorName");
+        boundFields.put("backDoorPrefix.doorName", "backDoor.doorName");
+        boundFields.put("backDoorPrefix.lowerWindowPrefix", "backDoor.ilowerWindow");
+        trie = new FlatKeyTrie<>(boundFields, field -> field.equals("backDoor.ilowerWindow"));
+    }
+
+    @Test
+    public void testGet() {
+        Assert.assertEquals(trie.get("backDoorPrefix.doorName", 0), "backDoor.doorName");
+        Assert.assertEquals(trie.get("x.backDoorPrefix.doorName", 2), "backDoor.doorName");
+        Assert.assertNull(trie.get("backDoorPrefix", 0));
+        Assert.assertNull(trie.get("backDoorPrefix.doorNameX", 0));
+        Assert.assertNull(trie.get("backDoorPrefix.lowerWindowPrefix.windowName", 0));
+    }
+
+    @Test
+    public void testMatchDynamicOwner() {
+        Assert.assertEquals(trie.match("doorName", 0), "doorName");
+        Assert.assertEquals(trie.match("backDoorPrefix.lowerWindowPrefix.iMaterialPrefix.materialName", 0), "backDoor.ilowerWindow");
+        Assert.assertEquals(trie.match("backDoorPrefix.lowerWindowPrefix", 0), "backDoor.ilowerWindow");
+        // 只有动态类型字段才按前缀匹配
+        Assert.assertNull(trie.match("backDoorPrefix.doorName.x", 0));
+        Assert.assertNull(trie.match("backDoorPrefix.lowerWindowPrefixX.windowName", 0));
+        Assert.assertNull(trie.match("unknown", 0));
+    }
+}
@@ -0,0 +1,252 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.FieldNamingStrategy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.javedemo.gson.jsonAdapter.FieldNamePrefix;
+import com.javedemo.gson.jsonAdapter.FlatSubTypes;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class FlatPlanSnapshotTest {
+    private final Map<Class, FlatReflectionTypeAdapterFactory.InterfaceFieldParser> parsers = SubTypeRegistry.builder()
+            .annotated(Pet.class)
+            .build();
+
+    /**
+     * 快照写出后由新的gson加载, 序列化结果与反射遍历构建的计划一致.
+     */
+    @Test
+    public void testWriteAndLoad() throws IOException {
+        Path file = Files.createTempFile("flat-plan", ".snapshot");
+        try {
+            Gson gson = new GsonBuilder().create();
+            FlatReflectionTypeAdapterFactory factory = FlatReflectionTypeAdapterFactory.injectInto(gson, parsers);
+            factory.prepare(Owner.class);
+            factory.writePlanSnapshot(file, Owner.class);
+
+            Gson loadedGson = new GsonBuilder().create();
+            FlatReflectionTypeAdapterFactory loadedFactory = FlatReflectionTypeAdapterFactory.injectInto(loadedGson, parsers, true, file);
+            // Owner, Cat, Dog
+            Assert.assertEquals(loadedFactory.getPlanSnapshotSize(), 3);
+            loadedFactory.prepare(Owner.class);
+
+            Owner owner = getOwner();
+            String expectedJson = "{\"name\":\"小明\",\"home.city\":\"杭州\",\"home.street\":\"文一路\",\"pet.petType\":\"cat\",\"pet.lives\":9}";
+            Assert.assertEquals(gson.toJson(owner), expectedJson, "ObjectToJson check error");
+            Assert.assertEquals(loadedGson.toJson(owner), expectedJson, "ObjectToJson check error");
+            Assert.assertEquals(loadedGson.fromJson(expectedJson, Owner.class), owner, "JsonToObject check error");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * fieldNamingPolicy 不同时key不同, 整个快照作废, 回退到反射遍历.
+     */
+    @Test
+    public void testRejectedByNamingPolicy() throws IOException {
+        Path file = Files.createTempFile("flat-plan", ".snapshot");
+        try {
+            FlatReflectionTypeAdapterFactory.injectInto(new GsonBuilder().create(), parsers).writePlanSnapshot(file, Owner.class);
+
+            Gson upperGson = new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.UPPER_CAMEL_CASE).create();
+            FlatReflectionTypeAdapterFactory upperFactory = FlatReflectionTypeAdapterFactory.injectInto(upperGson, parsers, false, file);
+            Assert.assertEquals(upperFactory.getPlanSnapshotSize(), 0);
+            Assert.assertEquals(upperGson.toJson(getOwner()),
+                    "{\"Name\":\"小明\",\"home.City\":\"杭州\",\"home.Street\":\"文一路\",\"pet.petType\":\"cat\",\"pet.Lives\":9}");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * 自定义的 FieldNamingStrategy 按类名区分, 同一个类的策略可以加载, 不同类的策略整个快照作废.
+     */
+    @Test
+    public void testCustomNamingStrategy() throws IOException {
+        Path file = Files.createTempFile("flat-plan", ".snapshot");
+        try {
+            Gson gson = new GsonBuilder().setFieldNamingStrategy(new PrefixNaming()).create();
+            FlatReflectionTypeAdapterFactory.injectInto(gson, parsers).writePlanSnapshot(file, Owner.class);
+            String expectedJson = "{\"f_name\":\"小明\",\"home.f_city\":\"杭州\",\"home.f_street\":\"文一路\",\"pet.petType\":\"cat\",\"pet.f_lives\":9}";
+            Assert.assertEquals(gson.toJson(getOwner()), expectedJson);
+
+            Gson loadedGson = new GsonBuilder().setFieldNamingStrategy(new PrefixNaming()).create();
+            FlatReflectionTypeAdapterFactory loadedFactory = FlatReflectionTypeAdapterFactory.injectInto(loadedGson, parsers, true, file);
+            Assert.assertEquals(loadedFactory.getPlanSnapshotSize(), 3);
+            Assert.assertEquals(loadedGson.toJson(getOwner()), expectedJson);
+            Assert.assertEquals(loadedGson.fromJson(expectedJson, Owner.class), getOwner());
+
+            Gson upperGson = new GsonBuilder().setFieldNamingStrategy(new UpperNaming()).create();
+            FlatReflectionTypeAdapterFactory upperFactory = FlatReflectionTypeAdapterFactory.injectInto(upperGson, parsers, true, file);
+            Assert.assertEquals(upperFactory.getPlanSnapshotSize(), 0);
+            Assert.assertEquals(upperGson.toJson(getOwner()),
+                    "{\"NAME\":\"小明\",\"home.CITY\":\"杭州\",\"home.STREET\":\"文一路\",\"pet.petType\":\"cat\",\"pet.LIVES\":9}");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * 注入时加载的快照在构建接口动态类之前生效, 实现类的平铺字段直接按快照恢复, 不再反射遍历.
+     */
+    @Test
+    public void testLoadedBeforeBindings() throws IOException {
+        Path file = Files.createTempFile("flat-plan", ".snapshot");
+        try {
+            FlatReflectionTypeAdapterFactory.injectInto(new GsonBuilder().create(), parsers).writePlanSnapshot(file, Owner.class);
+
+            List<Field> reflected = new ArrayList<>();
+            Gson gson = new GsonBuilder().create();
+            FlatReflectionTypeAdapterFactory factory = new FlatReflectionTypeAdapterFactory(gson, parsers, true) {
+                @Override
+                protected String getFieldName(Field f) {
+                    reflected.add(f);
+                    return super.getFieldName(f);
+                }
+            };
+            // 与 injectInto(gson, parsers, true, file) 相同的顺序
+            factory.loadPlanSnapshot(file);
+            factory.prepareBindings();
+            factory.prepare(Owner.class);
+            Assert.assertEquals(reflected, Collections.emptyList());
+            Assert.assertEquals(gson.fromJson(gson.toJson(getOwner()), Owner.class), getOwner());
+
+            // 绑定已经构建后不能再加载
+            Assert.assertThrows(IllegalStateException.class, () -> factory.loadPlanSnapshot(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testRegistration() throws IOException {
+        Path file = Files.createTempFile("flat-plan", ".snapshot");
+        try {
+            FlatReflectionTypeAdapterFactory.injectInto(new GsonBuilder().create(), parsers).writePlanSnapshot(file, Owner.class);
+
+            FlatRegistration<FlatReflectionTypeAdapterFactory> flat = FlatReflectionTypeAdapterFactory.registration(parsers, true, file);
+            Gson gson = new GsonBuilder().registerTypeAdapterFactory(flat).create();
+            Assert.assertEquals(flat.factory(gson).getPlanSnapshotSize(), 3);
+            Assert.assertEquals(gson.fromJson(gson.toJson(getOwner()), Owner.class), getOwner());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testInvalidFile() throws IOException {
+        Path file = Files.createTempFile("flat-plan", ".snapshot");
+        try {
+            Files.write(file, new byte[]{1, 2, 3, 4, 5, 6});
+            Assert.assertThrows(IOException.class, () -> FlatReflectionTypeAdapterFactory.injectInto(new GsonBuilder().create(), parsers, true, file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private Owner getOwner() {
+        Owner owner = new Owner();
+        owner.name = "小明";
+        owner.home = new Address();
+        owner.home.city = "杭州";
+        owner.home.street = "文一路";
+        Cat cat = new Cat();
+        cat.lives = 9;
+        owner.pet = cat;
+        return owner;
+    }
+
+    private static class PrefixNaming implements FieldNamingStrategy {
+        @Override
+        public String translateName(Field f) {
+            return "f_" + f.getName();
+        }
+    }
+
+    private static class UpperNaming implements FieldNamingStrategy {
+        @Override
+        public String translateName(Field f) {
+            return f.getName().toUpperCase();
+        }
+    }
+
+    @FlatSubTypes(typeName = "petType", value = {
+            @FlatSubTypes.SubType(value = Cat.class, name = "cat"),
+            @FlatSubTypes.SubType(value = Dog.class, name = "dog")})
+    private interface Pet {
+    }
+
+    private static class Owner {
+        private String name;
+        @FieldNamePrefix("home")
+        private Address home;
+        @FieldNamePrefix("pet")
+        private Pet pet;
+
+        @Override
+        public boolean equals(Object o) {
+            return EqualsBuilder.reflectionEquals(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+
+    private static class Address {
+        private String city;
+        private String street;
+
+        @Override
+        public boolean equals(Object o) {
+            return EqualsBuilder.reflectionEquals(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+
+    private static class Cat implements Pet {
+        private int lives;
+
+        @Override
+        public boolean equals(Object o) {
+            return EqualsBuilder.reflectionEquals(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+
+    private static class Dog implements Pet {
+        private String breed;
+
+        @Override
+        public boolean equals(Object o) {
+            return EqualsBuilder.reflectionEquals(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+}
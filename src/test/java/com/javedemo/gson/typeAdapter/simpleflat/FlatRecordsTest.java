@@ -0,0 +1,202 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import com.javedemo.gson.jsonAdapter.FieldNamePrefix;
+import com.javedemo.gson.jsonAdapter.FlatSubTypes;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class FlatRecordsTest {
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    {
+        FlatReflectionTypeAdapterFactory.injectInto(gson, SubTypeRegistry.builder().annotated(Shape.class).build(), true);
+    }
+
+    @Test
+    public void testLines() throws IOException {
+        List<Drawing> drawings = drawings(5);
+        StringWriter out = new StringWriter();
+        try (FlatRecordWriter<Drawing> writer = FlatRecords.lineWriter(gson, Drawing.class, out)) {
+            writer.writeAll(drawings.stream());
+            Assert.assertEquals(writer.getWritten(), 5);
+        }
+        String[] lines = out.toString().split("\n");
+        Assert.assertEquals(lines.length, 5);
+        Assert.assertEquals(lines[1], "{\"title\":\"d1\",\"main.shapeType\":\"circle\",\"main.radius\":1.5}");
+
+        try (FlatRecordReader<Drawing> reader = FlatRecords.readLines(gson, Drawing.class, new StringReader(out.toString()))) {
+            List<Drawing> actual = new ArrayList<>();
+            reader.forEachRemaining(actual::add);
+            Assert.assertEquals(actual, drawings);
+        }
+    }
+
+    @Test
+    public void testArray() throws IOException {
+        List<Drawing> drawings = drawings(3);
+        StringWriter out = new StringWriter();
+        try (FlatRecordWriter<Drawing> writer = FlatRecords.arrayWriter(gson, Drawing.class, out)) {
+            writer.writeAll(drawings);
+        }
+        Assert.assertEquals(gson.fromJson(out.toString(), Drawing[].class).length, 3);
+
+        try (FlatRecordReader<Drawing> reader = FlatRecords.readArray(gson, Drawing.class, new StringReader(out.toString()))) {
+            Assert.assertEquals(reader.stream().collect(Collectors.toList()), drawings);
+            Assert.assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        StringWriter out = new StringWriter();
+        FlatRecords.lineWriter(gson, Drawing.class, out).close();
+        Assert.assertEquals(out.toString(), "");
+        Assert.assertFalse(FlatRecords.readLines(gson, Drawing.class, new StringReader("")).hasNext());
+        Assert.assertFalse(FlatRecords.readArray(gson, Drawing.class, new StringReader("[]")).hasNext());
+    }
+
+    @Test
+    public void testPeriodicFlush() throws IOException {
+        int[] flushes = new int[1];
+        StringWriter out = new StringWriter() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+        try (FlatRecordWriter<Drawing> writer = FlatRecords.lineWriter(gson, Drawing.class, out, 2)) {
+            writer.writeAll(drawings(5));
+            Assert.assertEquals(flushes[0], 2);
+        }
+        Assert.assertEquals(flushes[0], 3);
+    }
+
+    @Test
+    public void testMalformedLine() {
+        FlatRecordReader<Drawing> reader = FlatRecords.readLines(gson, Drawing.class, new StringReader("{\"title\":\"d0\"}\n{\"title\":}\n"));
+        Assert.assertEquals(reader.next().title, "d0");
+        Assert.assertThrows(JsonSyntaxException.class, reader::next);
+    }
+
+    @Test
+    public void testParallelLines() throws IOException {
+        List<Drawing> drawings = drawings(5000);
+        StringWriter out = new StringWriter();
+        try (FlatRecordWriter<Drawing> writer = FlatRecords.lineWriter(gson, Drawing.class, out)) {
+            writer.writeAll(drawings);
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+        try {
+            // 批次很小, 队列很短, 切分线程会频繁被背压阻塞
+            try (FlatParallelLineReader<Drawing> reader = FlatRecords.readLinesParallel(gson, Drawing.class, new StringReader(out.toString()), workers, 256, 2)) {
+                List<Drawing> actual = new ArrayList<>();
+                reader.forEachRemaining(actual::add);
+                Assert.assertEquals(actual, drawings);
+            }
+
+            String malformed = out.toString() + "{\"title\":}\n";
+            FlatParallelLineReader<Drawing> reader = FlatRecords.readLinesParallel(gson, Drawing.class, new StringReader(malformed), workers, 256, 2);
+            for (int i = 0; i < 5000; i++) {
+                Assert.assertEquals(reader.next(), drawings.get(i));
+            }
+            Assert.assertThrows(JsonParseException.class, reader::next);
+
+            // 没有读完就关闭, 不阻塞
+            reader = FlatRecords.readLinesParallel(gson, Drawing.class, new StringReader(out.toString()), workers, 256, 2);
+            Assert.assertEquals(reader.next(), drawings.get(0));
+            reader.close();
+            Assert.assertFalse(FlatRecords.readLinesParallel(gson, Drawing.class, new StringReader(""), workers).hasNext());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMappedLines() throws IOException {
+        List<Drawing> drawings = drawings(3000);
+        // 多字节字符和代理对跨越切分与窗口边界
+        drawings.forEach(drawing -> drawing.title += "\u524d\u95e8\uD83D\uDE00");
+        Path file = Files.createTempFile("flat-records", ".ndjson");
+        try {
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+                 FlatRecordWriter<Drawing> writer = FlatRecords.lineWriter(gson, Drawing.class, out)) {
+                writer.writeAll(drawings);
+            }
+            try (Stream<Drawing> records = FlatRecords.mappedLines(gson, Drawing.class, file, 1024)) {
+                Assert.assertEquals(records.parallel().collect(Collectors.toList()), drawings);
+            }
+            try (Stream<Drawing> records = FlatRecords.mappedLines(gson, Drawing.class, file)) {
+                Assert.assertEquals(records.count(), 3000);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<Drawing> drawings(int count) {
+        return IntStream.range(0, count).mapToObj(i -> {
+            Drawing drawing = new Drawing();
+            drawing.title = "d" + i;
+            if (i % 2 == 1) {
+                Circle circle = new Circle();
+                circle.radius = i + 0.5;
+                drawing.main = circle;
+            }
+            return drawing;
+        }).collect(Collectors.toList());
+    }
+
+    @FlatSubTypes(typeName = "shapeType", value = @FlatSubTypes.SubType(value = Circle.class, name = "circle"))
+    private interface Shape {
+    }
+
+    private static class Drawing {
+        private String title;
+        @FieldNamePrefix("main")
+        private Shape main;
+
+        @Override
+        public boolean equals(Object o) {
+            return EqualsBuilder.reflectionEquals(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+
+    private static class Circle implements Shape {
+        private double radius;
+
+        @Override
+        public boolean equals(Object o) {
+            return EqualsBuilder.reflectionEquals(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+}
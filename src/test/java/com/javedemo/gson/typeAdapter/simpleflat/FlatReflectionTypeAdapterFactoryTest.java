@@ -1,6 +1,7 @@
 package com.javedemo.gson.typeAdapter.simpleflat;
 
 import com.google.gson.*;
+import com.google.gson.internal.ConstructorConstructor;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
@@ -17,6 +18,8 @@ import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FlatReflectionTypeAdapterFactoryTest {
     private final Gson gson = new GsonBuilder().create();
@@ -30,6 +33,16 @@ public class FlatReflectionTypeAdapterFactoryTest {
         FlatReflectionTypeAdapterFactory.injectInto(gson,map );
     }
 
+    private final Gson streamingGson = new GsonBuilder().create();
+
+    {
+        Map<Class, FlatReflectionTypeAdapterFactory.InterfaceFieldParser> map=new HashMap();
+        map.put(IWindow.class,new IPartFieldParser());
+        map.put(IMaterial.class,new IMaterialFieldParser());
+
+        FlatReflectionTypeAdapterFactory.injectInto(streamingGson, map, true);
+    }
+
 
 
     public static class IPartFieldParser implements FlatReflectionTypeAdapterFactory.InterfaceFieldParser{
@@ -133,6 +146,307 @@ public class FlatReflectionTypeAdapterFactoryTest {
     }
 
 
+    @Test
+    public void testPersonByStreamingRead() {
+        ClassRoom person = getClassRoom();
+
+        String json = streamingGson.toJson(person);
+        Assert.assertEquals(json, gson.toJson(person), "ObjectToJson check error");
+
+        ClassRoom actualPerson = streamingGson.fromJson(json, ClassRoom.class);
+        System.out.println("JsonToObject actualPerson=" + actualPerson);
+        Assert.assertEquals(actualPerson, person, "JsonToObject check error");
+    }
+
+    /**
+     * 类型标识字段在动态字段之后, 以及未知字段.
+     */
+    @Test
+    public void testPersonByStreamingReadWithDisorderedKeys() {
+        ClassRoom classRoom = getClassRoomWithTwoDoors();
+
+        String json = "{\"backDoorPrefix.lowerWindowPrefix.iMaterialPrefix.materialName\":\"后门下玻璃纯天然材料\",\"unknown\":{\"a\":[1,2]},\"name\":\"第15班\",\"doorName\":\"前门\",\"windowName\":\"前门上玻璃\",\"backDoorPrefix.doorName\":\"后门\",\"backDoorPrefix.windowName\":\"后门上玻璃\",\"backDoorPrefix.lowerWindowPrefix.windowName\":\"后门下玻璃\",\"backDoorPrefix.lowerWindowPrefix.iMaterialPrefix.IMaterialType\":\"纯天然材料\",\"backDoorPrefix.lowerWindowPrefix.IWindowType\":\"window_实现1\"}";
+
+        ClassRoom actualPerson = streamingGson.fromJson(json, ClassRoom.class);
+        System.out.println("JsonToObject actual=" + actualPerson);
+        Assert.assertEquals(actualPerson, classRoom, "JsonToObject check error");
+    }
+
+    /**
+     * 动态字段下有key但一直没有类型标识时报错.
+     */
+    @Test
+    public void testStreamingReadWithoutTypeKey() {
+        String json = "{\"name\":\"教室\",\"backDoorPrefix.lowerWindowPrefix.windowName\":\"后门下玻璃\"}";
+        try {
+            streamingGson.fromJson(json, ClassRoom.class);
+            Assert.fail("should fail without type key");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("dynamicTypeKey=backDoorPrefix.lowerWindowPrefix.IWindowType"), e.getMessage());
+        }
+    }
+
+    /**
+     * 动态字段的前缀必须按 "." 分隔匹配, lowerWindowPrefixOld 和 xbackDoorPrefix 下的key都不属于 lowerWindowPrefix.
+     */
+    @Test
+    public void testDynamicPrefixBoundary() {
+        ClassRoom person = getClassRoom();
+        String json = gson.toJson(person);
+        String noisyJson = json.substring(0, json.length() - 1)
+                + ",\"backDoorPrefix.lowerWindowPrefixOld.windowName\":\"旧下玻璃\",\"xbackDoorPrefix.lowerWindowPrefix.windowName\":\"x\"}";
+
+        Assert.assertEquals(gson.fromJson(noisyJson, ClassRoom.class), person, "JsonToObject check error");
+        Assert.assertEquals(streamingGson.fromJson(noisyJson, ClassRoom.class), person, "JsonToObject check error");
+    }
+
+    /**
+     * InterfaceFieldParser 的解析结果由factory缓存, 每个接口只解析一次.
+     */
+    @Test
+    public void testInterfaceFieldParserCalledOnce() {
+        CountingFieldParser windowParser = new CountingFieldParser(new IPartFieldParser());
+        CountingFieldParser materialParser = new CountingFieldParser(new IMaterialFieldParser());
+        Map<Class, FlatReflectionTypeAdapterFactory.InterfaceFieldParser> map = new HashMap<>();
+        map.put(IWindow.class, windowParser);
+        map.put(IMaterial.class, materialParser);
+        Gson countingGson = new GsonBuilder().create();
+        FlatReflectionTypeAdapterFactory.injectInto(countingGson, map);
+
+        ClassRoom person = getClassRoom();
+        for (int i = 0; i < 3; i++) {
+            String json = countingGson.toJson(person);
+            Assert.assertEquals(countingGson.fromJson(json, ClassRoom.class), person, "JsonToObject check error");
+        }
+
+        Assert.assertEquals(windowParser.readCount.get(), 1);
+        Assert.assertEquals(windowParser.writeCount.get(), 1);
+        Assert.assertEquals(materialParser.readCount.get(), 1);
+        Assert.assertEquals(materialParser.writeCount.get(), 1);
+    }
+
+    /**
+     * 中间层为null时整棵子树一起处理: 默认跳过, serializeNulls 时逐个写null, 接口字段不写.
+     */
+    @Test
+    public void testNullIntermediate() {
+        ClassRoom classRoom = getClassRoom();
+        classRoom.frontDoor = null;
+        classRoom.backDoor.upperWindow = null;
+
+        String expectedJson = "{\"name\":\"教室\",\"backDoorPrefix.doorName\":\"后门\",\"backDoorPrefix.lowerWindowPrefix.IWindowType\":\"window_实现1\",\"backDoorPrefix.lowerWindowPrefix.windowName\":\"后门下玻璃\",\"backDoorPrefix.lowerWindowPrefix.iMaterialPrefix.IMaterialType\":\"纯天然材料\",\"backDoorPrefix.lowerWindowPrefix.iMaterialPrefix.materialName\":\"后门下玻璃天然材料\"}";
+        Assert.assertEquals(gson.toJson(classRoom), expectedJson, "ObjectToJson check error");
+
+        Map<Class, FlatReflectionTypeAdapterFactory.InterfaceFieldParser> map = new HashMap<>();
+        map.put(IWindow.class, new IPartFieldParser());
+        map.put(IMaterial.class, new IMaterialFieldParser());
+        Gson nullsGson = new GsonBuilder().serializeNulls().create();
+        FlatReflectionTypeAdapterFactory.injectInto(nullsGson, map);
+
+        String expectedNullsJson = "{\"name\":\"教室\",\"doorName\":null,\"windowName\":null,\"backDoorPrefix.doorName\":\"后门\",\"backDoorPrefix.windowName\":null,\"backDoorPrefix.lowerWindowPrefix.IWindowType\":\"window_实现1\",\"backDoorPrefix.lowerWindowPrefix.windowName\":\"后门下玻璃\",\"backDoorPrefix.lowerWindowPrefix.iMaterialPrefix.IMaterialType\":\"纯天然材料\",\"backDoorPrefix.lowerWindowPrefix.iMaterialPrefix.materialName\":\"后门下玻璃天然材料\"}";
+        Assert.assertEquals(nullsGson.toJson(classRoom), expectedNullsJson, "ObjectToJson check error");
+    }
+
+    /**
+     * 中间层为null时叶子的null也交给字段的 TypeAdapter 写出, 与叶子字段本身为null一致.
+     */
+    @Test
+    public void testNullIntermediateWithCustomAdapter() {
+        TypeAdapter<String> dashForNull = new TypeAdapter<String>() {
+            @Override
+            public void write(JsonWriter out, String value) throws IOException {
+                out.value(value == null ? "-" : value);
+            }
+
+            @Override
+            public String read(JsonReader in) throws IOException {
+                return in.nextString();
+            }
+        };
+        for (boolean serializeNulls : new boolean[]{false, true}) {
+            GsonBuilder builder = new GsonBuilder().registerTypeAdapter(String.class, dashForNull);
+            if (serializeNulls) {
+                builder.serializeNulls();
+            }
+            Gson customGson = builder.create();
+            FlatReflectionTypeAdapterFactory.injectInto(customGson, new HashMap<>(), true);
+
+            Sign sign = new Sign();
+            sign.title = "出口";
+            Assert.assertEquals(customGson.toJson(sign), "{\"title\":\"出口\",\"label.text\":\"-\"}");
+            sign.label = new Label();
+            Assert.assertEquals(customGson.toJson(sign), "{\"title\":\"出口\",\"label.text\":\"-\"}");
+        }
+    }
+
+    /**
+     * GsonBuilder 注册时, 先注册的 TypeAdapter 和 hierarchy adapter 不被平铺覆盖, 与 injectInto 一致.
+     */
+    @Test
+    public void testRegistrationKeepsUserAdapters() {
+        TypeAdapter<Label> labelAdapter = new TypeAdapter<Label>() {
+            @Override
+            public void write(JsonWriter out, Label value) throws IOException {
+                out.value(value.text);
+            }
+
+            @Override
+            public Label read(JsonReader in) throws IOException {
+                Label label = new Label();
+                label.text = in.nextString();
+                return label;
+            }
+        };
+        TypeAdapter<Stamp> stampAdapter = new TypeAdapter<Stamp>() {
+            @Override
+            public void write(JsonWriter out, Stamp value) throws IOException {
+                out.value(value.code);
+            }
+
+            @Override
+            public Stamp read(JsonReader in) throws IOException {
+                Stamp stamp = new RoundStamp();
+                stamp.code = in.nextInt();
+                return stamp;
+            }
+        };
+        Gson registeredGson = new GsonBuilder()
+                .registerTypeAdapter(Label.class, labelAdapter)
+                .registerTypeHierarchyAdapter(Stamp.class, stampAdapter)
+                .registerTypeAdapterFactory(FlatReflectionTypeAdapterFactory.registration(new HashMap<>(), true))
+                .create();
+        Gson injectedGson = new GsonBuilder()
+                .registerTypeAdapter(Label.class, labelAdapter)
+                .registerTypeHierarchyAdapter(Stamp.class, stampAdapter)
+                .create();
+        FlatReflectionTypeAdapterFactory.injectInto(injectedGson, new HashMap<>(), true);
+
+        Poster poster = new Poster();
+        poster.title = "出口";
+        poster.label = new Label();
+        poster.label.text = "绿色";
+        poster.stamp = new RoundStamp();
+        poster.stamp.code = 7;
+        String expectedJson = "{\"title\":\"出口\",\"label\":\"绿色\",\"stamp\":7}";
+        for (Gson gson : new Gson[]{registeredGson, injectedGson}) {
+            Assert.assertEquals(gson.toJson(poster), expectedJson, "ObjectToJson check error");
+            Poster actual = gson.fromJson(expectedJson, Poster.class);
+            Assert.assertEquals(actual.label.text, "绿色");
+            Assert.assertEquals(actual.stamp.code, 7);
+        }
+        Assert.assertTrue(registeredGson.getAdapter(Poster.class) instanceof FlatReflectionTypeAdapterFactory.FlatReflectionTypeAdapter);
+        Assert.assertSame(registeredGson.getAdapter(Label.class), labelAdapter);
+    }
+
+    /**
+     * 中间层和接口实现类的 ObjectConstructor 在绑定时解析一次, 读的时候不再查找;
+     * 没有无参构造器时使用注册的 InstanceCreator, 没有注册时由gson直接分配.
+     */
+    @Test
+    public void testConstructorsResolvedAtBind() {
+        Map<Type, AtomicInteger> lookups = new HashMap<>();
+        Map<Type, InstanceCreator<?>> instanceCreators = new HashMap<Type, InstanceCreator<?>>() {
+            @Override
+            public InstanceCreator<?> get(Object key) {
+                lookups.computeIfAbsent((Type) key, k -> new AtomicInteger()).incrementAndGet();
+                return super.get(key);
+            }
+        };
+        AtomicInteger engines = new AtomicInteger();
+        AtomicInteger turbos = new AtomicInteger();
+        instanceCreators.put(Engine.class, type -> {
+            engines.incrementAndGet();
+            return new Engine(0);
+        });
+        instanceCreators.put(Turbo.class, type -> {
+            turbos.incrementAndGet();
+            return new Turbo(0);
+        });
+        Map<Class, FlatReflectionTypeAdapterFactory.InterfaceFieldParser> parsers = SubTypeRegistry.builder()
+                .subTypes(Part.class, "partType")
+                .subType("turbo", Turbo.class)
+                .build();
+
+        String json = "{\"name\":\"车\",\"engine.power\":150,\"wheel.size\":17,\"part.partType\":\"turbo\",\"part.boost\":1.5}";
+        for (boolean streamingRead : new boolean[]{true, false}) {
+            engines.set(0);
+            turbos.set(0);
+            FlatRegistration<FlatReflectionTypeAdapterFactory> flat = new FlatRegistration<>(gson -> new FlatReflectionTypeAdapterFactory(
+                    gson, parsers, streamingRead, new ConstructorConstructor(instanceCreators)));
+            Gson carGson = new GsonBuilder().registerTypeAdapterFactory(flat).create();
+            flat.factory(carGson).prepare(Car.class);
+            Map<Type, Integer> bound = new HashMap<>();
+            lookups.forEach((type, count) -> bound.put(type, count.get()));
+            Assert.assertTrue(bound.containsKey(Engine.class) && bound.containsKey(Wheel.class) && bound.containsKey(Turbo.class), bound.toString());
+
+            for (int i = 0; i < 3; i++) {
+                Car car = carGson.fromJson(json, Car.class);
+                Assert.assertEquals(car.engine.power, 150);
+                Assert.assertEquals(car.wheel.size, 17);
+                Assert.assertEquals(((Turbo) car.part).boost, 1.5);
+                Assert.assertEquals(carGson.toJson(car), json);
+            }
+            Map<Type, Integer> afterReads = new HashMap<>();
+            lookups.forEach((type, count) -> afterReads.put(type, count.get()));
+            Assert.assertEquals(afterReads, bound, "ObjectConstructor resolved again while reading");
+            Assert.assertEquals(engines.get(), 3);
+            Assert.assertEquals(turbos.get(), 3);
+        }
+    }
+
+    /**
+     * 并行预热后的结果与懒惰构建一致, 循环依赖仍然在预热时报错.
+     */
+    @Test
+    public void testParallelPrepare() {
+        Map<Class, FlatReflectionTypeAdapterFactory.InterfaceFieldParser> map = new HashMap<>();
+        map.put(IWindow.class, new IPartFieldParser());
+        map.put(IMaterial.class, new IMaterialFieldParser());
+        Gson preparedGson = new GsonBuilder().create();
+        FlatReflectionTypeAdapterFactory factory = FlatReflectionTypeAdapterFactory.injectInto(preparedGson, map);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            factory.prepare(pool, ClassRoom.class, Door.class, Window.class, NatureMaterial.class);
+
+            ClassRoom classRoom = getClassRoomWithTwoDoors();
+            String expectedJson = gson.toJson(classRoom);
+            Assert.assertEquals(preparedGson.toJson(classRoom), expectedJson, "ObjectToJson check error");
+            Assert.assertEquals(preparedGson.fromJson(expectedJson, ClassRoom.class), classRoom, "JsonToObject check error");
+
+            RuntimeException e = Assert.expectThrows(RuntimeException.class, () -> factory.prepare(pool, Door.class, Chain.class));
+            Assert.assertTrue(String.valueOf(e.getMessage()).contains("circle depend"), e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static class Chain {
+        private String name;
+        private Chain next;
+    }
+
+    private static class CountingFieldParser implements FlatReflectionTypeAdapterFactory.InterfaceFieldParser {
+        private final FlatReflectionTypeAdapterFactory.InterfaceFieldParser delegate;
+        private final AtomicInteger readCount = new AtomicInteger();
+        private final AtomicInteger writeCount = new AtomicInteger();
+
+        private CountingFieldParser(FlatReflectionTypeAdapterFactory.InterfaceFieldParser delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public FlatReflectionTypeAdapterFactory.InterfaceBoundedField getBoundedFildsForWrite(FlatReflectionTypeAdapterFactory flatReflectionTypeAdapterFactory) {
+            writeCount.incrementAndGet();
+            return delegate.getBoundedFildsForWrite(flatReflectionTypeAdapterFactory);
+        }
+
+        @Override
+        public FlatReflectionTypeAdapterFactory.DynamicTypeInterfaceBoundedField getBoundedFildsForRead(FlatReflectionTypeAdapterFactory flatReflectionTypeAdapterFactory) {
+            readCount.incrementAndGet();
+            return delegate.getBoundedFildsForRead(flatReflectionTypeAdapterFactory);
+        }
+    }
+
     private ClassRoom getClassRoom() {
         ClassRoom person = new ClassRoom();
 
@@ -398,6 +712,72 @@ public class FlatReflectionTypeAdapterFactoryTest {
         }
     }
 
+    private static class Sign {
+        private String title;
+        @FieldNamePrefix("label")
+        private Label label;
+    }
+
+    private static class Label {
+        private String text;
+    }
+
+    private static class Poster {
+        private String title;
+        private Label label;
+        private Stamp stamp;
+    }
+
+    private static abstract class Stamp {
+        int code;
+    }
+
+    private static class RoundStamp extends Stamp {
+    }
+
+    private static class Car {
+        private String name;
+        @FieldNamePrefix("engine")
+        private Engine engine;
+        @FieldNamePrefix("wheel")
+        private Wheel wheel;
+        @FieldNamePrefix("part")
+        private Part part;
+    }
+
+    /**
+     * 没有无参构造器, 注册了 InstanceCreator
+     */
+    private static class Engine {
+        private int power;
+
+        Engine(int power) {
+            this.power = power;
+        }
+    }
+
+    /**
+     * 没有无参构造器, 也没有注册 InstanceCreator
+     */
+    private static class Wheel {
+        private int size;
+
+        Wheel(int size) {
+            this.size = size;
+        }
+    }
+
+    private interface Part {
+    }
+
+    private static class Turbo implements Part {
+        private double boost;
+
+        Turbo(double boost) {
+            this.boost = boost;
+        }
+    }
+
     private static interface IWindow {
 
     }
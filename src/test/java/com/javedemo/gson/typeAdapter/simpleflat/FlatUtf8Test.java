@@ -0,0 +1,153 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import com.javedemo.gson.jsonAdapter.FieldNamePrefix;
+import com.javedemo.gson.jsonAdapter.FlatSubTypes;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class FlatUtf8Test {
+    private final Gson treeGson = new GsonBuilder().create();
+    private final Gson streamingGson = new GsonBuilder().create();
+    private final Gson simpleGson = new GsonBuilder().create();
+
+    {
+        Map<Class, FlatReflectionTypeAdapterFactory.InterfaceFieldParser> parsers = SubTypeRegistry.builder().annotated(Part.class).build();
+        FlatReflectionTypeAdapterFactory.injectInto(treeGson, parsers, false);
+        FlatReflectionTypeAdapterFactory.injectInto(streamingGson, parsers, true);
+        SimpleGsonFlatSupport.injectInto(simpleGson);
+    }
+
+    @Test
+    public void testSameAsGson() {
+        Device device = getDevice();
+        for (Gson gson : new Gson[]{treeGson, streamingGson, simpleGson}) {
+            String json = gson.toJson(device);
+            Device actual = FlatUtf8.fromJson(gson, json.getBytes(StandardCharsets.UTF_8), Device.class);
+            Assert.assertEquals(gson.toJson(actual), json, "JsonToObject check error");
+        }
+    }
+
+    @Test
+    public void testDynamicField() {
+        Assembly assembly = new Assembly();
+        assembly.name = "a1";
+        Motor motor = new Motor();
+        motor.power = 750;
+        motor.vendor = "电机厂";
+        assembly.main = motor;
+        for (Gson gson : new Gson[]{treeGson, streamingGson}) {
+            String json = gson.toJson(assembly);
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            Assert.assertEquals(gson.toJson(FlatUtf8.fromJson(gson, bytes, Assembly.class)), json);
+
+            // 第一次读取后实现类的key加入字典, 之后返回字典中的同一个String
+            FlatKeyDictionary keys = ((FlatKeyDictionary.Owner) gson.getAdapter(Assembly.class)).utf8Keys();
+            byte[] key = "main.power".getBytes(StandardCharsets.UTF_8);
+            Assert.assertSame(keys.lookup(key, 0, key.length), keys.lookup(key, 0, key.length));
+        }
+    }
+
+    @Test
+    public void testValues() {
+        String json = "{\"unknown\":{\"a\":[1,2,{\"b\":null}]},\"name\":\"x\\\"\\u0041\\n\u4e2d\uD83D\uDE00\",\"count\":\"12\",\"ratio\":1e2,"
+                + "\"on\":\"true\",\"grade\":\"B\",\"serial\":-9223372036854775808,\"boxed\":null,\"tags\":[\"t1\",\"t2\"],"
+                + "\"attributes\":{\"k\":\"v\"},\"cpu.cores\":8.0,\"cpu.model\":false}";
+        Device device = FlatUtf8.fromJson(streamingGson, ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)), Device.class);
+        Assert.assertEquals(device.name, "x\"A\n\u4e2d\uD83D\uDE00");
+        Assert.assertEquals(device.count, 12);
+        Assert.assertEquals(device.ratio, 100.0);
+        Assert.assertTrue(device.on);
+        Assert.assertEquals(device.grade, 'B');
+        Assert.assertEquals(device.serial, Long.MIN_VALUE);
+        Assert.assertNull(device.boxed);
+        Assert.assertEquals(device.tags, new String[]{"t1", "t2"});
+        Assert.assertEquals(device.attributes, Collections.singletonMap("k", "v"));
+        Assert.assertEquals(device.cpu.cores, 8);
+        Assert.assertEquals(device.cpu.model, "false");
+    }
+
+    @Test
+    public void testErrors() {
+        Assert.assertNull(FlatUtf8.fromJson(streamingGson, " \n".getBytes(StandardCharsets.UTF_8), Device.class));
+        for (String json : new String[]{"{\"name\":}", "{\"count\":1.5}", "{\"name\":\"x\"", "{\"count\":01}", "{\"name\":\"x\",}"}) {
+            Assert.assertThrows(JsonSyntaxException.class, () -> FlatUtf8.fromJson(streamingGson, json.getBytes(StandardCharsets.UTF_8), Device.class));
+        }
+        Assert.assertThrows(JsonParseException.class, () -> FlatUtf8.fromJson(streamingGson, "{} {}".getBytes(StandardCharsets.UTF_8), Device.class));
+    }
+
+    @Test
+    public void testNonFlatType() {
+        // 没有平铺支持的类型和 Map 回退到 Gson.fromJson
+        Gson plainGson = new Gson();
+        Map<?, ?> map = FlatUtf8.fromJson(plainGson, "{\"a\":1}".getBytes(StandardCharsets.UTF_8), Map.class);
+        Assert.assertEquals(map, Collections.singletonMap("a", 1.0));
+        Map<?, ?> flatGsonMap = FlatUtf8.fromJson(streamingGson, "{\"a\":\"b\"}".getBytes(StandardCharsets.UTF_8), Map.class);
+        Assert.assertEquals(flatGsonMap, Collections.singletonMap("a", "b"));
+
+        Cpu cpu = FlatUtf8.fromJson(plainGson, "{\"cores\":4,\"model\":\"arm\"}".getBytes(StandardCharsets.UTF_8), Cpu.class);
+        Assert.assertEquals(cpu.cores, 4);
+        Assert.assertEquals(cpu.model, "arm");
+        Assert.assertNull(FlatUtf8.fromJson(plainGson, new byte[0], Cpu.class));
+    }
+
+    private static Device getDevice() {
+        Device device = new Device();
+        device.name = "设备\"1\"";
+        device.count = 3;
+        device.ratio = 0.25;
+        device.on = true;
+        device.grade = 'A';
+        device.serial = 1234567890123456789L;
+        device.boxed = 42;
+        device.tags = new String[]{"a", "b"};
+        device.attributes = new HashMap<>(Collections.singletonMap("k", "v"));
+        device.cpu = new Cpu();
+        device.cpu.cores = 16;
+        device.cpu.model = "x86";
+        return device;
+    }
+
+    private static class Device {
+        private String name;
+        private int count;
+        private double ratio;
+        private boolean on;
+        private char grade;
+        private long serial;
+        private Integer boxed;
+        private String[] tags;
+        private HashMap<String, String> attributes;
+        @FieldNamePrefix("cpu")
+        private Cpu cpu;
+    }
+
+    private static class Cpu {
+        private int cores;
+        private String model;
+    }
+
+    @FlatSubTypes(typeName = "partType", value = @FlatSubTypes.SubType(value = Motor.class, name = "motor"))
+    private interface Part {
+    }
+
+    private static class Assembly {
+        private String name;
+        @FieldNamePrefix("main")
+        private Part main;
+    }
+
+    private static class Motor implements Part {
+        private int power;
+        private String vendor;
+    }
+}
@@ -0,0 +1,171 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.LongSerializationPolicy;
+import com.google.gson.reflect.TypeToken;
+import com.javedemo.gson.jsonAdapter.FieldNamePrefix;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+import java.util.Collections;
+
+public class LeafKindTest {
+    /**
+     * 没有嵌套的对象, 平铺结果应该与gson原生的结果一致
+     */
+    private final Gson plainGson = new GsonBuilder().serializeNulls().create();
+    private final Gson treeGson = new GsonBuilder().serializeNulls().create();
+    private final Gson streamingGson = new GsonBuilder().serializeNulls().create();
+    private final Gson simpleGson = new GsonBuilder().serializeNulls().create();
+
+    {
+        FlatReflectionTypeAdapterFactory.injectInto(treeGson, Collections.emptyMap());
+        FlatReflectionTypeAdapterFactory.injectInto(streamingGson, Collections.emptyMap(), true);
+        SimpleGsonFlatSupport.injectInto(simpleGson);
+    }
+
+    @Test
+    public void testSameAsGson() {
+        Primitives primitives = getPrimitives();
+        String expectedJson = plainGson.toJson(primitives);
+        for (Gson gson : new Gson[]{treeGson, streamingGson, simpleGson}) {
+            String actual = gson.toJson(primitives);
+            Assert.assertEquals(actual, expectedJson, "ObjectToJson check error");
+            Assert.assertEquals(gson.toJson(gson.fromJson(expectedJson, Primitives.class)), expectedJson, "JsonToObject check error");
+        }
+    }
+
+    @Test
+    public void testBuiltinAdapterSpecialized() {
+        Assert.assertEquals(LeafKind.of(int.class, plainGson.getAdapter(int.class)), LeafKind.INT);
+        Assert.assertEquals(LeafKind.of(double.class, plainGson.getAdapter(double.class)), LeafKind.DOUBLE);
+        Assert.assertEquals(LeafKind.of(float.class, plainGson.getAdapter(float.class)), LeafKind.FLOAT);
+        Assert.assertEquals(LeafKind.of(String.class, plainGson.getAdapter(String.class)), LeafKind.STRING);
+        // 装箱类型和 LongSerializationPolicy.STRING 不特化
+        Assert.assertNull(LeafKind.of(Integer.class, plainGson.getAdapter(Integer.class)));
+        Gson longAsString = new GsonBuilder().setLongSerializationPolicy(LongSerializationPolicy.STRING).create();
+        Assert.assertNull(LeafKind.of(long.class, longAsString.getAdapter(long.class)));
+    }
+
+    @Test
+    public void testLenientValues() {
+        // 与gson内置adapter一致: 数字字符串, 字符串布尔值, 布尔值读成String, null保持默认值
+        String json = "{\"i\":\"12\",\"l\":null,\"z\":\"true\",\"s\":false,\"d\":\"1.5\"}";
+        for (Gson gson : new Gson[]{treeGson, streamingGson, simpleGson}) {
+            Primitives primitives = gson.fromJson(json, Primitives.class);
+            Assert.assertEquals(primitives.i, 12);
+            Assert.assertEquals(primitives.l, 0L);
+            Assert.assertTrue(primitives.z);
+            Assert.assertEquals(primitives.s, "false");
+            Assert.assertEquals(primitives.d, 1.5);
+        }
+    }
+
+    @Test
+    public void testInvalidValues() {
+        // JsonTreeReader 会把1.5读成1, 与 TypeAdapter.fromJsonTree 一致, 只校验流式读取
+        Assert.assertThrows(JsonSyntaxException.class, () -> streamingGson.fromJson("{\"i\":1.5}", Primitives.class));
+        Assert.assertThrows(JsonSyntaxException.class, () -> simpleGson.fromJson("{\"i\":1.5}", Primitives.class));
+        for (Gson gson : new Gson[]{treeGson, streamingGson, simpleGson}) {
+            Assert.assertThrows(JsonSyntaxException.class, () -> gson.fromJson("{\"c\":\"ab\"}", Primitives.class));
+
+            Primitives primitives = new Primitives();
+            primitives.d = Double.NaN;
+            Assert.assertThrows(IllegalArgumentException.class, () -> gson.toJson(primitives));
+        }
+    }
+
+    @Test
+    public void testNullIntermediate() {
+        // 中间层为null时基本类型写null, 与通过TypeAdapter写出一致
+        for (Gson gson : new Gson[]{treeGson, streamingGson, simpleGson}) {
+            Assert.assertEquals(gson.toJson(new Holder()), "{\"inner.i\":null,\"inner.l\":null,\"inner.s\":null,\"inner.z\":null," +
+                    "\"inner.d\":null,\"inner.f\":null,\"inner.b\":null,\"inner.sh\":null,\"inner.c\":null}");
+            Holder holder = gson.fromJson("{\"inner.l\":7}", Holder.class);
+            Assert.assertEquals(holder.inner.l, 7L);
+        }
+    }
+
+    @Test
+    public void testLeafAccessor() throws NoSuchFieldException {
+        // 每个字段生成一个accessor, 基本类型字段继承对应的子类, 所有factory共用
+        Field field = Primitives.class.getDeclaredField("i");
+        field.setAccessible(true);
+        FieldAccessor accessor = FieldAccessorGenerator.generate(field);
+        Assert.assertTrue(accessor instanceof LeafAccessor.OfInt);
+        Field same = Primitives.class.getDeclaredField("i");
+        same.setAccessible(true);
+        Assert.assertSame(FieldAccessorGenerator.generate(same), accessor);
+
+        Primitives primitives = new Primitives();
+        LeafAccessor.OfInt ofInt = (LeafAccessor.OfInt) accessor;
+        ofInt.set(primitives, 5);
+        Assert.assertEquals(primitives.i, 5);
+        Assert.assertEquals(ofInt.get(primitives), 5);
+        accessor.setObject(primitives, 6);
+        Assert.assertEquals(accessor.getObject(primitives), 6);
+
+        // 其他类型的字段只有装箱的 getObject/setObject
+        Field inner = Holder.class.getDeclaredField("inner");
+        inner.setAccessible(true);
+        FieldAccessor innerAccessor = FieldAccessorGenerator.generate(inner);
+        Assert.assertFalse(innerAccessor instanceof LeafAccessor);
+        Holder holder = new Holder();
+        innerAccessor.setObject(holder, primitives);
+        Assert.assertSame(innerAccessor.getObject(holder), primitives);
+    }
+
+    @Test
+    public void testGenericField() {
+        // 声明类型为类型变量的字段不特化, 仍然通过 TypeAdapter 读写
+        Type type = new TypeToken<Box<String>>() {
+        }.getType();
+        Box<String> box = new Box<>();
+        box.value = "v";
+        String expectedJson = plainGson.toJson(box, type);
+        for (Gson gson : new Gson[]{treeGson, streamingGson, simpleGson}) {
+            Assert.assertEquals(gson.toJson(box, type), expectedJson);
+            Box<String> actual = gson.fromJson(expectedJson, type);
+            Assert.assertEquals(actual.value, "v");
+        }
+    }
+
+    private Primitives getPrimitives() {
+        Primitives primitives = new Primitives();
+        primitives.i = -12;
+        primitives.l = Long.MAX_VALUE;
+        primitives.s = "中文\"quote\"";
+        primitives.z = true;
+        primitives.d = 0.1;
+        primitives.f = 0.1f;
+        primitives.b = (byte) -128;
+        primitives.sh = (short) 32767;
+        primitives.c = 'x';
+        return primitives;
+    }
+
+    private static class Primitives {
+        private int i;
+        private long l;
+        private String s;
+        private boolean z;
+        private double d;
+        private float f;
+        private byte b;
+        private short sh;
+        private char c;
+    }
+
+    private static class Box<T> {
+        private T value;
+    }
+
+    private static class Holder {
+        @FieldNamePrefix("inner")
+        private Primitives inner;
+    }
+}
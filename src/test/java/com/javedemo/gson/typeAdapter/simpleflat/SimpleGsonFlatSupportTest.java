@@ -0,0 +1,152 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.javedemo.gson.jsonAdapter.FieldNamePrefix;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class SimpleGsonFlatSupportTest {
+    private final Gson gson = new GsonBuilder().create();
+
+    {
+        SimpleGsonFlatSupport.injectInto(gson);
+    }
+
+    @Test
+    public void testBuilding() {
+        Building building = getBuilding();
+
+        String expectedJson = "{\"name\":\"1号楼\",\"east.name\":\"东单元\",\"east.upper.number\":301,\"east.upper.owner\":\"张三\",\"east.lower.number\":101,\"east.lower.owner\":\"李四\",\"west.name\":\"西单元\",\"west.upper.number\":302}";
+        String actual = gson.toJson(building);
+        System.out.println("ObjectToJson actual=" + actual);
+        Assert.assertEquals(actual, expectedJson, "ObjectToJson check error");
+
+        Building actualBuilding = gson.fromJson(expectedJson, Building.class);
+        Assert.assertEquals(actualBuilding, building, "JsonToObject check error");
+    }
+
+    /**
+     * key乱序时游标只能复用较短的公共前缀, 结果仍然正确, 同一个中间层对象只构造一次.
+     */
+    @Test
+    public void testBuildingWithDisorderedKeys() {
+        Building building = getBuilding();
+
+        String json = "{\"west.upper.number\":302,\"east.lower.owner\":\"李四\",\"east.upper.number\":301,\"west.name\":\"西单元\",\"east.name\":\"东单元\",\"east.lower.number\":101,\"name\":\"1号楼\",\"east.upper.owner\":\"张三\"}";
+        Building actualBuilding = gson.fromJson(json, Building.class);
+        System.out.println("JsonToObject actual=" + gson.toJson(actualBuilding));
+        Assert.assertEquals(actualBuilding, building, "JsonToObject check error");
+    }
+
+    /**
+     * 通过 GsonBuilder 注册: 平铺结果与反射注入一致, 集合/枚举等仍由gson内置的adapter处理,
+     * 之后注册的 TypeAdapter 优先于平铺.
+     */
+    @Test
+    public void testRegistration() {
+        Gson registeredGson = new GsonBuilder()
+                .registerTypeAdapterFactory(SimpleGsonFlatSupport.registration())
+                .registerTypeAdapter(Room.class, new TypeAdapter<Room>() {
+                    @Override
+                    public void write(JsonWriter out, Room value) throws IOException {
+                        out.value(value.number);
+                    }
+
+                    @Override
+                    public Room read(JsonReader in) throws IOException {
+                        Room room = new Room();
+                        room.number = in.nextInt();
+                        return room;
+                    }
+                }.nullSafe())
+                .create();
+
+        Building building = getBuilding();
+        building.east.upper.owner = null;
+        building.east.lower.owner = null;
+        String expectedJson = "{\"name\":\"1号楼\",\"east.name\":\"东单元\",\"east.upper.upper\":301,\"east.lower.lower\":101,\"west.name\":\"西单元\",\"west.upper.upper\":302}";
+        Assert.assertEquals(registeredGson.toJson(building), expectedJson, "ObjectToJson check error");
+        Assert.assertEquals(registeredGson.fromJson(expectedJson, Building.class), building, "JsonToObject check error");
+
+        Assert.assertEquals(registeredGson.toJson(Arrays.asList("a", "b")), "[\"a\",\"b\"]");
+        Assert.assertEquals(registeredGson.toJson(Thread.State.NEW), "\"NEW\"");
+        Assert.assertEquals(gson.toJson(getBuilding()), new GsonBuilder().registerTypeAdapterFactory(SimpleGsonFlatSupport.registration()).create().toJson(getBuilding()));
+    }
+
+    private Building getBuilding() {
+        Building building = new Building();
+        building.name = "1号楼";
+        building.east = new Unit();
+        building.east.name = "东单元";
+        building.east.upper = new Room();
+        building.east.upper.number = 301;
+        building.east.upper.owner = "张三";
+        building.east.lower = new Room();
+        building.east.lower.number = 101;
+        building.east.lower.owner = "李四";
+        building.west = new Unit();
+        building.west.name = "西单元";
+        building.west.upper = new Room();
+        building.west.upper.number = 302;
+        return building;
+    }
+
+    private static class Building {
+        private String name;
+        @FieldNamePrefix("east")
+        private Unit east;
+        @FieldNamePrefix("west")
+        private Unit west;
+
+        @Override
+        public boolean equals(Object o) {
+            return EqualsBuilder.reflectionEquals(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+
+    private static class Unit {
+        private String name;
+        @FieldNamePrefix("upper")
+        private Room upper;
+        @FieldNamePrefix("lower")
+        private Room lower;
+
+        @Override
+        public boolean equals(Object o) {
+            return EqualsBuilder.reflectionEquals(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+
+    private static class Room {
+        private int number;
+        private String owner;
+
+        @Override
+        public boolean equals(Object o) {
+            return EqualsBuilder.reflectionEquals(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+}
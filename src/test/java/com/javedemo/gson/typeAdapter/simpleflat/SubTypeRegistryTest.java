@@ -0,0 +1,154 @@
+package com.javedemo.gson.typeAdapter.simpleflat;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.javedemo.gson.jsonAdapter.FieldNamePrefix;
+import com.javedemo.gson.jsonAdapter.FlatSubTypes;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+public class SubTypeRegistryTest {
+    private final Map<Class, FlatReflectionTypeAdapterFactory.InterfaceFieldParser> parsers = SubTypeRegistry.builder()
+            .annotated(Shape.class)
+            .subTypes(Fill.class, "fillType")
+            .subType("solid", SolidFill.class)
+            .build();
+
+    private final Gson gson = new GsonBuilder().create();
+    private final Gson streamingGson = new GsonBuilder().create();
+    private final Gson registeredGson = new GsonBuilder()
+            .registerTypeAdapterFactory(FlatReflectionTypeAdapterFactory.registration(parsers, true))
+            .create();
+
+    {
+        FlatReflectionTypeAdapterFactory.injectInto(gson, parsers);
+        FlatReflectionTypeAdapterFactory.injectInto(streamingGson, parsers, true);
+    }
+
+    /**
+     * 同一个接口的不同实现类, 按实际类型写出各自的类型标识和字段.
+     */
+    @Test
+    public void testWriteByRuntimeType() {
+        Drawing drawing = getDrawing();
+
+        String expectedJson = "{\"title\":\"草图\",\"main.shapeType\":\"circle\",\"main.radius\":2.5,\"main.fill.fillType\":\"solid\",\"main.fill.color\":\"红\"," +
+                "\"extra.shapeType\":\"square\",\"extra.side\":4}";
+        for (Gson gson : new Gson[]{gson, streamingGson, registeredGson}) {
+            String actual = gson.toJson(drawing);
+            System.out.println("ObjectToJson actual=" + actual);
+            Assert.assertEquals(actual, expectedJson, "ObjectToJson check error");
+
+            Drawing actualDrawing = gson.fromJson(expectedJson, Drawing.class);
+            Assert.assertEquals(actualDrawing, drawing, "JsonToObject check error");
+        }
+    }
+
+    @Test
+    public void testUnregisteredRuntimeType() {
+        Drawing drawing = new Drawing();
+        drawing.main = new Shape() {
+        };
+        try {
+            gson.toJson(drawing);
+            Assert.fail("should fail for unregistered sub type");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("can not find sub type of interface"), e.getMessage());
+        }
+    }
+
+    @Test
+    public void testInvalidRegistration() {
+        Assert.assertThrows(RuntimeException.class, () -> SubTypeRegistry.builder().annotated(Fill.class));
+        Assert.assertThrows(RuntimeException.class, () -> SubTypeRegistry.builder().subTypes(Fill.class, "fillType").subType("circle", Circle.class));
+        Assert.assertThrows(RuntimeException.class, () -> SubTypeRegistry.builder().subTypes(Fill.class, "fillType").build());
+    }
+
+    private Drawing getDrawing() {
+        Drawing drawing = new Drawing();
+        drawing.title = "草图";
+        Circle circle = new Circle();
+        circle.radius = 2.5;
+        circle.fill = new SolidFill();
+        ((SolidFill) circle.fill).color = "红";
+        drawing.main = circle;
+        Square square = new Square();
+        square.side = 4;
+        drawing.extra = square;
+        return drawing;
+    }
+
+    @FlatSubTypes(typeName = "shapeType", value = {
+            @FlatSubTypes.SubType(value = Circle.class, name = "circle"),
+            @FlatSubTypes.SubType(value = Square.class, name = "square")})
+    private interface Shape {
+    }
+
+    private interface Fill {
+    }
+
+    private static class Drawing {
+        private String title;
+        @FieldNamePrefix("main")
+        private Shape main;
+        @FieldNamePrefix("extra")
+        private Shape extra;
+
+        @Override
+        public boolean equals(Object o) {
+            return EqualsBuilder.reflectionEquals(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+
+    private static class Circle implements Shape {
+        private double radius;
+        @FieldNamePrefix("fill")
+        private Fill fill;
+
+        @Override
+        public boolean equals(Object o) {
+            return EqualsBuilder.reflectionEquals(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+
+    private static class Square implements Shape {
+        private int side;
+
+        @Override
+        public boolean equals(Object o) {
+            return EqualsBuilder.reflectionEquals(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+
+    private static class SolidFill implements Fill {
+        private String color;
+
+        @Override
+        public boolean equals(Object o) {
+            return EqualsBuilder.reflectionEquals(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+}